@@ -0,0 +1,142 @@
+package com.republicate.modality.benchmarks;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import com.republicate.modality.Model;
+import com.republicate.modality.sql.PooledStatement;
+import org.hsqldb.jdbc.JDBCDataSource;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Scanner;
+
+/**
+ * Shared benchmark state: an in-memory HSQLDB bookshelf database, populated with a configurable number of books,
+ * and a model initialized on it.
+ */
+@State(Scope.Benchmark)
+public class BookshelfState
+{
+    /**
+     * Model subclass giving access to protected entry points.
+     */
+    public static class BenchmarkModel extends Model
+    {
+        public BenchmarkModel()
+        {
+            super("benchmarks");
+        }
+
+        public PooledStatement prepare(String query) throws SQLException
+        {
+            return prepareQuery(query);
+        }
+    }
+
+    @Param({ "1000" })
+    public int books;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception
+    {
+        JDBCDataSource dataSource = new JDBCDataSource();
+        dataSource.setUrl(DATABASE_URL);
+        dataSource.setUser("sa");
+        dataSource.setPassword("");
+        try (Connection connection = dataSource.getConnection())
+        {
+            populate(connection);
+        }
+        model = new BenchmarkModel();
+        model.setDataSource(dataSource);
+        model.setReverseMode(Model.ReverseMode.TABLES);
+        model.initialize(getResourceReader("bookshelf.xml"));
+    }
+
+    @TearDown(Level.Iteration)
+    public void cleanup() throws SQLException
+    {
+        // drop books inserted during the iteration
+        model.perform("cleanup_books", books);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception
+    {
+        JDBCDataSource dataSource = new JDBCDataSource();
+        dataSource.setUrl(DATABASE_URL);
+        dataSource.setUser("sa");
+        dataSource.setPassword("");
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement())
+        {
+            statement.executeUpdate("DROP SCHEMA PUBLIC CASCADE");
+        }
+    }
+
+    public BenchmarkModel getModel()
+    {
+        return model;
+    }
+
+    private void populate(Connection connection) throws SQLException
+    {
+        try (Statement statement = connection.createStatement())
+        {
+            String sql = new Scanner(getResourceReader("bookshelf.sql")).useDelimiter("\\A").next();
+            for (String command : sql.split(";"))
+            {
+                if (command.trim().length() > 0)
+                {
+                    statement.executeUpdate(command);
+                }
+            }
+        }
+        try (PreparedStatement insert = connection.prepareStatement("insert into book (title, publisher_id) values (?, 1)"))
+        {
+            // the bookshelf script already contains the first book
+            for (int i = 2; i <= books; ++i)
+            {
+                insert.setString(1, "Book #" + i);
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+    }
+
+    private static Reader getResourceReader(String name)
+    {
+        return new InputStreamReader(BookshelfState.class.getClassLoader().getResourceAsStream(name), StandardCharsets.UTF_8);
+    }
+
+    private static final String DATABASE_URL = "jdbc:hsqldb:mem:bookshelf";
+
+    private BenchmarkModel model = null;
+}
@@ -0,0 +1,151 @@
+package com.republicate.modality.benchmarks;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import com.republicate.modality.filter.ValueFilters;
+import com.republicate.modality.util.ConversionHandler;
+import com.republicate.modality.util.ConversionHandlerImpl;
+import com.republicate.modality.util.Converter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.apache.commons.lang3.tuple.Pair;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of values filtering and of conversion handler lookups, run single-threaded ({@link SingleThreaded})
+ * and with concurrent threads ({@link MultiThreaded}). Converter lookups are compared against the former
+ * lookup keyed by a (formal, actual) pair of classes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public abstract class ConversionBenchmark
+{
+    @Threads(1)
+    public static class SingleThreaded extends ConversionBenchmark
+    {
+    }
+
+    @Threads(4)
+    public static class MultiThreaded extends ConversionBenchmark
+    {
+    }
+
+    /**
+     * Former converters lookup, allocating a pair of classes as cache key for each lookup.
+     */
+    public static class PairKeyConversionHandler extends ConversionHandlerImpl
+    {
+        @Override
+        public Converter getNeededConverter(Class formal, Class actual)
+        {
+            Pair<Class, Class> key = Pair.of(formal, actual);
+            Converter converter = cache.get(key);
+            if (converter == null)
+            {
+                converter = lookupConverter(formal, actual);
+                cache.put(key, converter == null ? MISS : converter);
+            }
+            return converter == MISS ? null : converter;
+        }
+
+        private static final Converter MISS = o -> o;
+
+        private final Map<Pair<Class, Class>, Converter> cache = new ConcurrentHashMap<>();
+    }
+
+    @Param({ "classValue", "pairKey" })
+    public String lookup;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        filters = new ValueFilters("model.filters.read.");
+        filters.addMapping("java.sql.Date", "date_to_calendar");
+        filters.addMapping("java.lang.Number", "number_to_boolean");
+        conversionHandler = "pairKey".equals(lookup) ? new PairKeyConversionHandler() : new ConversionHandlerImpl();
+    }
+
+    @Benchmark
+    public void filterValues(Blackhole blackhole) throws SQLException
+    {
+        for (Serializable value : VALUES)
+        {
+            blackhole.consume(filters.filter(value));
+        }
+    }
+
+    @Benchmark
+    public void converterLookups(Blackhole blackhole)
+    {
+        for (Class[] pair : CONVERSIONS)
+        {
+            Converter converter = conversionHandler.isExplicitlyConvertible(pair[0], pair[1], false) ?
+                conversionHandler.getNeededConverter(pair[0], pair[1]) :
+                null;
+            blackhole.consume(converter);
+        }
+    }
+
+    private static final Serializable[] VALUES =
+    {
+        "some string", 42, 42L, new BigDecimal("4.2"), new java.sql.Date(0), new java.sql.Timestamp(0), new GregorianCalendar(), Boolean.TRUE
+    };
+
+    private static final Class[][] CONVERSIONS =
+    {
+        { Integer.TYPE, String.class },
+        { Long.class, Integer.class },
+        { Boolean.TYPE, String.class },
+        { String.class, Integer.class },
+        { Date.class, Calendar.class },
+        { Calendar.class, java.sql.Date.class },
+        { Double.class, BigDecimal.class },
+        { Object.class, String.class }
+    };
+
+    private ValueFilters filters = null;
+
+    private ConversionHandler conversionHandler = null;
+}
@@ -0,0 +1,179 @@
+package com.republicate.modality.benchmarks;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import com.republicate.modality.Entity;
+import com.republicate.modality.Instance;
+import com.republicate.modality.RowsetAttribute;
+import com.republicate.modality.ScalarAttribute;
+import com.republicate.modality.sql.PooledStatement;
+import com.republicate.modality.sql.RowValues;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.Serializable;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the core query path, run single-threaded ({@link SingleThreaded}) and with concurrent
+ * threads ({@link MultiThreaded}).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public abstract class QueryPathBenchmark
+{
+    @Threads(1)
+    public static class SingleThreaded extends QueryPathBenchmark
+    {
+    }
+
+    @Threads(4)
+    public static class MultiThreaded extends QueryPathBenchmark
+    {
+    }
+
+    /**
+     * Per-thread state
+     */
+    @State(Scope.Thread)
+    public static class ThreadState
+    {
+        @Setup(Level.Trial)
+        public void setup(BookshelfState bookshelf) throws SQLException
+        {
+            book = bookshelf.getModel().getEntity("book");
+            bookTitle = (ScalarAttribute)bookshelf.getModel().getAttribute("book_title");
+            allBooks = (RowsetAttribute)bookshelf.getModel().getAttribute("books");
+            query = allBooks.getQuery();
+            books = bookshelf.books;
+            Map<String, Serializable> values = new LinkedHashMap<>();
+            values.put("BOOK_ID", 1);
+            values.put("TITLE", "The Astonishing Life of Duncan Moonwalker");
+            values.put("PUBLISHED", new Date(System.currentTimeMillis()));
+            values.put("PUBLISHER_ID", 1);
+            row = new MapRowValues(values);
+        }
+
+        int randomBookId()
+        {
+            return 1 + ThreadLocalRandom.current().nextInt(books);
+        }
+
+        Entity book;
+        ScalarAttribute bookTitle;
+        RowsetAttribute allBooks;
+        String query;
+        int books;
+        RowValues row;
+    }
+
+    /**
+     * Row values backed by a map, to measure instances building without database access.
+     */
+    static class MapRowValues implements RowValues
+    {
+        MapRowValues(Map<String, Serializable> values)
+        {
+            this.values = values;
+        }
+
+        @Override
+        public Serializable get(Object key)
+        {
+            return values.get(key);
+        }
+
+        @Override
+        public Set<String> keySet()
+        {
+            return values.keySet();
+        }
+
+        private final Map<String, Serializable> values;
+    }
+
+    @Benchmark
+    public void prepareQuery(BookshelfState bookshelf, ThreadState state) throws SQLException
+    {
+        PooledStatement statement = bookshelf.getModel().prepare(state.query);
+        statement.notifyOver();
+    }
+
+    @Benchmark
+    public Serializable evaluateScalar(ThreadState state) throws SQLException
+    {
+        return state.bookTitle.evaluate(state.randomBookId());
+    }
+
+    @Benchmark
+    public void queryAndDrain(ThreadState state, Blackhole blackhole) throws SQLException
+    {
+        Iterator<Instance> books = state.allBooks.query();
+        while (books.hasNext())
+        {
+            blackhole.consume(books.next());
+        }
+    }
+
+    @Benchmark
+    public Instance fetch(ThreadState state) throws SQLException
+    {
+        return state.book.fetch(state.randomBookId());
+    }
+
+    @Benchmark
+    public Instance insert(ThreadState state) throws SQLException
+    {
+        Instance book = state.book.newInstance();
+        book.put("title", "New book");
+        book.put("publisher_id", 1);
+        book.insert();
+        return book;
+    }
+
+    @Benchmark
+    public Instance readValues(ThreadState state) throws SQLException
+    {
+        Instance book = state.book.newInstance();
+        book.readValues(state.row);
+        return book;
+    }
+}
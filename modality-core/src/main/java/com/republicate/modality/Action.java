@@ -20,14 +20,21 @@ package com.republicate.modality;
  */
 
 import com.republicate.modality.impl.AttributeHolder;
+import com.republicate.modality.impl.IdentityCache;
 import com.republicate.modality.impl.PostgresqlCopyManager;
+import com.republicate.modality.impl.ResultCache;
 import com.republicate.modality.sql.ConnectionWrapper;
 import com.republicate.modality.sql.PooledStatement;
 import com.republicate.modality.sql.StatementPool;
+import com.republicate.modality.sql.TypedAccessor;
 
 import java.io.Serializable;
 import java.net.URL;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
 import java.util.Map;
 import java.util.regex.Pattern;
 
@@ -59,20 +66,25 @@ public class Action extends Attribute
         long ret = 0;
         PooledStatement statement = null;
         String query = getQuery();
+        long rows = 0, start = System.nanoTime(), prepared = 0, executed = 0;
+        boolean success = false;
         // Check for postgresql COPY FROM STDIN command
         if (PostgresqlCopyManager.isPostgresqlCopyFromStdin(getModel(), query, paramValues))
         {
-            if (postgresqlCopyManager == null)
+            try
             {
-                synchronized (this)
-                {
-                    if (postgresqlCopyManager == null)
-                    {
-                        postgresqlCopyManager = new PostgresqlCopyManager(getModel());
-                    }
-                }
+                // copies are not prepared
+                prepared = start;
+                rows = ret = getModel().getPostgresqlCopyManager().copyFromStdin(query, paramValues[0]);
+                executed = System.nanoTime();
+                success = true;
+                return ret;
+            }
+            finally
+            {
+                invalidateResults(query);
+                recordExecution(paramValues, rows, start, prepared, executed, success);
             }
-            return postgresqlCopyManager.copyFromStdin(query, paramValues[0]);
         }
         else
         {
@@ -80,12 +92,15 @@ public class Action extends Attribute
             {
 
                 statement = getModel().prepareUpdate(getQuery());
+                prepared = System.nanoTime();
                 statement.getConnection().enterBusyState();
-                ret = statement.executeUpdate(paramValues);
+                rows = ret = statement.executeUpdate(getParamAccessors(), paramValues);
+                executed = System.nanoTime();
                 if (ret == 1 && generatedKeyColumn != null)
                 {
                     ret = statement.getLastInsertID(generatedKeyColumn);
                 }
+                success = true;
             }
             finally
             {
@@ -94,11 +109,172 @@ public class Action extends Attribute
                     statement.notifyOver();
                     statement.getConnection().leaveBusyState();
                 }
+                invalidateResults(query);
+                recordExecution(paramValues, rows, start, prepared, executed, success);
             }
             return ret;
         }
     }
 
+    /**
+     * Perform this action once per source map, using JDBC batches. Runs inside the current transaction if any,
+     * otherwise inside its own transaction.
+     * @param sources parameters sources
+     * @param batchSize maximum number of rows sent per batch
+     * @param generatedKeys if not null and if the action has a generated key column, receives the generated keys,
+     *                      in sources order, provided the driver supports it
+     * @return number of changed rows
+     * @throws SQLException
+     */
+    public long performBatch(Iterable<? extends Map> sources, int batchSize, List<Long> generatedKeys) throws SQLException
+    {
+        long changed = 0;
+        String query = getQuery();
+        ConnectionWrapper connection = null;
+        PreparedStatement statement = null;
+        boolean ownTransaction = false;
+        long start = System.nanoTime(), prepared = 0, executed = 0;
+        boolean success = false;
+        try
+        {
+            connection = StatementPool.getCurrentTransactionConnection(getModel().getModelId());
+            if (connection == null)
+            {
+                connection = getModel().getTransactionConnection();
+                StatementPool.setCurrentTransactionConnection(getModel().getModelId(), connection);
+                ownTransaction = true;
+            }
+            connection.enterBusyState();
+            if (getModel().getLogger().isTraceEnabled())
+            {
+                getModel().getLogger().trace("batch-{}", query);
+            }
+            boolean returnKeys = generatedKeys != null && generatedKeyColumn != null && connection.getMetaData().supportsGetGeneratedKeys();
+            statement = returnKeys
+                ? connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)
+                : connection.prepareStatement(query);
+            prepared = System.nanoTime();
+            TypedAccessor[] accessors = getParamAccessors();
+            int pending = 0;
+            for (Map source : sources)
+            {
+                Serializable[] paramValues = getParamValues(source);
+                for (int i = 0; i < paramValues.length; ++i)
+                {
+                    (accessors == null ? TypedAccessor.OBJECT : accessors[i]).bind(statement, i + 1, paramValues[i]);
+                }
+                statement.addBatch();
+                if (++pending >= batchSize)
+                {
+                    changed += executeBatch(statement, returnKeys ? generatedKeys : null);
+                    pending = 0;
+                }
+            }
+            if (pending > 0)
+            {
+                changed += executeBatch(statement, returnKeys ? generatedKeys : null);
+            }
+            if (ownTransaction)
+            {
+                connection.commit();
+                getModel().getMetrics().recordCommit();
+            }
+            executed = System.nanoTime();
+            success = true;
+            return changed;
+        }
+        catch (SQLException | RuntimeException e)
+        {
+            if (ownTransaction)
+            {
+                try
+                {
+                    connection.rollback();
+                    getModel().getMetrics().recordRollback();
+                }
+                catch (SQLException rollbackException)
+                {
+                    // keep the batch failure as the primary error
+                    e.addSuppressed(rollbackException);
+                }
+            }
+            throw e;
+        }
+        finally
+        {
+            if (statement != null)
+            {
+                statement.close();
+            }
+            if (connection != null)
+            {
+                connection.leaveBusyState();
+                if (ownTransaction)
+                {
+                    StatementPool.resetCurrentTransactionConnection(getModel().getModelId());
+                    getModel().releaseTransactionConnection(connection);
+                }
+            }
+            invalidateResults(query);
+            recordExecution(null, changed, start, prepared, executed, success);
+        }
+    }
+
+    private long executeBatch(PreparedStatement statement, List<Long> generatedKeys) throws SQLException
+    {
+        long changed = 0;
+        for (int count : statement.executeBatch())
+        {
+            if (count > 0)
+            {
+                changed += count;
+            }
+            else if (count == Statement.SUCCESS_NO_INFO)
+            {
+                ++changed;
+            }
+        }
+        if (generatedKeys != null)
+        {
+            try (ResultSet keys = statement.getGeneratedKeys())
+            {
+                // some drivers return all the columns of inserted rows
+                boolean singleColumn = keys.getMetaData().getColumnCount() == 1;
+                while (keys.next())
+                {
+                    long key = singleColumn ? keys.getLong(1) : keys.getLong(generatedKeyColumn);
+                    generatedKeys.add(keys.wasNull() ? null : key);
+                }
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Invalidate cached results and fetched instances depending on the tables written to by a query.
+     * @param query write query
+     */
+    protected void invalidateResults(String query)
+    {
+        ResultCache cache = getModel().getResultCache();
+        if (cache != null)
+        {
+            cache.invalidate(query);
+        }
+        // entities invalidate their own fetch cache entries when updating or deleting instances
+        if (!isInternalAttribute())
+        {
+            for (Entity entity : getModel().getEntities().values())
+            {
+                IdentityCache fetchCache = entity.getFetchCache();
+                if (fetchCache != null)
+                {
+                    fetchCache.invalidate(query);
+                }
+            }
+        }
+    }
+
     @Override
     public String getQueryMethodName()
     {
@@ -110,9 +286,11 @@ public class Action extends Attribute
         this.generatedKeyColumn = generatedKeyColumn;
     }
 
-    private String generatedKeyColumn = null;
+    public String getGeneratedKeyColumn()
+    {
+        return generatedKeyColumn;
+    }
 
-    // for postgresql COPY FROM STDIN
-    protected PostgresqlCopyManager postgresqlCopyManager = null;
+    private String generatedKeyColumn = null;
 
 }
@@ -0,0 +1,267 @@
+package com.republicate.modality;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import com.republicate.modality.sql.TypedAccessor;
+import com.republicate.modality.util.ConversionUtils;
+
+import java.io.Serializable;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Compact read-only row, as an alternative to instances for large rowsets.</p>
+ * <p>A row only holds its values array, while column names and read filters are held by a schema shared
+ * by all the rows of a query. Values are read and filtered the same way as instance values, and a row can be
+ * converted to a full instance on demand.</p>
+ */
+public class CompactRow implements Serializable
+{
+    /**
+     * Columns schema, shared by all the rows of a query
+     */
+    public static class Schema implements Serializable
+    {
+        /**
+         * Constructor.
+         * @param model model
+         * @param entity result entity, may be null
+         * @param labels result set column labels
+         * @throws SQLException
+         */
+        public Schema(Model model, Entity entity, List<String> labels) throws SQLException
+        {
+            this.model = model;
+            this.entity = entity;
+            int size = labels.size();
+            names = new String[size];
+            columns = new Entity.Column[size];
+            indices = new HashMap<>(size * 2);
+            for (int i = 0; i < size; ++i)
+            {
+                String label = labels.get(i);
+                if (entity == null)
+                {
+                    names[i] = model.getIdentifiersFilters().transformColumnName(label);
+                }
+                else
+                {
+                    names[i] = entity.translateColumnName(label);
+                    columns[i] = entity.getColumn(names[i]);
+                }
+                indices.putIfAbsent(names[i], i);
+            }
+        }
+
+        /**
+         * Get the columns names.
+         * @return columns names, in result set order
+         */
+        public List<String> getNames()
+        {
+            return Collections.unmodifiableList(Arrays.asList(names));
+        }
+
+        /**
+         * Get a column name.
+         * @param index column index
+         * @return column name
+         */
+        public String getName(int index)
+        {
+            return names[index];
+        }
+
+        /**
+         * Get the index of a column.
+         * @param name column name
+         * @return column index, or -1 if not found
+         */
+        public int indexOf(String name)
+        {
+            Integer index = indices.get(name);
+            return index == null ? -1 : index;
+        }
+
+        public int size()
+        {
+            return names.length;
+        }
+
+        public Entity getEntity()
+        {
+            return entity;
+        }
+
+        /**
+         * Get the typed accessor of a column.
+         * @param index column index
+         * @return typed accessor
+         */
+        public TypedAccessor getAccessor(int index)
+        {
+            Entity.Column column = columns[index];
+            return column == null ? TypedAccessor.OBJECT : column.getAccessor();
+        }
+
+        /**
+         * Apply the column read filter, if any.
+         * @param index column index
+         * @param value raw value
+         * @return filtered value
+         * @throws SQLException
+         */
+        public Serializable read(int index, Serializable value) throws SQLException
+        {
+            Entity.Column column = columns[index];
+            return value == null
+                ? null
+                : column == null
+                ? model.getFilters().getReadFilters().filter(value)
+                : column.read(value);
+        }
+
+        protected Model getModel()
+        {
+            return model;
+        }
+
+        /** model */
+        private final transient Model model;
+
+        /** result entity */
+        private final transient Entity entity;
+
+        /** columns names */
+        private final String[] names;
+
+        /** entity columns, if any */
+        private final transient Entity.Column[] columns;
+
+        /** columns indices by name */
+        private final Map<String, Integer> indices;
+    }
+
+    /**
+     * Constructor.
+     * @param schema shared columns schema
+     * @param values row values, in schema order
+     */
+    public CompactRow(Schema schema, Serializable[] values)
+    {
+        this.schema = schema;
+        this.values = values;
+    }
+
+    public Schema getSchema()
+    {
+        return schema;
+    }
+
+    public Serializable get(int index)
+    {
+        return values[index];
+    }
+
+    public Serializable get(String name)
+    {
+        int index = schema.indexOf(name);
+        return index == -1 ? null : values[index];
+    }
+
+    public String getString(String name)
+    {
+        return ConversionUtils.toString(get(name));
+    }
+
+    public Boolean getBoolean(String name)
+    {
+        return ConversionUtils.toBoolean(get(name));
+    }
+
+    public Integer getInteger(String name)
+    {
+        return ConversionUtils.toInteger(get(name));
+    }
+
+    public Long getLong(String name)
+    {
+        return ConversionUtils.toLong(get(name));
+    }
+
+    public Double getDouble(String name)
+    {
+        return ConversionUtils.toDouble(get(name));
+    }
+
+    public Date getDate(String name)
+    {
+        return ConversionUtils.toDate(get(name));
+    }
+
+    public Calendar getCalendar(String name)
+    {
+        return ConversionUtils.toCalendar(get(name));
+    }
+
+    public int size()
+    {
+        return values.length;
+    }
+
+    /**
+     * Build a full instance from this row.
+     * @return new instance
+     */
+    public Instance toInstance()
+    {
+        Entity entity = schema.getEntity();
+        Instance instance = entity == null ? new Instance(schema.getModel()) : entity.newInstance();
+        instance.readRow(this);
+        return instance;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder builder = new StringBuilder("{");
+        for (int i = 0; i < values.length; ++i)
+        {
+            if (i > 0)
+            {
+                builder.append(", ");
+            }
+            builder.append(schema.names[i]).append('=').append(values[i]);
+        }
+        return builder.append('}').toString();
+    }
+
+    /** shared columns schema */
+    private final Schema schema;
+
+    /** values */
+    private final Serializable[] values;
+}
@@ -20,15 +20,35 @@ package com.republicate.modality;
  */
 
 import com.republicate.modality.impl.BaseEntity;
+import com.republicate.modality.impl.IdentityCache;
+import com.republicate.modality.sql.DriverInfos;
 import com.republicate.modality.util.ConversionUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Serializable;
+import java.io.Writer;
+import java.lang.reflect.Array;
 import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 public class Entity extends BaseEntity implements Iterable<Instance>
 {
@@ -48,6 +68,62 @@ public class Entity extends BaseEntity implements Iterable<Instance>
         return getIterateAttribute().query();
     }
 
+    /**
+     * Iterate on all instances, prefetching the targets of some upstream joins.
+     * @param prefetch upstream joins names
+     * @return instances iterator
+     * @throws SQLException
+     * @see #prefetch(Iterator, String...)
+     */
+    public Iterator<Instance> iterate(String... prefetch) throws SQLException
+    {
+        return prefetch(iterate(), prefetch);
+    }
+
+    /**
+     * Get a lazy stream of all instances, to be closed if not fully consumed.
+     * @return stream of instances
+     * @throws SQLException
+     */
+    public Stream<Instance> stream() throws SQLException
+    {
+        return getIterateAttribute().stream();
+    }
+
+    /**
+     * Export all rows in CSV format, with a <code>COPY ... TO STDOUT</code> statement when supported.
+     * @param writer target writer
+     * @return number of exported rows
+     * @throws SQLException
+     * @see RowsetAttribute#copyOut(Writer, Serializable...)
+     */
+    public long copyOut(Writer writer) throws SQLException
+    {
+        return getIterateAttribute().copyOut(writer);
+    }
+
+    /**
+     * Export all rows in UTF-8 encoded CSV format.
+     * @param output target stream
+     * @return number of exported rows
+     * @throws SQLException
+     * @see #copyOut(Writer)
+     */
+    public long copyOut(OutputStream output) throws SQLException
+    {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+        long rows = copyOut(writer);
+        try
+        {
+            writer.flush();
+        }
+        catch (IOException ioe)
+        {
+            throw new SQLException("could not export rows", ioe);
+        }
+        return rows;
+    }
+
     public Iterator<Instance> iterator()
     {
         try
@@ -72,13 +148,291 @@ public class Entity extends BaseEntity implements Iterable<Instance>
         {
             throw new SQLException("Cannot fetch entity " + getName() + ": no primary key");
         }
-        return getFetchAttribute().retrieve(key);
+        IdentityCache cache = getFetchCache();
+        if (cache == null)
+        {
+            return getFetchAttribute().retrieve(key);
+        }
+        return copyOf(cache.get(getFetchCacheKey(key), () -> getFetchAttribute().retrieve(key)));
     }
 
     public Instance fetch(Map key) throws SQLException
     {
         getLogger().trace("fetch {}", getName());
-        return getFetchAttribute().retrieve(key);
+        IdentityCache cache = getFetchCache();
+        if (cache == null)
+        {
+            return getFetchAttribute().retrieve(key);
+        }
+        return copyOf(cache.get(getFetchCacheKey(key), () -> getFetchAttribute().retrieve(key)));
+    }
+
+    /**
+     * Fetch several instances by primary key values, using as few queries as possible. Keys are looked up in chunks
+     * of at most <code>model.fetch_chunk_size</code> values. If the driver supports array parameters, each chunk of keys
+     * sharing the same class is bound as a single array, with <code>= ANY(?)</code> or <code>IN (UNNEST(?))</code>; otherwise, it is padded up to the next power of two in an
+     * <code>IN</code> list, so that only a few distinct statements are ever prepared. The fetch cache, if any, is bypassed.
+     * @param keys primary key values (the entity must have a single column primary key)
+     * @return found instances, by key, in keys order
+     * @throws SQLException
+     */
+    public <K extends Serializable> Map<K, Instance> fetchAll(Collection<K> keys) throws SQLException
+    {
+        getLogger().trace("fetchAll {}", getName());
+        List<Column> primaryKey = getPrimaryKey();
+        if (primaryKey == null || primaryKey.size() != 1)
+        {
+            throw new SQLException("Cannot fetch several instances of entity " + getName() + ": no single column primary key");
+        }
+        String keyColumn = primaryKey.get(0).name;
+        // database values are matched back to the given keys using their string values
+        Map<String, K> pending = new LinkedHashMap<>();
+        List<Serializable> filtered = new ArrayList<>();
+        for (K key : keys)
+        {
+            Serializable value = filterValue(keyColumn, key);
+            if (value != null && pending.putIfAbsent(String.valueOf(value), key) == null)
+            {
+                filtered.add(value);
+            }
+        }
+        Map<String, Instance> found = new HashMap<>();
+        int chunkSize = getModel().getFetchChunkSize();
+        boolean arrays = getModel().getDriverInfos().getArrayKeysPolicy() != DriverInfos.ArrayKeysPolicy.NONE;
+        for (int start = 0; start < filtered.size(); start += chunkSize)
+        {
+            List<Serializable> values = new ArrayList<>(filtered.subList(start, Math.min(start + chunkSize, filtered.size())));
+            Serializable array = arrays ? toKeysArray(values) : null;
+            Iterator<Instance> instances;
+            if (array != null)
+            {
+                instances = getFetchAnyAttribute().query(array);
+            }
+            else
+            {
+                int size = Math.min(Integer.highestOneBit(values.size() * 2 - 1), chunkSize);
+                Serializable last = values.get(values.size() - 1);
+                while (values.size() < size)
+                {
+                    values.add(last);
+                }
+                instances = getFetchAllAttribute(size).query(values.toArray(new Serializable[size]));
+            }
+            while (instances.hasNext())
+            {
+                Instance instance = instances.next();
+                found.put(String.valueOf(filterValue(keyColumn, instance.get(keyColumn))), instance);
+            }
+        }
+        Map<K, Instance> ret = new LinkedHashMap<>();
+        for (Map.Entry<String, K> entry : pending.entrySet())
+        {
+            Instance instance = found.get(entry.getKey());
+            if (instance != null)
+            {
+                ret.put(entry.getValue(), instance);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Get an array of key values, typed after their common class, if drivers can bind it.
+     * @param values filtered key values
+     * @return keys array, or null if values don't share one of the supported classes
+     */
+    private static Serializable toKeysArray(List<Serializable> values)
+    {
+        Class clazz = values.get(0).getClass();
+        if (!arrayKeyClasses.contains(clazz))
+        {
+            return null;
+        }
+        Object[] array = (Object[])Array.newInstance(clazz, values.size());
+        for (int i = 0; i < array.length; ++i)
+        {
+            Serializable value = values.get(i);
+            if (value.getClass() != clazz)
+            {
+                return null;
+            }
+            array[i] = value;
+        }
+        return (Serializable)array;
+    }
+
+    /**
+     * Load the targets of upstream joins for several instances of this entity, using one query per join and per
+     * chunk of keys, and attach a copy of them to each instance, so that retrieving them doesn't issue any further query.
+     * @param instances instances of this entity
+     * @param joins upstream joins names (only joins on single column keys can be prefetched)
+     * @throws SQLException
+     */
+    public void prefetch(Collection<? extends Instance> instances, String... joins) throws SQLException
+    {
+        for (String join : joins)
+        {
+            Pair<Entity, String> upstreamJoin = getUpstreamJoin(join);
+            if (upstreamJoin == null)
+            {
+                throw new SQLException("Cannot prefetch " + getName() + "." + join + ": not an upstream join on a single column key");
+            }
+            String fkColumn = upstreamJoin.getRight();
+            List<Serializable> keys = new ArrayList<>();
+            for (Instance instance : instances)
+            {
+                Serializable key = instance.get(fkColumn);
+                if (key != null)
+                {
+                    keys.add(key);
+                }
+            }
+            Entity target = upstreamJoin.getLeft();
+            Map<Serializable, Instance> targets = target.fetchAll(keys);
+            for (Instance instance : instances)
+            {
+                Serializable key = instance.get(fkColumn);
+                // each instance gets its own copy, so that modifying it doesn't affect instances sharing the same target
+                instance.setPrefetched(join, key == null ? null : target.copyOf(targets.get(key)));
+            }
+        }
+    }
+
+    /**
+     * Wrap an iterator on instances of this entity so that the targets of upstream joins are prefetched,
+     * reading ahead pages of <code>model.fetch_chunk_size</code> instances.
+     * @param instances instances iterator
+     * @param joins upstream joins names
+     * @return prefetching iterator, or the given iterator if there is no join to prefetch
+     */
+    public Iterator<Instance> prefetch(Iterator<Instance> instances, String... joins)
+    {
+        return joins == null || joins.length == 0 ? instances : new PrefetchIterator(instances, joins);
+    }
+
+    public CompletableFuture<Instance> fetchAsync(Serializable... key)
+    {
+        return getModel().async(() -> fetch(key));
+    }
+
+    public CompletableFuture<Instance> fetchAsync(Map key)
+    {
+        return getModel().async(() -> fetch(key));
+    }
+
+    /**
+     * Write instances using JDBC batches, inside a single transaction: new instances are inserted,
+     * and modified persisted instances are updated.
+     * @param instances instances to write
+     * @return number of changed rows
+     * @throws SQLException
+     */
+    public long flush(Iterable<? extends Instance> instances) throws SQLException
+    {
+        List<Instance> inserted = new ArrayList<>();
+        List<Instance> updated = new ArrayList<>();
+        for (Instance instance : instances)
+        {
+            if (instance.getEntity() != this)
+            {
+                throw new SQLException("cannot flush an instance of another entity with entity " + getName());
+            }
+            instance.ensureWritable();
+            if (!instance.isPersisted())
+            {
+                inserted.add(instance);
+            }
+            else if (instance.isDirty())
+            {
+                updated.add(instance);
+            }
+        }
+        long[] changed = { 0 };
+        performBatches(() ->
+        {
+            changed[0] += insertBatch(inserted);
+            changed[0] += updateBatch(updated);
+        });
+        inserted.forEach(Instance::setInserted);
+        updated.forEach(Instance::setClean);
+        return changed[0];
+    }
+
+    private Instance copyOf(Instance cached)
+    {
+        if (cached == null)
+        {
+            return null;
+        }
+        Instance instance = newInstance();
+        instance.copyValues(cached);
+        return instance;
+    }
+
+    /**
+     * Iterator reading instances by pages, and prefetching join targets for each page.
+     */
+    private class PrefetchIterator implements Iterator<Instance>
+    {
+        PrefetchIterator(Iterator<Instance> source, String[] joins)
+        {
+            this.source = source;
+            this.joins = joins;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            if (index == page.size())
+            {
+                readPage();
+            }
+            return index < page.size();
+        }
+
+        @Override
+        public Instance next()
+        {
+            if (!hasNext())
+            {
+                throw new NoSuchElementException();
+            }
+            return page.get(index++);
+        }
+
+        private void readPage()
+        {
+            page.clear();
+            index = 0;
+            int pageSize = getModel().getFetchChunkSize();
+            while (page.size() < pageSize && source.hasNext())
+            {
+                page.add(source.next());
+            }
+            if (!page.isEmpty())
+            {
+                try
+                {
+                    prefetch(page, joins);
+                }
+                catch (SQLException sqle)
+                {
+                    throw new ModelException("cannot prefetch joins of " + getName(), sqle);
+                }
+            }
+        }
+
+        /** source iterator */
+        private final Iterator<Instance> source;
+
+        /** upstream joins to prefetch */
+        private final String[] joins;
+
+        /** current page */
+        private final List<Instance> page = new ArrayList<>();
+
+        /** index in current page */
+        private int index = 0;
     }
 
     @Override
@@ -92,5 +446,6 @@ public class Entity extends BaseEntity implements Iterable<Instance>
         return super.getWrappedInstanceSetters();
     }
 
-
+    /** classes of key values which can be bound as arrays */
+    private static final Set<Class> arrayKeyClasses = new HashSet<>(Arrays.asList(Integer.class, Long.class, Short.class, String.class));
 }
@@ -20,7 +20,7 @@ package com.republicate.modality;
  */
 
 import com.republicate.json.Json;
-import com.republicate.modality.filter.ValueFilters;
+import com.republicate.modality.sql.PooledStatement;
 import com.republicate.modality.sql.RowValues;
 import com.republicate.modality.util.ChainedMap;
 import com.republicate.modality.util.ConversionUtils;
@@ -30,14 +30,18 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public class Instance extends Json.Object
 {
@@ -56,24 +60,77 @@ public class Instance extends Json.Object
 
     public void readValues(RowValues values) throws SQLException
     {
-        ValueFilters filters = getModel().getFilters().getReadFilters();
         for (String key : values.keySet())
         {
-            Serializable value = values.get(key);
-            if (value != null)
-            {
-                value = filters.filter(value);
-            }
             readValue(key, values.get(key));
         }
         setClean();
         persisted = lookupPersisted();
     }
 
+    /**
+     * Read the values of the current row of a statement, reading the result entity columns with their typed accessors.
+     * @param statement statement positioned on a row
+     * @throws SQLException
+     */
+    public void readValues(PooledStatement statement) throws SQLException
+    {
+        readValues(statement, new CompactRow.Schema(getModel(), entity, new ArrayList<>(statement.getColumnIndices().keySet())));
+    }
+
+    /**
+     * Read the values of the current row of a statement, with result set columns resolved beforehand,
+     * typically once per result set.
+     * @param statement statement positioned on a row
+     * @param schema result set columns, resolved for this instance entity
+     * @throws SQLException
+     */
+    public void readValues(PooledStatement statement, CompactRow.Schema schema) throws SQLException
+    {
+        int i = 0;
+        for (Map.Entry<String, Integer> entry : statement.getColumnIndices().entrySet())
+        {
+            readValue(entry.getKey(), schema, i, statement.getValue(entry.getValue(), schema.getAccessor(i)));
+            ++i;
+        }
+        setClean();
+        persisted = lookupPersisted();
+    }
+
+    /**
+     * Read the values of a compact row, which are already filtered.
+     * @param row source row
+     */
+    protected void readRow(CompactRow row)
+    {
+        List<String> names = row.getSchema().getNames();
+        for (int i = 0; i < names.size(); ++i)
+        {
+            super.put(names.get(i), row.get(i));
+        }
+        setClean();
+        persisted = lookupPersisted();
+    }
+
+    /**
+     * Copy the values of another instance, typically a cached one.
+     * @param source source instance
+     */
+    protected void copyValues(Instance source)
+    {
+        for (String key : source.keySet())
+        {
+            putImpl(key, source.get(key));
+        }
+        setClean();
+        persisted = source.persisted;
+    }
+
     public void readValue(String key, Serializable value) throws SQLException
     {
         // get column if any
         String colName;
+        Entity.Column column = null;
         if (entity == null)
         {
             colName = getModel().getIdentifiersFilters().transformColumnName(key);
@@ -81,20 +138,33 @@ public class Instance extends Json.Object
         else
         {
             colName = entity.translateColumnName(key);
-            if (value != null)
-            {
-                Entity.Column column = entity.getColumn(colName);
-                if (column != null)
-                {
-                    // filter value
-                    value = entity.getColumn(colName).read(value);
-                }
-            }
+            column = entity.getColumn(colName);
+        }
+        if (value != null)
+        {
+            // filter value, columns read filters include type mappings
+            value = column == null
+                ? getModel().getFilters().getReadFilters().filter(value)
+                : column.read(value);
         }
         // always put the value, even null
         super.put(colName, value);
     }
 
+    /**
+     * Read the value of a resolved result set column.
+     * @param key result set column label
+     * @param schema result set columns
+     * @param index column index in schema
+     * @param value value returned by the column typed accessor
+     * @throws SQLException
+     */
+    protected void readValue(String key, CompactRow.Schema schema, int index, Serializable value) throws SQLException
+    {
+        // always put the value, even null
+        super.put(schema.getName(index), schema.read(index, value));
+    }
+
     public Serializable evaluate(String name, Map params) throws SQLException
     {
         return entity.evaluate(name, params == null ? (Map)this : new ChainedMap(this, params));
@@ -232,6 +302,10 @@ public class Instance extends Json.Object
 
     public Instance retrieve(String name, Serializable... params) throws SQLException
     {
+        if (params.length == 0 && prefetched != null && prefetched.containsKey(name))
+        {
+            return prefetched.get(name);
+        }
         boolean doCache = params.length == 0 && entity.isCachedAttribute(name);
         if (doCache && containsKey(name))
         {
@@ -255,6 +329,16 @@ public class Instance extends Json.Object
         return entity.query(name, (Map)this, params);
     }
 
+    public Stream<Instance> stream(String name, Map params) throws SQLException
+    {
+        return entity.stream(name, params == null ? (Map)this : new ChainedMap(this, params));
+    }
+
+    public Stream<Instance> stream(String name, Serializable... params) throws SQLException
+    {
+        return entity.stream(name, (Map)this, params);
+    }
+
     public long perform(String name, Map params) throws SQLException
     {
         if (!canWrite)
@@ -273,6 +357,66 @@ public class Instance extends Json.Object
         return entity.perform(name, (Map)this, params);
     }
 
+    /*
+     * Asynchronous variants: they run on the model executor, outside of any current transaction, and never use
+     * nor fill the instance cache of attributes results. The instance must not be modified until completion.
+     */
+
+    public CompletableFuture<Serializable> evaluateAsync(String name, Map params)
+    {
+        return entity.evaluateAsync(name, params == null ? (Map)this : new ChainedMap(this, params));
+    }
+
+    public CompletableFuture<Serializable> evaluateAsync(String name, Serializable... params)
+    {
+        return entity.evaluateAsync(name, (Map)this, params);
+    }
+
+    public CompletableFuture<Instance> retrieveAsync(String name, Map params)
+    {
+        return entity.retrieveAsync(name, params == null ? (Map)this : new ChainedMap(this, params));
+    }
+
+    public CompletableFuture<Instance> retrieveAsync(String name, Serializable... params)
+    {
+        return entity.retrieveAsync(name, (Map)this, params);
+    }
+
+    public CompletableFuture<List<Instance>> queryAsync(String name, Map params)
+    {
+        return entity.queryAsync(name, params == null ? (Map)this : new ChainedMap(this, params));
+    }
+
+    public CompletableFuture<List<Instance>> queryAsync(String name, Serializable... params)
+    {
+        return entity.queryAsync(name, (Map)this, params);
+    }
+
+    public CompletableFuture<Long> performAsync(String name, Map params)
+    {
+        if (!canWrite)
+        {
+            return failedFuture(new SQLException("instance is read-only"));
+        }
+        return entity.performAsync(name, params == null ? (Map)this : new ChainedMap(this, params));
+    }
+
+    public CompletableFuture<Long> performAsync(String name, Serializable... params)
+    {
+        if (!canWrite)
+        {
+            return failedFuture(new SQLException("instance is read-only"));
+        }
+        return entity.performAsync(name, (Map)this, params);
+    }
+
+    private static <T> CompletableFuture<T> failedFuture(Throwable cause)
+    {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(cause);
+        return future;
+    }
+
     public String getString(String name)
     {
         return ConversionUtils.toString(get(name));
@@ -374,6 +518,28 @@ public class Instance extends Json.Object
         return !persisted || dirtyFlags.cardinality() > 0;
     }
 
+    protected boolean isPersisted()
+    {
+        return persisted;
+    }
+
+    /**
+     * Update instance state once it has been inserted by a batch.
+     */
+    protected void setInserted()
+    {
+        persisted = lookupPersisted();
+        setClean();
+    }
+
+    protected void ensureWritable() throws SQLException
+    {
+        if (!canWrite)
+        {
+            throw new SQLException("instance is read-only");
+        }
+    }
+
     public void refresh() throws SQLException
     {
         ensurePersisted();
@@ -432,7 +598,13 @@ public class Instance extends Json.Object
         Serializable[] pk;
         if (lookupPersisted())
         {
-            // TODO - some vendors support upsert
+            if (entity.hasNativeUpsert())
+            {
+                entity.upsert(this);
+                persisted = true;
+                setClean();
+                return;
+            }
             Instance prev = entity.fetch(getPrimaryKey());
             if (prev == null)
             {
@@ -510,6 +682,10 @@ public class Instance extends Json.Object
     public final Serializable put(String key, Serializable value)
     {
         Serializable ret = putImpl(key, value);
+        if (prefetched != null && entity.hasColumn(key))
+        {
+            prefetched = null;
+        }
         if (persisted)
         {
             Entity.Column column = entity.getColumn(key);
@@ -614,6 +790,21 @@ public class Instance extends Json.Object
         }
     }
 
+    /**
+     * Attach the prefetched target of an upstream join, which will be returned by <code>retrieve(name)</code>.
+     * The target must not be shared with other instances.
+     * @param name join attribute name
+     * @param target target instance, or null if not found
+     */
+    protected void setPrefetched(String name, Instance target)
+    {
+        if (prefetched == null)
+        {
+            prefetched = new HashMap<>();
+        }
+        prefetched.put(name, target);
+    }
+
     protected void setModel(Model model)
     {
         this.model = model;
@@ -634,6 +825,8 @@ public class Instance extends Json.Object
 
     private boolean persisted = false;
 
+    private transient Map<String, Instance> prefetched = null;
+
     private static final long serialVersionUID = -6234576437555893893L;
 
     private class LazyModelSetter implements Consumer<Model>
@@ -20,6 +20,8 @@ package com.republicate.modality;
  */
 
 import com.republicate.modality.impl.BaseModel;
+import com.republicate.modality.impl.ReplicaSet;
+import com.republicate.modality.sql.ConnectionPool;
 import com.republicate.modality.sql.ConnectionWrapper;
 import com.republicate.modality.sql.PooledStatement;
 import com.republicate.modality.sql.StatementPool;
@@ -27,6 +29,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.function.Function;
 
 public class Model extends BaseModel
@@ -55,7 +59,27 @@ public class Model extends BaseModel
     protected PooledStatement prepareQuery(String query) throws SQLException
     {
         checkInitialized();
-        return getStatementPool().prepareQuery(query);
+        ReplicaSet.Replica replica = getReadReplica();
+        return (replica == null ? getStatementPool() : replica.getStatementPool()).prepareQuery(query);
+    }
+
+    /**
+     * Prepare a streamed query, on a dedicated manual commit connection. Since a shared pool may hand out
+     * a connection used by another thread's transaction, the query is not streamed unless the pool hands out
+     * exclusive connections.
+     *
+     * @param query an sql query
+     * @return the dedicated prepared statement corresponding to the query, or a pooled one
+     */
+    protected PooledStatement prepareStreamingQuery(String query) throws SQLException
+    {
+        checkInitialized();
+        ReplicaSet.Replica replica = getReadReplica();
+        StatementPool statementPool = replica == null ? getStatementPool() : replica.getStatementPool();
+        ConnectionPool streamingPool = replica == null ? getTransactionConnectionPool() : replica.getStreamingConnectionPool();
+        return streamingPool.isExclusive()
+            ? statementPool.prepareStreamingQuery(query, streamingPool)
+            : statementPool.prepareQuery(query);
     }
 
     /**
@@ -67,6 +91,7 @@ public class Model extends BaseModel
     protected PooledStatement prepareUpdate(String query) throws SQLException
     {
         checkInitialized();
+        recordPrimaryWrite();
         return getStatementPool().prepareUpdate(query);
     }
 
@@ -82,6 +107,48 @@ public class Model extends BaseModel
         return super.getTransactionConnection();
     }
 
+    /**
+     * Give back a transaction connection
+     * @param connection transaction connection
+     */
+    @Override
+    protected void releaseTransactionConnection(ConnectionWrapper connection)
+    {
+        super.releaseTransactionConnection(connection);
+    }
+
+    /**
+     * Run an operation asynchronously on the model executor. The operation runs outside of any current
+     * transaction, and statements it prepares use their own connections.
+     * @param operation operation
+     * @param <T> result type
+     * @return future result, completed exceptionally with the SQLException thrown by the operation, if any
+     */
+    public <T> CompletableFuture<T> async(ModelCallable<T> operation)
+    {
+        checkInitialized();
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try
+        {
+            getExecutor().execute(() ->
+            {
+                try
+                {
+                    future.complete(operation.call());
+                }
+                catch (Throwable t)
+                {
+                    future.completeExceptionally(t);
+                }
+            });
+        }
+        catch (RejectedExecutionException ree)
+        {
+            future.completeExceptionally(ree);
+        }
+        return future;
+    }
+
     /**
      * Perform operations inside a transaction connection
      */
@@ -96,6 +163,7 @@ public class Model extends BaseModel
             StatementPool.setCurrentTransactionConnection(getModelId(), connection);
             operation.run();
             connection.commit();
+            getMetrics().recordCommit();
         }
         catch (SQLException sqle)
         {
@@ -105,6 +173,7 @@ public class Model extends BaseModel
                 if (connection != null)
                 {
                     connection.rollback();
+                    getMetrics().recordRollback();
                 }
             }
             catch (SQLException sqlee)
@@ -119,6 +188,7 @@ public class Model extends BaseModel
             {
                 StatementPool.resetCurrentTransactionConnection(getModelId());
                 connection.leaveBusyState();
+                releaseTransactionConnection(connection);
             }
         }
     }
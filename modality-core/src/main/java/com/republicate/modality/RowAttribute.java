@@ -20,6 +20,7 @@ package com.republicate.modality;
  */
 
 import com.republicate.modality.impl.AttributeHolder;
+import com.republicate.modality.impl.ResultCache;
 import com.republicate.modality.sql.PooledStatement;
 
 import java.io.Serializable;
@@ -50,20 +51,43 @@ public class RowAttribute extends Attribute
     }
 
     protected Instance retrieveImpl(Serializable... paramValues) throws SQLException
+    {
+        ResultCache cache = getResultCache();
+        if (cache != null)
+        {
+            // cached instances are never handed out, callers get a copy
+            Instance cached = (Instance)cache.get(this, paramValues, () -> retrieveUncached(paramValues));
+            if (cached == null)
+            {
+                return null;
+            }
+            Instance instance = newResultInstance();
+            instance.copyValues(cached);
+            return instance;
+        }
+        return retrieveUncached(paramValues);
+    }
+
+    protected Instance retrieveUncached(Serializable... paramValues) throws SQLException
     {
         Instance instance = null;
         PooledStatement statement = null;
+        long start = System.nanoTime(), prepared = 0, executed = 0;
+        boolean success = false;
         try
         {
             // CB TODO - we don't impose the result set cardinality to be exactly one, this should be an option (or two, for null and > 1)
             statement = getModel().prepareQuery(getQuery());
+            prepared = System.nanoTime();
             statement.getConnection().enterBusyState();
-            ResultSet result = statement.executeQuery(paramValues);
+            ResultSet result = statement.executeQuery(getParamAccessors(), paramValues);
+            executed = System.nanoTime();
             if (result.next())
             {
                 instance = newResultInstance();
                 instance.readValues(statement);
             }
+            success = true;
         }
         finally
         {
@@ -72,6 +96,7 @@ public class RowAttribute extends Attribute
                 statement.notifyOver();
                 statement.getConnection().leaveBusyState();
             }
+            recordExecution(paramValues, instance == null ? 0 : 1, start, prepared, executed, success);
         }
         return instance;
     }
@@ -20,14 +20,27 @@ package com.republicate.modality;
  */
 
 import com.republicate.modality.impl.AttributeHolder;
+import com.republicate.modality.impl.PostgresqlCopyManager;
+import com.republicate.modality.impl.ResultCache;
 import com.republicate.modality.impl.RowIterator;
+import com.republicate.modality.sql.CsvFormat;
+import com.republicate.modality.sql.DriverInfos;
 import com.republicate.modality.sql.PooledStatement;
+import com.republicate.modality.sql.StatementPool;
 
+import java.io.IOException;
 import java.io.Serializable;
+import java.io.Writer;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class RowsetAttribute extends Attribute
 {
@@ -51,17 +64,218 @@ public class RowsetAttribute extends Attribute
         return queryImpl(getParamValues(source, params));
     }
 
+    /**
+     * Get a lazy stream of the resulting instances. The stream must be closed if not fully consumed,
+     * typically using a try-with-resources statement, so that the underlying statement is released.
+     * <p>Results are only fetched from the database as the stream is consumed when the attribute has a fetch size,
+     * the driver supports server-side cursors and the model uses a bounded or unified connections pool.
+     * With the default shared pool, results are fully buffered by the driver.</p>
+     * @param params parameters values
+     * @return stream of instances
+     * @throws SQLException
+     */
+    public Stream<Instance> stream(Serializable... params) throws SQLException
+    {
+        return streamImpl(getParamValues(params));
+    }
+
+    public Stream<Instance> stream(Map source) throws SQLException
+    {
+        return streamImpl(getParamValues(source));
+    }
+
+    public Stream<Instance> stream(Map source, Serializable... params) throws SQLException
+    {
+        return streamImpl(getParamValues(source, params));
+    }
+
+    /**
+     * Get the results as compact read-only rows, which are much lighter than instances for large rowsets.
+     * Results are never taken from the results cache.
+     * @param params parameters values
+     * @return rows iterator
+     * @throws SQLException
+     */
+    public Iterator<CompactRow> queryRows(Serializable... params) throws SQLException
+    {
+        return queryUncached(getParamValues(params)).rows();
+    }
+
+    public Iterator<CompactRow> queryRows(Map source) throws SQLException
+    {
+        return queryUncached(getParamValues(source)).rows();
+    }
+
+    public Iterator<CompactRow> queryRows(Map source, Serializable... params) throws SQLException
+    {
+        return queryUncached(getParamValues(source, params)).rows();
+    }
+
+    /**
+     * Get a lazy stream of compact read-only rows, to be closed if not fully consumed.
+     * @param params parameters values
+     * @return stream of rows
+     * @throws SQLException
+     */
+    public Stream<CompactRow> streamRows(Serializable... params) throws SQLException
+    {
+        return streamRowsImpl(getParamValues(params));
+    }
+
+    public Stream<CompactRow> streamRows(Map source) throws SQLException
+    {
+        return streamRowsImpl(getParamValues(source));
+    }
+
+    public Stream<CompactRow> streamRows(Map source, Serializable... params) throws SQLException
+    {
+        return streamRowsImpl(getParamValues(source, params));
+    }
+
+    /**
+     * Export the results in CSV format, with a <code>COPY (query) TO STDOUT</code> statement when supported
+     * and when the attribute has no parameter, by reading the results otherwise. Values are exported as returned
+     * by the database, without read filters.
+     * @param writer target writer
+     * @param params parameters values
+     * @return number of exported rows
+     * @throws SQLException
+     */
+    public long copyOut(Writer writer, Serializable... params) throws SQLException
+    {
+        return copyOutImpl(writer, getParamValues(params));
+    }
+
+    public long copyOut(Writer writer, Map source) throws SQLException
+    {
+        return copyOutImpl(writer, getParamValues(source));
+    }
+
+    public long copyOut(Writer writer, Map source, Serializable... params) throws SQLException
+    {
+        return copyOutImpl(writer, getParamValues(source, params));
+    }
+
+    /**
+     * Get the upstream joins of the result entity whose targets are prefetched for each page of results.
+     * @return prefetched joins names, or null
+     */
+    public String[] getPrefetch()
+    {
+        return prefetch;
+    }
+
+    /**
+     * Set the upstream joins of the result entity whose targets are prefetched (<code>prefetch</code> XML attribute).
+     * @param prefetch joins names
+     */
+    protected void setPrefetch(String[] prefetch)
+    {
+        this.prefetch = prefetch == null || prefetch.length == 0 ? null : prefetch;
+    }
+
     protected Iterator<Instance> queryImpl(Serializable... params) throws SQLException
     {
-        Iterator<Instance> iterator = null;
+        ResultCache cache = getResultCache();
+        if (cache != null)
+        {
+            return getCachedCopies(cache, params).iterator();
+        }
+        return prefetch(queryUncached(params));
+    }
+
+    protected Stream<Instance> streamImpl(Serializable... params) throws SQLException
+    {
+        ResultCache cache = getResultCache();
+        if (cache != null)
+        {
+            // sized stream
+            return getCachedCopies(cache, params).stream();
+        }
+        // the number of rows of a result set is unknown
+        RowIterator iterator = queryUncached(params);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(prefetch(iterator), Spliterator.ORDERED | Spliterator.NONNULL), false)
+            .onClose(iterator::close);
+    }
+
+    private Iterator<Instance> prefetch(Iterator<Instance> instances)
+    {
+        Entity entity = getResultEntity();
+        return prefetch == null || entity == null ? instances : entity.prefetch(instances, prefetch);
+    }
+
+    protected Stream<CompactRow> streamRowsImpl(Serializable... params) throws SQLException
+    {
+        RowIterator iterator = queryUncached(params);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator.rows(), Spliterator.ORDERED | Spliterator.NONNULL), false)
+            .onClose(iterator::close);
+    }
+
+    /**
+     * Get copies of the cached instances, with their prefetched upstream joins targets, if any.
+     * @param cache results cache
+     * @param params parameters values
+     * @return instances copies
+     * @throws SQLException
+     */
+    private List<Instance> getCachedCopies(ResultCache cache, Serializable... params) throws SQLException
+    {
+        List<Instance> cached = getCachedRows(cache, params);
+        List<Instance> copies = new ArrayList<>(cached.size());
+        for (Instance instance : cached)
+        {
+            copies.add(copyInstance(instance));
+        }
+        Entity entity = getResultEntity();
+        if (prefetch != null && entity != null)
+        {
+            entity.prefetch(copies, prefetch);
+        }
+        return copies;
+    }
+
+    private List<Instance> getCachedRows(ResultCache cache, Serializable... params) throws SQLException
+    {
+        // cached rowsets are fully read, and callers iterate on copies of the cached instances
+        return (List<Instance>)cache.get(this, params, () ->
+        {
+            List<Instance> rows = new ArrayList<>();
+            queryUncached(params).forEachRemaining(rows::add);
+            return rows;
+        });
+    }
+
+    protected RowIterator queryUncached(Serializable... params) throws SQLException
+    {
+        RowIterator iterator = null;
         PooledStatement statement = null;
         ResultSet result = null;
+        long start = System.nanoTime(), prepared = 0, executed = 0;
         try
         {
-            statement = getModel().prepareQuery(getQuery());
+            int fetchSize = getFetchSize();
+            DriverInfos driverInfos = getModel().getDriverInfos();
+            if (fetchSize > 0 && Boolean.TRUE.equals(driverInfos.isStreamingTransaction()) && StatementPool.getCurrentTransactionConnection(getModel().getModelId()) == null)
+            {
+                // server-side cursors need a dedicated connection in manual commit mode, kept until the iteration is over
+                statement = getModel().prepareStreamingQuery(getQuery());
+            }
+            else
+            {
+                statement = getModel().prepareQuery(getQuery());
+            }
+            prepared = System.nanoTime();
             statement.getConnection().enterBusyState();
-            result = statement.executeQuery(params);
-            iterator = new RowIterator(getParent(), statement, result, getResultEntity());
+            statement.setFetchSize(driverInfos.getDriverFetchSize(fetchSize));
+            result = statement.executeQuery(getParamAccessors(), params);
+            executed = System.nanoTime();
+            long preparedAt = prepared, executedAt = executed;
+            // fetched rows and slow queries are only known once the iteration is over
+            iterator = new RowIterator(getParent(), statement, result, getResultEntity(), rows ->
+            {
+                getMetrics().recordRows(rows);
+                checkSlowQuery(params, rows, start, preparedAt, executedAt, System.nanoTime());
+            });
         }
         finally
         {
@@ -73,12 +287,68 @@ public class RowsetAttribute extends Attribute
                 }
                 statement.getConnection().leaveBusyState();
             }
+            if (iterator == null)
+            {
+                recordExecution(params, 0, start, prepared, executed, false);
+            }
+            else
+            {
+                getMetrics().recordExecution(executed - start, true);
+            }
         }
         return iterator;
     }
 
+    protected long copyOutImpl(Writer writer, Serializable... params) throws SQLException
+    {
+        String query = getQuery();
+        PostgresqlCopyManager copyManager = getModel().getPostgresqlCopyManager();
+        // COPY statements cannot have parameters
+        if (params.length == 0 && copyManager.isCopySupported())
+        {
+            return copyManager.copyOut("COPY (" + query + ") TO STDOUT WITH (FORMAT csv)", writer);
+        }
+        PooledStatement statement = getModel().prepareQuery(query);
+        long rows = 0;
+        try
+        {
+            statement.getConnection().enterBusyState();
+            ResultSet result = statement.executeQuery(getParamAccessors(), params);
+            Serializable[] values = new Serializable[result.getMetaData().getColumnCount()];
+            while (result.next())
+            {
+                for (int i = 0; i < values.length; ++i)
+                {
+                    values[i] = statement.getValue(i + 1);
+                }
+                CsvFormat.writeRow(writer, values);
+                ++rows;
+            }
+            return rows;
+        }
+        catch (IOException ioe)
+        {
+            throw new SQLException("could not export rows", ioe);
+        }
+        finally
+        {
+            statement.notifyOver();
+            statement.getConnection().leaveBusyState();
+        }
+    }
+
+    private Instance copyInstance(Instance cached)
+    {
+        Instance instance = newResultInstance();
+        instance.copyValues(cached);
+        return instance;
+    }
+
     public String getQueryMethodName()
     {
         return "query";
     }
+
+    /** prefetched upstream joins of the result entity */
+    private String[] prefetch = null;
 }
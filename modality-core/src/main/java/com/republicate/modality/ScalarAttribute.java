@@ -20,6 +20,7 @@ package com.republicate.modality;
  */
 
 import com.republicate.modality.impl.AttributeHolder;
+import com.republicate.modality.impl.ResultCache;
 import com.republicate.modality.sql.PooledStatement;
 import com.republicate.modality.util.ConversionUtils;
 
@@ -51,14 +52,28 @@ public class ScalarAttribute extends Attribute
     }
 
     protected Serializable evaluateImpl(Serializable... paramValues) throws SQLException
+    {
+        ResultCache cache = getResultCache();
+        if (cache != null)
+        {
+            return (Serializable)cache.get(this, paramValues, () -> evaluateUncached(paramValues));
+        }
+        return evaluateUncached(paramValues);
+    }
+
+    protected Serializable evaluateUncached(Serializable... paramValues) throws SQLException
     {
         Serializable value = null;
         PooledStatement statement = null;
+        long start = System.nanoTime(), prepared = 0, executed = 0;
+        boolean success = false;
         try
         {
             statement = getModel().prepareQuery(getQuery());
+            prepared = System.nanoTime();
             statement.getConnection().enterBusyState();
-            ResultSet result = statement.executeQuery(paramValues);
+            ResultSet result = statement.executeQuery(getParamAccessors(), paramValues);
+            executed = System.nanoTime();
             if (result.next())
             {
                 value = (Serializable)result.getObject(1);
@@ -67,6 +82,7 @@ public class ScalarAttribute extends Attribute
                     value = null;
                 }
             }
+            success = true;
         }
         finally
         {
@@ -75,6 +91,7 @@ public class ScalarAttribute extends Attribute
                 statement.notifyOver();
                 statement.getConnection().leaveBusyState();
             }
+            recordExecution(paramValues, value == null ? 0 : 1, start, prepared, executed, success);
         }
         return value;
     }
@@ -37,6 +37,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 public class Transaction extends Action
 {
@@ -65,9 +66,10 @@ public class Transaction extends Action
         // CB TODO - review parameters mapping as in BaseAttribute for redundancy handling
         ConnectionWrapper connection = null;
         Savepoint savepoint = null;
+        long changed = 0, start = System.nanoTime(), prepared = 0, executed = 0;
+        boolean success = false;
         try
         {
-            long changed = 0;
             // support nested transactions using savepoints (CB TODO - add test case)
             connection = StatementPool.getCurrentTransactionConnection(getModel().getModelId());
             if (connection == null)
@@ -80,6 +82,8 @@ public class Transaction extends Action
                 savepoint = connection.setSavepoint();
             }
             connection.enterBusyState();
+            // statements are prepared one at a time, so the preparation end accumulates their preparation times
+            prepared = System.nanoTime();
             int param = 0;
             for (String individualStatement : getStatements())
             {
@@ -90,22 +94,15 @@ public class Transaction extends Action
                 // Check for postgresql COPY FROM STDIN command
                 if (PostgresqlCopyManager.isPostgresqlCopyFromStdin(getModel(), individualStatement, paramValues))
                 {
-                    if (postgresqlCopyManager == null)
-                    {
-                        synchronized (this)
-                        {
-                            if (postgresqlCopyManager == null)
-                            {
-                                postgresqlCopyManager = new PostgresqlCopyManager(getModel());
-                            }
-                        }
-                    }
-                    changed += postgresqlCopyManager.copyFromStdin(individualStatement, paramValues[0]);
+                    changed += getModel().getPostgresqlCopyManager().copyFromStdin(individualStatement, paramValues[0]);
+                    invalidateResults(individualStatement);
                 }
                 else
                 {
 
+                    long preparing = System.nanoTime();
                     PreparedStatement statement = connection.prepareStatement(individualStatement);
+                    prepared += System.nanoTime() - preparing;
                     int paramCount = statement.getParameterMetaData().getParameterCount();
                     if (getModel().getLogger().isTraceEnabled())
                     {
@@ -124,16 +121,20 @@ public class Transaction extends Action
                     {
                         changed += statement.executeUpdate();
                     }
+                    invalidateResults(individualStatement);
                 }
             }
             if (savepoint == null)
             {
                 connection.commit();
+                getModel().getMetrics().recordCommit();
             }
             else
             {
                 connection.releaseSavepoint(savepoint);
             }
+            executed = System.nanoTime();
+            success = true;
             return changed;
         }
         catch (SQLException sqle)
@@ -147,6 +148,7 @@ public class Transaction extends Action
                 else
                 {
                     connection.rollback();
+                    getModel().getMetrics().recordRollback();
                 }
             }
             throw sqle;
@@ -159,11 +161,19 @@ public class Transaction extends Action
                 if (savepoint == null) // means we own the transaction connection
                 {
                     StatementPool.resetCurrentTransactionConnection(getModel().getModelId());
+                    getModel().releaseTransactionConnection(connection);
                 }
             }
+            recordExecution(paramValues, changed, start, prepared, executed, success);
         }
     }
 
+    @Override
+    public long performBatch(Iterable<? extends Map> sources, int batchSize, List<Long> generatedKeys) throws SQLException
+    {
+        throw new SQLException("batches are not supported by multi-statements transactions");
+    }
+
     protected List<String> getStatements() throws SQLException
     {
         if (statements == null)
@@ -89,6 +89,20 @@ public class WrappingInstance extends Instance implements Wrapper
         }
     }
 
+    @Override
+    protected void readValue(String columnName, CompactRow.Schema schema, int index, Serializable value) throws SQLException
+    {
+        Pair<Method, Class> setter = setters.get(columnName);
+        if (setter == null)
+        {
+            super.readValue(columnName, schema, index, value);
+        }
+        else
+        {
+            callSetter(setter, value);
+        }
+    }
+
     @Override
     public Serializable get(java.lang.Object key)
     {
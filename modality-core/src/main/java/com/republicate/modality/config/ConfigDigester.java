@@ -438,6 +438,14 @@ public class ConfigDigester
         {
             ret = ConversionUtils.toBoolean(value);
         }
+        else if (clazz == Integer.TYPE)
+        {
+            ret = ConversionUtils.toInteger(value);
+        }
+        else if (clazz == Long.TYPE)
+        {
+            ret = ConversionUtils.toLong(value);
+        }
         else if (Enum.class.isAssignableFrom(clazz) && value instanceof String)
         {
             ret = Enum.valueOf(clazz, ((String)value).toUpperCase());
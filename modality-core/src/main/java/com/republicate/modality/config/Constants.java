@@ -73,6 +73,20 @@ public interface Constants
 
     String MODEL_CONNECTIONS_CHECK_INTERVAL = "connections_check_interval";
 
+    String MODEL_CONNECTIONS = "connections";
+
+    String MODEL_CACHE = "cache";
+
+    String MODEL_SLOW_QUERIES = "slow_queries";
+
+    String MODEL_REPLICAS = "replicas";
+
+    String MODEL_BATCH_SIZE = "batch_size";
+
+    String MODEL_FETCH_CHUNK_SIZE = "fetch_chunk_size";
+
+    String MODEL_METRICS = "metrics";
+
     String MODEL_MIGRATION_SCRIPTS = "migration_scripts";
 
     String MODEL_VERSION = "model_version";
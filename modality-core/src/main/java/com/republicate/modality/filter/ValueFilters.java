@@ -8,9 +8,12 @@ import org.apache.commons.lang3.StringUtils;
 
 import java.io.Serializable;
 import java.sql.SQLException;
-import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Calendar;
-import java.util.List;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
@@ -100,6 +103,8 @@ public class ValueFilters extends ConfigurableFilters<Serializable>
         {
             logger.warn("overwriting type mapping for class {}", cls.getName());
         }
+        // previously resolved classes may now resolve to another filter
+        dispatch = null;
     }
 
     /**
@@ -118,37 +123,94 @@ public class ValueFilters extends ConfigurableFilters<Serializable>
      */
     public Serializable filter(Serializable value) throws SQLException
     {
-        // CB TODO - this operation may pose performance problems
-        Class clazz = value.getClass();
-        Filter<Serializable> filter = null;
-        // apply the most specific one, and cache result for intermediate classes
-        List<Class> tries = null;
-        while (clazz != null)
-        {
-            filter = typesMappings.get(clazz);
-            if (filter != null)
+        return getTypeFilter(value.getClass()).apply(value);
+    }
+
+    /**
+     * Get the whole filter of a column, type mapping filter first, when values class is known in advance.
+     * Values of another class are still dispatched on their runtime class.
+     * @param table table name
+     * @param column column name
+     * @param valuesClass expected class of column values, or null if unknown
+     * @return column filter
+     */
+    public Filter<Serializable> getColumnFilter(String table, String column, Class valuesClass)
+    {
+        Filter<Serializable> typeFilter;
+        if (typesMappings.isEmpty())
+        {
+            typeFilter = Filter.identity();
+        }
+        else if (valuesClass == null)
+        {
+            typeFilter = this::filter;
+        }
+        else
+        {
+            Filter<Serializable> expected = getTypeFilter(valuesClass);
+            typeFilter = value -> value.getClass() == valuesClass ? expected.apply(value) : filter(value);
+        }
+        return aggregate(getColumnFilter(table, column), typeFilter);
+    }
+
+    /**
+     * Get the type mapping filter applied to values of a given class, resolved once per class: the mapping of the
+     * nearest superclass wins, then the mapping of the nearest interface.
+     * @param clazz values class
+     * @return type filter, or the identity filter
+     */
+    public Filter<Serializable> getTypeFilter(Class clazz)
+    {
+        ClassValue<Filter<Serializable>> dispatch = this.dispatch;
+        if (dispatch == null)
+        {
+            this.dispatch = dispatch = new ClassValue<Filter<Serializable>>()
             {
-                break;
-            }
-            if (tries == null)
+                @Override
+                protected Filter<Serializable> computeValue(Class<?> type)
+                {
+                    return resolveTypeFilter(type);
+                }
+            };
+        }
+        return dispatch.get(clazz);
+    }
+
+    private Filter<Serializable> resolveTypeFilter(Class clazz)
+    {
+        if (typesMappings.isEmpty())
+        {
+            return Filter.identity();
+        }
+        for (Class cls = clazz; cls != null; cls = cls.getSuperclass())
+        {
+            Filter<Serializable> filter = typesMappings.get(cls);
+            if (filter != null)
             {
-                tries = new ArrayList<>();
+                return filter;
             }
-            tries.add(clazz);
-            clazz = clazz.getSuperclass();
         }
-        if (filter == null)
+        // breadth-first search among interfaces
+        Deque<Class> interfaces = new ArrayDeque<>();
+        for (Class cls = clazz; cls != null; cls = cls.getSuperclass())
         {
-            filter = Filter.identity();
+            interfaces.addAll(Arrays.asList(cls.getInterfaces()));
         }
-        if (tries != null)
+        Set<Class> visited = new HashSet<>();
+        while (!interfaces.isEmpty())
         {
-            for (Class tried : tries)
+            Class iface = interfaces.poll();
+            if (visited.add(iface))
             {
-                typesMappings.put(tried, filter);
+                Filter<Serializable> filter = typesMappings.get(iface);
+                if (filter != null)
+                {
+                    return filter;
+                }
+                interfaces.addAll(Arrays.asList(iface.getInterfaces()));
             }
         }
-        return filter.apply(value);
+        return Filter.identity();
     }
 
     public void setCryptograph(Cryptograph cryptograph)
@@ -195,6 +257,9 @@ public class ValueFilters extends ConfigurableFilters<Serializable>
 
     private Map<Class, Filter<Serializable>> typesMappings = new ConcurrentHashMap<>();
 
+    /** resolved type filters per class, reset whenever type mappings change */
+    private volatile ClassValue<Filter<Serializable>> dispatch = null;
+
     private Cryptograph cryptograph = null;
     private boolean needsCryptograph = false;
 
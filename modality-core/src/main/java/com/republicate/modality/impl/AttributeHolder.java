@@ -31,6 +31,7 @@ import com.republicate.modality.Transaction;
 import com.republicate.modality.config.ConfigurationException;
 import com.republicate.modality.sql.SqlUtils;
 import com.republicate.modality.util.ConversionUtils;
+import com.republicate.modality.util.IteratorUtils;
 import org.slf4j.Logger;
 
 import java.io.Serializable;
@@ -39,10 +40,13 @@ import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
 import java.util.Optional;
 import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 public abstract class AttributeHolder implements Serializable
 {
@@ -367,6 +371,51 @@ public abstract class AttributeHolder implements Serializable
         return ((RowsetAttribute)attribute).query(source, params);
     }
 
+    public Stream<Instance> stream(String name, Serializable... params) throws SQLException
+    {
+        getLogger().trace("stream {}.{}", logName, name);
+        Attribute attribute = getAttribute(name);
+        if (attribute == null)
+        {
+            throw new SQLException("unknown attribute: " + name);
+        }
+        if (!(attribute instanceof RowsetAttribute))
+        {
+            throw new SQLException("not a rowset attribute: " + name);
+        }
+        return ((RowsetAttribute)attribute).stream(params);
+    }
+
+    public Stream<Instance> stream(String name, Map source) throws SQLException
+    {
+        getLogger().trace("stream {}.{}", logName, name);
+        Attribute attribute = getAttribute(name);
+        if (attribute == null)
+        {
+            throw new SQLException("unknown attribute: " + name);
+        }
+        if (!(attribute instanceof RowsetAttribute))
+        {
+            throw new SQLException("not a rowset attribute: " + name);
+        }
+        return ((RowsetAttribute)attribute).stream(source);
+    }
+
+    public Stream<Instance> stream(String name, Map source, Serializable... params) throws SQLException
+    {
+        getLogger().trace("stream {}.{}", logName, name);
+        Attribute attribute = getAttribute(name);
+        if (attribute == null)
+        {
+            throw new SQLException("unknown attribute: " + name);
+        }
+        if (!(attribute instanceof RowsetAttribute))
+        {
+            throw new SQLException("not a rowset attribute: " + name);
+        }
+        return ((RowsetAttribute)attribute).stream(source, params);
+    }
+
     public long perform(String name, Serializable... params) throws SQLException
     {
         getLogger().trace("perform {}.{}", logName, name);
@@ -412,6 +461,77 @@ public abstract class AttributeHolder implements Serializable
         return ((Action)attribute).perform(source, params);
     }
 
+    /*
+     * Asynchronous variants: they run on the model executor, outside of any current transaction.
+     * Sources and parameters must not be modified until completion.
+     */
+
+    public CompletableFuture<Serializable> evaluateAsync(String name, Serializable... params)
+    {
+        return getModel().async(() -> evaluate(name, params));
+    }
+
+    public CompletableFuture<Serializable> evaluateAsync(String name, Map source)
+    {
+        return getModel().async(() -> evaluate(name, source));
+    }
+
+    public CompletableFuture<Serializable> evaluateAsync(String name, Map source, Serializable... params)
+    {
+        return getModel().async(() -> evaluate(name, source, params));
+    }
+
+    public CompletableFuture<Instance> retrieveAsync(String name, Serializable... params)
+    {
+        return getModel().async(() -> retrieve(name, params));
+    }
+
+    public CompletableFuture<Instance> retrieveAsync(String name, Map source)
+    {
+        return getModel().async(() -> retrieve(name, source));
+    }
+
+    public CompletableFuture<Instance> retrieveAsync(String name, Map source, Serializable... params)
+    {
+        return getModel().async(() -> retrieve(name, source, params));
+    }
+
+    /**
+     * Asynchronous query. Since the iteration cannot outlive the asynchronous task, all rows are read.
+     * @param name rowset attribute name
+     * @param params parameters values
+     * @return future list of instances
+     */
+    public CompletableFuture<List<Instance>> queryAsync(String name, Serializable... params)
+    {
+        return getModel().async(() -> IteratorUtils.toList(query(name, params)));
+    }
+
+    public CompletableFuture<List<Instance>> queryAsync(String name, Map source)
+    {
+        return getModel().async(() -> IteratorUtils.toList(query(name, source)));
+    }
+
+    public CompletableFuture<List<Instance>> queryAsync(String name, Map source, Serializable... params)
+    {
+        return getModel().async(() -> IteratorUtils.toList(query(name, source, params)));
+    }
+
+    public CompletableFuture<Long> performAsync(String name, Serializable... params)
+    {
+        return getModel().async(() -> perform(name, params));
+    }
+
+    public CompletableFuture<Long> performAsync(String name, Map source)
+    {
+        return getModel().async(() -> perform(name, source));
+    }
+
+    public CompletableFuture<Long> performAsync(String name, Map source, Serializable... params)
+    {
+        return getModel().async(() -> perform(name, source, params));
+    }
+
     protected Entity resolveEntity(String name)
     {
         return getModel().getEntity(name);
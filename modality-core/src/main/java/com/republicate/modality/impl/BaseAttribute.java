@@ -22,13 +22,14 @@ package com.republicate.modality.impl;
 import com.republicate.modality.Entity;
 import com.republicate.modality.Instance;
 import com.republicate.modality.config.ConfigurationException;
+import com.republicate.modality.metrics.AttributeMetrics;
 import com.republicate.modality.sql.NonPositionedParameter;
 import com.republicate.modality.sql.RowValues;
+import com.republicate.modality.sql.TypedAccessor;
 
 import java.io.Serializable;
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -107,7 +108,8 @@ public abstract class BaseAttribute extends InstanceProducer implements Serializ
                 paramMapping[i] = order;
             }
         }
-
+        // parent entity columns are known at this point
+        bindingPlan = new BindingPlan(parent instanceof Entity ? (Entity)parent : null, parameterNames, paramMapping);
     }
 
     public String getName()
@@ -167,6 +169,15 @@ public abstract class BaseAttribute extends InstanceProducer implements Serializ
         return cached;
     }
 
+    /**
+     * Get the model-wide results cache, if this attribute is cached and the model has one.
+     * @return results cache, or null
+     */
+    protected ResultCache getResultCache()
+    {
+        return cached ? getModel().getResultCache() : null;
+    }
+
     protected Serializable[] getParamValues(RowValues source) throws SQLException
     {
         Serializable[] paramValues = new Serializable[parameterNames.size()];
@@ -184,21 +195,21 @@ public abstract class BaseAttribute extends InstanceProducer implements Serializ
         {
             if (rawParamValue != null && rawParamValue instanceof NonPositionedParameter) ++nonPositionedParametersCount;
         }
-        Serializable[] paramValues = new Serializable[parameterNames.size() + nonPositionedParametersCount];
-        Entity entity = (Entity)Optional.ofNullable(getParent()).filter(x -> x instanceof Entity).orElse(null);
-        if (entity == null)
+        BindingPlan plan = getBindingPlan();
+        int count = plan.columns.length;
+        Serializable[] paramValues = new Serializable[count + nonPositionedParametersCount];
+        if (plan.entity == null)
         {
-            for (int i = 0; i < paramValues.length - nonPositionedParametersCount; ++i)
+            for (int i = 0; i < count; ++i)
             {
                 paramValues[i] = rawParamValues[paramMapping[i]];
             }
         }
         else
         {
-            for (int i = 0; i < paramValues.length - nonPositionedParametersCount; ++i)
+            for (int i = 0; i < count; ++i)
             {
-                String paramName = parameterNames.get(i);
-                paramValues[i] = entity.filterValue(paramName, rawParamValues[paramMapping[i]]);
+                paramValues[i] = plan.entity.filterValue(plan.columns[i], rawParamValues[paramMapping[i]]);
             }
         }
         // non positioned parameters should always be given last (CB TODO - document)
@@ -211,127 +222,92 @@ public abstract class BaseAttribute extends InstanceProducer implements Serializ
 
     protected Serializable[] getParamValues(Map source) throws SQLException
     {
-        Serializable[] paramValues = new Serializable[parameterNames.size()];
-        Entity parentEntity = (Entity)Optional.ofNullable(getParent()).filter(x -> x instanceof Entity).orElse(null);
-        Entity sourceEntity = Optional.ofNullable(source).filter(x -> x instanceof Instance).map(i -> ((Instance)i).getEntity()).orElse(null);
-        if (parentEntity == null && sourceEntity == null)
-        {
-            for (int i = 0; i < paramValues.length; ++i)
-            {
-                paramValues[i] = (Serializable)source.get(parameterNames.get(i));
-            }
-        }
-        else if (parentEntity == null || sourceEntity == null || parentEntity == sourceEntity)
-        {
-            Entity entity = parentEntity == null ? sourceEntity : parentEntity;
-            for (int i = 0; i < paramValues.length; ++i)
-            {
-                String paramName = parameterNames.get(i);
-                paramValues[i] = entity.filterValue(paramName, (Serializable)source.get(paramName));
-            }
-        }
-        else
+        BindingPlan plan = getBindingPlan();
+        Entity sourceEntity = source instanceof Instance ? ((Instance)source).getEntity() : null;
+        Serializable[] paramValues = new Serializable[plan.columns.length];
+        for (int i = 0; i < paramValues.length; ++i)
         {
-            for (int i = 0; i < paramValues.length; ++i)
-            {
-                String paramName = parameterNames.get(i);
-                Serializable value = (Serializable)source.get(paramName);
-                paramValues[i] = parentEntity.hasColumn(paramName) ?
-                    parentEntity.filterValue(paramName, value) :
-                    sourceEntity.filterValue(paramName, value);
-            }
+            paramValues[i] = filterParamValue(plan, sourceEntity, i, (Serializable)source.get(parameterNames.get(i)));
         }
         return paramValues;
     }
 
-    private static int bitsBefore(BitSet bitset, int i)
-    {
-        BitSet mask = new BitSet();
-        mask.set(0, i);
-        mask.and(bitset);
-        return mask.cardinality();
-    }
-
     protected Serializable[] getParamValues(Map source, Serializable[] additionalParams) throws SQLException
     {
-        try
+        BindingPlan plan = getBindingPlan();
+        Entity sourceEntity = source instanceof Instance ? ((Instance)source).getEntity() : null;
+        Serializable[] paramValues = new Serializable[plan.columns.length];
+        // distinct parameters first appear in increasing order, so the ones missing from the source
+        // consume the additional parameters in order
+        int provided = 0;
+        for (int i = 0; i < paramValues.length; ++i)
         {
-            Serializable[] paramValues = new Serializable[parameterNames.size()];
-            Entity parentEntity = (Entity)Optional.ofNullable(getParent()).filter(x -> x instanceof Entity).orElse(null);
-            Entity sourceEntity = Optional.ofNullable(source).filter(x -> x instanceof Instance).map(i -> ((Instance)i).getEntity()).orElse(null);
-            BitSet sourcedParams = new BitSet();
-            BitSet providedParams = new BitSet();
-            if (parentEntity == null && sourceEntity == null)
+            int first = plan.firstOccurrences[i];
+            if (first < i)
             {
-                for (int i = 0; i < paramValues.length; ++i)
-                {
-                    String paramName = parameterNames.get(i);
-                    if (source.containsKey(paramName))
-                    {
-                        paramValues[i] = (Serializable)source.get(paramName);
-                        sourcedParams.set(paramMapping[i]);
-                    }
-                    else
-                    {
-                        int paramOrder = paramMapping[i];
-                        paramValues[i] = additionalParams[paramOrder - bitsBefore(sourcedParams, paramOrder)];
-                        providedParams.set(paramOrder);
-                    }
-                }
+                paramValues[i] = paramValues[first];
+                continue;
             }
-            else if (parentEntity == null || sourceEntity == null || parentEntity == sourceEntity)
+            String paramName = parameterNames.get(i);
+            Serializable value;
+            if (source.containsKey(paramName))
             {
-                Entity entity = parentEntity == null ? sourceEntity : parentEntity;
-                for (int i = 0; i < paramValues.length; ++i)
-                {
-                    Serializable value;
-                    String paramName = parameterNames.get(i);
-                    if (source.containsKey(paramName))
-                    {
-                        value = (Serializable)source.get(paramName);
-                        sourcedParams.set(paramMapping[i]);
-                    }
-                    else
-                    {
-                        int paramOrder = paramMapping[i];
-                        value = additionalParams[paramOrder - bitsBefore(sourcedParams, paramOrder)];
-                        providedParams.set(paramOrder);
-                    }
-                    paramValues[i] = entity.filterValue(paramName, value);
-                }
+                value = (Serializable)source.get(paramName);
             }
-            else
+            else if (provided < additionalParams.length)
             {
-                for (int i = 0; i < paramValues.length; ++i)
-                {
-                    String paramName = parameterNames.get(i);
-                    Serializable value;
-                    if (source.containsKey(paramName))
-                    {
-                        value = (Serializable)source.get(paramName);
-                        sourcedParams.set(paramMapping[i]);
-                    }
-                    else
-                    {
-                        int paramOrder = paramMapping[i];
-                        value = additionalParams[paramOrder - bitsBefore(sourcedParams, paramOrder)];
-                        providedParams.set(paramOrder);
-                    }
-                    paramValues[i] = parentEntity.hasColumn(paramName) ?
-                        parentEntity.filterValue(paramName, value) :
-                        sourceEntity.filterValue(paramName, value);
-                }
+                value = additionalParams[provided++];
             }
-            if (providedParams.cardinality() != additionalParams.length)
+            else
             {
-                throw new SQLException("too many parameters provided: got " + additionalParams.length + ", used " + providedParams.cardinality());
+                throw new SQLException("too few parameters provided: got " + additionalParams.length + ", needed more");
             }
-            return paramValues;
+            paramValues[i] = filterParamValue(plan, sourceEntity, i, value);
+        }
+        if (provided != additionalParams.length)
+        {
+            throw new SQLException("too many parameters provided: got " + additionalParams.length + ", used " + provided);
         }
-        catch (ArrayIndexOutOfBoundsException aioobe)
+        return paramValues;
+    }
+
+    /**
+     * Filter a parameter value, using the parent entity for its columns, and the source instance entity otherwise.
+     */
+    private Serializable filterParamValue(BindingPlan plan, Entity sourceEntity, int index, Serializable value) throws SQLException
+    {
+        if (plan.entity != null && (sourceEntity == null || sourceEntity == plan.entity || plan.columns[index] != null))
+        {
+            return plan.entity.filterValue(plan.columns[index], value);
+        }
+        else if (sourceEntity != null)
+        {
+            return sourceEntity.filterValue(parameterNames.get(index), value);
+        }
+        return value;
+    }
+
+    /**
+     * Get the typed accessors of parameters which are parent entity columns.
+     * @return parameters accessors, or null if the parent is not an entity
+     */
+    protected TypedAccessor[] getParamAccessors()
+    {
+        return getBindingPlan().accessors;
+    }
+
+    /**
+     * Get the parameters binding plan, built at initialization.
+     * @return binding plan
+     */
+    private BindingPlan getBindingPlan()
+    {
+        BindingPlan plan = bindingPlan;
+        if (plan == null)
         {
-            throw new SQLException("too few parameters provided: got " + additionalParams.length + ", needed more");
+            throw new IllegalStateException("attribute " + getName() + " is not initialized");
         }
+        return plan;
     }
 
     public String getQuery() throws SQLException
@@ -389,11 +365,152 @@ public abstract class BaseAttribute extends InstanceProducer implements Serializ
         this.cached = cached;
     }
 
+    /**
+     * Get the number of rows to fetch at once, 0 meaning the driver default.
+     * @return fetch size
+     */
+    protected int getFetchSize()
+    {
+        return fetchSize;
+    }
+
+    /**
+     * Set the number of rows to fetch at once. A positive value makes rowset attributes stream their results.
+     * @param fetchSize fetch size
+     */
+    protected void setFetchSize(int fetchSize)
+    {
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Get this attribute metrics.
+     * @return attribute metrics
+     */
+    protected AttributeMetrics getMetrics()
+    {
+        AttributeMetrics metrics = this.metrics;
+        if (metrics == null)
+        {
+            String entity = parent instanceof Entity ? ((Entity)parent).getName() : null;
+            this.metrics = metrics = getModel().getMetrics().getAttributeMetrics(entity, getName());
+        }
+        return metrics;
+    }
+
+    /**
+     * Get this attribute own slow queries threshold.
+     * @return threshold in milliseconds, or null to use the model threshold
+     */
+    protected Long getSlowQueryThreshold()
+    {
+        return slowQueryThreshold;
+    }
+
+    /**
+     * Set this attribute own slow queries threshold, overriding the model threshold.
+     * @param slowQueryThreshold threshold in milliseconds, or a negative value to disable the slow queries log for this attribute
+     */
+    protected void setSlowQueryThreshold(long slowQueryThreshold)
+    {
+        this.slowQueryThreshold = slowQueryThreshold;
+    }
+
+    /**
+     * Record an execution in metrics and, if slow, in the slow queries log. Timestamps are given by System.nanoTime(),
+     * and are zero for steps which weren't reached.
+     * @param paramValues bound parameters values, may be null
+     * @param rows number of fetched or changed rows
+     * @param start execution start
+     * @param prepared statement preparation end
+     * @param executed statement execution end
+     * @param success whether the execution succeeded
+     */
+    protected void recordExecution(Serializable[] paramValues, long rows, long start, long prepared, long executed, boolean success)
+    {
+        long end = System.nanoTime();
+        getMetrics().recordExecution(end - start, success);
+        checkSlowQuery(paramValues, rows, start, prepared, executed, end);
+    }
+
+    /**
+     * Record an execution in the slow queries log, if slow.
+     * @param paramValues bound parameters values, may be null
+     * @param rows number of fetched or changed rows
+     * @param start execution start
+     * @param prepared statement preparation end
+     * @param executed statement execution end
+     * @param end fetching end
+     */
+    protected void checkSlowQuery(Serializable[] paramValues, long rows, long start, long prepared, long executed, long end)
+    {
+        SlowQueryLog slowQueryLog = getModel().getSlowQueryLog();
+        if (slowQueryLog != null)
+        {
+            long threshold = slowQueryLog.getThresholdNanos(slowQueryThreshold);
+            if (threshold >= 0 && end - start >= threshold)
+            {
+                // the interrupted step, if any, takes the remaining time
+                prepared = prepared == 0 ? end : prepared;
+                executed = executed == 0 ? end : executed;
+                slowQueryLog.record(this, query, paramValues, rows, prepared - start, executed - prepared, end - executed);
+            }
+        }
+    }
+
     private boolean cached = false;
+    private int fetchSize = 0;
+    private Long slowQueryThreshold = null;
+    private transient volatile AttributeMetrics metrics = null;
     private AttributeHolder parent = null;
     private String resultEntityName = null;
     private String attributeName = null;
     private String query = "";
     protected List<String> parameterNames = new ArrayList<>();
     protected int paramMapping[] = null;
+    private transient volatile BindingPlan bindingPlan = null;
+
+    /**
+     * Parameters binding plan, resolving once the parent entity and the column of each parameter,
+     * so that binding parameter values doesn't need any lookup or intermediate allocation.
+     */
+    private static class BindingPlan
+    {
+        BindingPlan(Entity entity, List<String> parameterNames, int[] paramMapping)
+        {
+            int count = parameterNames.size();
+            this.entity = entity;
+            columns = new Entity.Column[count];
+            accessors = entity == null ? null : new TypedAccessor[count];
+            firstOccurrences = new int[count];
+            int[] firstIndexPerOrder = new int[count];
+            int distinct = 0;
+            for (int i = 0; i < count; ++i)
+            {
+                if (entity != null)
+                {
+                    columns[i] = entity.getColumn(parameterNames.get(i));
+                    accessors[i] = columns[i] == null ? TypedAccessor.OBJECT : columns[i].getAccessor();
+                }
+                int order = paramMapping[i];
+                if (order == distinct)
+                {
+                    firstIndexPerOrder[distinct++] = i;
+                }
+                firstOccurrences[i] = firstIndexPerOrder[order];
+            }
+        }
+
+        /** parent entity, if any */
+        final Entity entity;
+
+        /** column of each parameter in the parent entity, or null */
+        final Entity.Column[] columns;
+
+        /** typed accessor of each parameter, or null if there is no parent entity */
+        final TypedAccessor[] accessors;
+
+        /** index of the first parameter with the same name, for each parameter */
+        final int[] firstOccurrences;
+    }
 }
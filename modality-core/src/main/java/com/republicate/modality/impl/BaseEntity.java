@@ -24,16 +24,22 @@ import com.republicate.modality.Attribute;
 import com.republicate.modality.Entity;
 import com.republicate.modality.Instance;
 import com.republicate.modality.Model;
+import com.republicate.modality.ModelRunnable;
 import com.republicate.modality.RowAttribute;
 import com.republicate.modality.RowsetAttribute;
 import com.republicate.modality.ScalarAttribute;
 import com.republicate.modality.config.ConfigurationException;
 import com.republicate.modality.filter.Filter;
+import com.republicate.modality.sql.CsvFormat;
+import com.republicate.modality.sql.DriverInfos;
 import com.republicate.modality.sql.SqlUtils;
+import com.republicate.modality.sql.StatementPool;
+import com.republicate.modality.sql.TypedAccessor;
 import com.republicate.modality.util.Converter;
 import org.apache.commons.lang3.tuple.Pair;
 
 import java.beans.PropertyDescriptor;
+import java.io.Reader;
 import java.io.Serializable;
 import java.lang.reflect.Method;
 import java.sql.SQLException;
@@ -44,10 +50,12 @@ import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 public abstract class BaseEntity extends AttributeHolder
@@ -71,6 +79,34 @@ public abstract class BaseEntity extends AttributeHolder
         this.sqlName = table;
     }
 
+    /**
+     * Set the maximum number of instances kept in the fetch cache (0, the default, disables it).
+     * Must be set before initialization.
+     * @param size fetch cache size
+     */
+    public void setFetchCache(int size)
+    {
+        this.fetchCacheSize = size;
+    }
+
+    /**
+     * Set the time to live of instances in the fetch cache, in milliseconds (non-positive for no expiration).
+     * @param ttl fetch cache time to live
+     */
+    public void setFetchCacheTtl(long ttl)
+    {
+        this.fetchCacheTtl = ttl;
+    }
+
+    /**
+     * Get the fetch cache, if any.
+     * @return fetch cache, or null
+     */
+    public IdentityCache getFetchCache()
+    {
+        return fetchCache;
+    }
+
     protected void addColumn(String name, String sqlName,  int type, Integer size, boolean generated, String typeName) throws SQLException
     {
         addColumn(new Entity.Column(name, sqlName, type, size, generated, typeName));
@@ -84,7 +120,7 @@ public abstract class BaseEntity extends AttributeHolder
             throw new ConfigurationException("column name collision: " + getName() + "." + column.name + " mapped on " + getTable() + "." + previous.sqlName + " and on " + getTable() + "." + column.sqlName);
         }
         column.setIndex(columns.size() - 1);
-        column.setReadFilter(getModel().getFilters().getReadFilters().getColumnFilter(sqlName, column.sqlName));
+        column.setReadFilter(getModel().getFilters().getReadFilters().getColumnFilter(sqlName, column.sqlName, column.getAccessor().getJavaClass()));
         column.setWriteFilter(getModel().getFilters().getWriteFilters().getColumnFilter(sqlName, column.sqlName));
         columnsMapping.put(column.sqlName, column.name);
     }
@@ -165,19 +201,19 @@ public abstract class BaseEntity extends AttributeHolder
 
     public void delete(Map source) throws SQLException
     {
-        delete.perform(source);
+        try
+        {
+            delete.perform(source);
+        }
+        finally
+        {
+            invalidateFetchCache(source);
+        }
     }
 
     public void insert(Map source) throws SQLException
     {
-        BitSet fieldsMask = new BitSet();
-        for (int c = 0; c < columnNames.size(); ++c)
-        {
-            if (source.containsKey(columnNames.get(c)))
-            {
-                fieldsMask.set(c);
-            }
-        }
+        BitSet fieldsMask = getColumnsMask(source);
         Action insert = insertPerColumnsMask.computeIfAbsent(fieldsMask, this::generateInsertAction);
         long ret = insert.perform(source);
         boolean used = false;
@@ -201,7 +237,428 @@ public abstract class BaseEntity extends AttributeHolder
 
     public void update(Map source) throws SQLException
     {
-        update.perform(source);
+        try
+        {
+            update.perform(source);
+        }
+        finally
+        {
+            invalidateFetchCache(source);
+        }
+    }
+
+    /**
+     * Whether the database supports a native upsert syntax for this entity.
+     * @return whether the database upsert syntax is known and this entity has a primary key
+     */
+    public boolean hasNativeUpsert()
+    {
+        DriverInfos.UpsertPolicy policy = getModel().getDriverInfos().getUpsertPolicy();
+        return policy != null && policy != DriverInfos.UpsertPolicy.NONE && primaryKey != null && !primaryKey.isEmpty();
+    }
+
+    /**
+     * Insert or update a row with a single statement, using the native upsert syntax of the database.
+     * @param source row to insert or update, which must contain primary key values
+     * @throws SQLException if the database doesn't support upserts or if the source lacks primary key values
+     */
+    public void upsert(Map source) throws SQLException
+    {
+        if (!hasNativeUpsert())
+        {
+            throw new SQLException("entity " + getName() + ": no native upsert support");
+        }
+        try
+        {
+            getUpsertAction(getColumnsMask(source)).perform(source);
+        }
+        finally
+        {
+            invalidateFetchCache(source);
+        }
+    }
+
+    /**
+     * Insert or update several rows using JDBC batches, inside a single transaction. Rows are grouped by set of present
+     * columns. When the database has no native upsert syntax, each row is fetched to choose between an insert and an update.
+     * @param sources rows to insert or update, which must contain primary key values
+     * @return number of changed rows, as reported by the driver
+     * @throws SQLException
+     */
+    public long upsertBatch(Iterable<? extends Map> sources) throws SQLException
+    {
+        return upsertBatch(sources, getModel().getBatchSize());
+    }
+
+    /**
+     * Insert or update several rows using JDBC batches.
+     * @param sources rows to insert or update, which must contain primary key values
+     * @param batchSize maximum number of rows sent per batch
+     * @return number of changed rows, as reported by the driver
+     * @throws SQLException
+     * @see #upsertBatch(Iterable)
+     */
+    public long upsertBatch(Iterable<? extends Map> sources, int batchSize) throws SQLException
+    {
+        if (primaryKey == null || primaryKey.isEmpty())
+        {
+            throw new SQLException("entity " + getName() + " has no primary key");
+        }
+        long[] changed = { 0 };
+        try
+        {
+            if (hasNativeUpsert())
+            {
+                Map<BitSet, List<Map>> groups = new LinkedHashMap<>();
+                for (Map source : sources)
+                {
+                    groups.computeIfAbsent(getColumnsMask(source), mask -> new ArrayList<>()).add(source);
+                }
+                performBatches(() ->
+                {
+                    for (Map.Entry<BitSet, List<Map>> group : groups.entrySet())
+                    {
+                        changed[0] += getUpsertAction(group.getKey()).performBatch(group.getValue(), batchSize, null);
+                    }
+                });
+            }
+            else
+            {
+                performBatches(() ->
+                {
+                    for (Map source : sources)
+                    {
+                        if (getFetchAttribute().retrieve(source) == null)
+                        {
+                            insert(source);
+                            ++changed[0];
+                        }
+                        else
+                        {
+                            BitSet mask = getColumnsMask(source);
+                            mask.andNot(primaryKeyMask);
+                            if (!mask.isEmpty())
+                            {
+                                changed[0] += updatePerColumnsMask.computeIfAbsent(mask, this::generateUpdateAction).perform(source);
+                            }
+                        }
+                    }
+                });
+            }
+        }
+        finally
+        {
+            for (Map source : sources)
+            {
+                invalidateFetchCache(source);
+            }
+        }
+        return changed[0];
+    }
+
+    /**
+     * Insert several rows using JDBC batches. Rows are grouped by set of present columns. When the primary key is
+     * a single generated column, generated keys are put back into the source maps if the driver supports it.
+     * All rows are inserted inside a single transaction.
+     * @param sources rows to insert
+     * @return number of inserted rows
+     * @throws SQLException
+     */
+    public long insertBatch(Iterable<? extends Map> sources) throws SQLException
+    {
+        return insertBatch(sources, getModel().getBatchSize());
+    }
+
+    /**
+     * Insert several rows using JDBC batches.
+     * @param sources rows to insert
+     * @param batchSize maximum number of rows sent per batch
+     * @return number of inserted rows
+     * @throws SQLException
+     * @see #insertBatch(Iterable)
+     */
+    public long insertBatch(Iterable<? extends Map> sources, int batchSize) throws SQLException
+    {
+        Map<BitSet, List<Map>> groups = new LinkedHashMap<>();
+        for (Map source : sources)
+        {
+            groups.computeIfAbsent(getColumnsMask(source), mask -> new ArrayList<>()).add(source);
+        }
+        long[] changed = { 0 };
+        performBatches(() ->
+        {
+            for (Map.Entry<BitSet, List<Map>> group : groups.entrySet())
+            {
+                Action insert = insertPerColumnsMask.computeIfAbsent(group.getKey(), this::generateInsertAction);
+                List<Map> rows = group.getValue();
+                String keyColumn = insert.getGeneratedKeyColumn();
+                List<Long> keys = keyColumn == null ? null : new ArrayList<>();
+                changed[0] += insert.performBatch(rows, batchSize, keys);
+                if (keys != null && keys.size() == rows.size())
+                {
+                    String keyName = translateColumnName(keyColumn);
+                    for (int i = 0; i < rows.size(); ++i)
+                    {
+                        rows.get(i).put(keyName, keys.get(i));
+                    }
+                }
+            }
+        });
+        return changed[0];
+    }
+
+    /**
+     * Update several rows using JDBC batches. For instances of this entity, only dirty columns are updated; for other
+     * maps, all present non-key columns are updated. Rows are grouped by set of updated columns, and all rows are
+     * updated inside a single transaction.
+     * @param sources rows to update, which must contain primary key values
+     * @return number of updated rows
+     * @throws SQLException
+     */
+    public long updateBatch(Iterable<? extends Map> sources) throws SQLException
+    {
+        return updateBatch(sources, getModel().getBatchSize());
+    }
+
+    /**
+     * Update several rows using JDBC batches.
+     * @param sources rows to update, which must contain primary key values
+     * @param batchSize maximum number of rows sent per batch
+     * @return number of updated rows
+     * @throws SQLException
+     * @see #updateBatch(Iterable)
+     */
+    public long updateBatch(Iterable<? extends Map> sources, int batchSize) throws SQLException
+    {
+        if (primaryKey == null)
+        {
+            throw new SQLException("entity " + getName() + " has no primary key");
+        }
+        Map<BitSet, List<Map>> groups = new LinkedHashMap<>();
+        for (Map source : sources)
+        {
+            BitSet mask;
+            if (source instanceof Instance && ((Instance)source).getEntity() == this)
+            {
+                mask = (BitSet)((Instance)source).getDirtyFlags().clone();
+            }
+            else
+            {
+                mask = getColumnsMask(source);
+            }
+            mask.andNot(primaryKeyMask);
+            if (!mask.isEmpty())
+            {
+                groups.computeIfAbsent(mask, m -> new ArrayList<>()).add(source);
+            }
+        }
+        long[] changed = { 0 };
+        try
+        {
+            performBatches(() ->
+            {
+                for (Map.Entry<BitSet, List<Map>> group : groups.entrySet())
+                {
+                    Action update = updatePerColumnsMask.computeIfAbsent(group.getKey(), this::generateUpdateAction);
+                    changed[0] += update.performBatch(group.getValue(), batchSize, null);
+                }
+            });
+        }
+        finally
+        {
+            for (List<Map> rows : groups.values())
+            {
+                for (Map source : rows)
+                {
+                    invalidateFetchCache(source);
+                }
+            }
+        }
+        return changed[0];
+    }
+
+    /**
+     * Delete several rows using JDBC batches, inside a single transaction.
+     * @param sources rows to delete, which must contain primary key values
+     * @return number of deleted rows
+     * @throws SQLException
+     */
+    public long deleteBatch(Iterable<? extends Map> sources) throws SQLException
+    {
+        return deleteBatch(sources, getModel().getBatchSize());
+    }
+
+    /**
+     * Delete several rows using JDBC batches, inside a single transaction.
+     * @param sources rows to delete, which must contain primary key values
+     * @param batchSize maximum number of rows sent per batch
+     * @return number of deleted rows
+     * @throws SQLException
+     */
+    public long deleteBatch(Iterable<? extends Map> sources, int batchSize) throws SQLException
+    {
+        if (primaryKey == null)
+        {
+            throw new SQLException("entity " + getName() + " has no primary key");
+        }
+        try
+        {
+            return delete.performBatch(sources, batchSize, null);
+        }
+        finally
+        {
+            for (Map source : sources)
+            {
+                invalidateFetchCache(source);
+            }
+        }
+    }
+
+    /**
+     * Insert rows with a <code>COPY ... FROM STDIN</code> statement when supported, streaming them in CSV format,
+     * or with JDBC batches otherwise. Copied columns are the entity columns present in the first row, and generated
+     * keys are not put back into the rows when using <code>COPY</code>.
+     * @param rows rows to insert
+     * @return number of inserted rows
+     * @throws SQLException
+     * @see PostgresqlCopyManager#isCopySupported()
+     */
+    public long copyIn(Iterator<? extends Map> rows) throws SQLException
+    {
+        if (!rows.hasNext())
+        {
+            return 0;
+        }
+        PostgresqlCopyManager copyManager = getModel().getPostgresqlCopyManager();
+        if (!copyManager.isCopySupported())
+        {
+            Iterable<Map> sources = () -> (Iterator<Map>)rows;
+            return insertBatch(sources);
+        }
+        Map first = rows.next();
+        List<Column> copiedColumns = getColumns().stream().filter(column -> first.containsKey(column.name)).collect(Collectors.toList());
+        if (copiedColumns.isEmpty())
+        {
+            throw new SQLException("no column of entity " + getName() + " found in copied rows");
+        }
+        String query = "COPY " + quoteIdentifier(getTable()) + " ("
+            + copiedColumns.stream().map(column -> quoteIdentifier(column.sqlName)).collect(Collectors.joining(", "))
+            + ") FROM STDIN WITH (FORMAT csv)";
+        Reader reader = new CsvFormat.RowsReader()
+        {
+            @Override
+            protected Serializable[] nextRow() throws SQLException
+            {
+                Map row = pending;
+                pending = null;
+                if (row == null)
+                {
+                    if (!rows.hasNext())
+                    {
+                        return null;
+                    }
+                    row = rows.next();
+                }
+                Serializable[] values = new Serializable[copiedColumns.size()];
+                for (int i = 0; i < values.length; ++i)
+                {
+                    Column column = copiedColumns.get(i);
+                    values[i] = filterValue(column, (Serializable)row.get(column.name));
+                }
+                return values;
+            }
+
+            private Map pending = first;
+        };
+        long copied = copyManager.copyIn(query, reader);
+        // copied rows are new rows, so only cached results need to be invalidated
+        ResultCache resultCache = getModel().getResultCache();
+        if (resultCache != null)
+        {
+            resultCache.invalidate(query);
+        }
+        return copied;
+    }
+
+    private BitSet getColumnsMask(Map source)
+    {
+        BitSet mask = new BitSet();
+        for (int c = 0; c < columnNames.size(); ++c)
+        {
+            if (source.containsKey(columnNames.get(c)))
+            {
+                mask.set(c);
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Run batches inside the current transaction, or inside a new one.
+     */
+    protected void performBatches(ModelRunnable batches) throws SQLException
+    {
+        if (StatementPool.getCurrentTransactionConnection(getModel().getModelId()) == null)
+        {
+            getModel().attempt(batches);
+        }
+        else
+        {
+            batches.run();
+        }
+    }
+
+    /**
+     * Get the fetch cache key for primary key values.
+     * @param key primary key values
+     * @return cache key, or null if not applicable
+     * @throws SQLException
+     */
+    protected List<String> getFetchCacheKey(Serializable[] key) throws SQLException
+    {
+        if (primaryKey == null || key.length != primaryKey.size())
+        {
+            return null;
+        }
+        List<String> cacheKey = new ArrayList<>(key.length);
+        for (int i = 0; i < key.length; ++i)
+        {
+            Serializable value = filterValue(primaryKey.get(i).name, key[i]);
+            if (value == null)
+            {
+                return null;
+            }
+            cacheKey.add(String.valueOf(value));
+        }
+        return cacheKey;
+    }
+
+    /**
+     * Get the fetch cache key for the primary key values found in a map.
+     * @param source map containing primary key values
+     * @return cache key, or null if not applicable
+     * @throws SQLException
+     */
+    protected List<String> getFetchCacheKey(Map source) throws SQLException
+    {
+        if (primaryKey == null)
+        {
+            return null;
+        }
+        Serializable[] key = new Serializable[primaryKey.size()];
+        for (int i = 0; i < key.length; ++i)
+        {
+            key[i] = (Serializable)source.get(primaryKey.get(i).name);
+        }
+        return getFetchCacheKey(key);
+    }
+
+    private void invalidateFetchCache(Map source) throws SQLException
+    {
+        if (fetchCache != null)
+        {
+            fetchCache.invalidate(getFetchCacheKey(source));
+        }
     }
 
     public Model getModel()
@@ -305,6 +762,11 @@ public abstract class BaseEntity extends AttributeHolder
             addKeyMapToAttribute(update);
             update.setInternal(true);
             update.initialize();
+
+            if (fetchCacheSize > 0)
+            {
+                fetchCache = new IdentityCache(this, fetchCacheSize, fetchCacheTtl);
+            }
         }
     }
 
@@ -344,6 +806,121 @@ public abstract class BaseEntity extends AttributeHolder
         return insert;
     }
 
+    private Action getUpsertAction(BitSet columnMask) throws SQLException
+    {
+        BitSet missing = (BitSet)primaryKeyMask.clone();
+        missing.andNot(columnMask);
+        if (!missing.isEmpty())
+        {
+            throw new SQLException("cannot upsert into " + getName() + ": missing primary key value");
+        }
+        return upsertPerColumnsMask.computeIfAbsent(columnMask, this::generateUpsertAction);
+    }
+
+    private Action generateUpsertAction(BitSet columnMask)
+    {
+        DriverInfos.UpsertPolicy policy = getModel().getDriverInfos().getUpsertPolicy();
+        Action upsert = new Action("$upsert", this);
+        List<Entity.Column> insertColumns = new ArrayList<>();
+        List<Entity.Column> updateColumns = new ArrayList<>();
+        for (int i = columnMask.nextSetBit(0); i >= 0; i = columnMask.nextSetBit(i+1))
+        {
+            Entity.Column column = columns.get(columnNames.get(i));
+            insertColumns.add(column);
+            if (!primaryKeyMask.get(i))
+            {
+                updateColumns.add(column);
+            }
+        }
+        String table = quoteIdentifier(getTable());
+        String insertList = insertColumns.stream().map(column -> quoteIdentifier(column.sqlName)).collect(Collectors.joining(", "));
+        switch (policy)
+        {
+            case ON_CONFLICT:
+            {
+                upsert.addQueryPart("INSERT INTO " + table + "(" + insertList + ") VALUES (");
+                addParameters(upsert, insertColumns, false);
+                upsert.addQueryPart(") ON CONFLICT (" + sqlPrimaryKey.stream().map(this::quoteIdentifier).collect(Collectors.joining(", ")) + ") ");
+                upsert.addQueryPart(updateColumns.isEmpty()
+                    ? "DO NOTHING"
+                    : "DO UPDATE SET " + updateColumns.stream().map(column -> quoteIdentifier(column.sqlName) + " = EXCLUDED." + quoteIdentifier(column.sqlName)).collect(Collectors.joining(", ")));
+                break;
+            }
+            case ON_DUPLICATE_KEY:
+            {
+                upsert.addQueryPart("INSERT INTO " + table + "(" + insertList + ") VALUES (");
+                addParameters(upsert, insertColumns, false);
+                String firstKey = quoteIdentifier(sqlPrimaryKey.get(0));
+                upsert.addQueryPart(") ON DUPLICATE KEY UPDATE " + (updateColumns.isEmpty()
+                    ? firstKey + " = " + firstKey
+                    : updateColumns.stream().map(column -> quoteIdentifier(column.sqlName) + " = VALUES(" + quoteIdentifier(column.sqlName) + ")").collect(Collectors.joining(", "))));
+                break;
+            }
+            case MERGE:
+            {
+                // parameters are compared or assigned to the target columns, so that their types are always known
+                upsert.addQueryPart("MERGE INTO " + table + " USING (VALUES(1)) AS upsert_source(one) ON ");
+                addKeyMapToAttribute(upsert);
+                if (!updateColumns.isEmpty())
+                {
+                    upsert.addQueryPart(" WHEN MATCHED THEN UPDATE SET ");
+                    addParameters(upsert, updateColumns, true);
+                }
+                upsert.addQueryPart(" WHEN NOT MATCHED THEN INSERT (" + insertList + ") VALUES (");
+                addParameters(upsert, insertColumns, false);
+                upsert.addQueryPart(")");
+                break;
+            }
+            default:
+                throw new IllegalStateException("unhandled upsert policy: " + policy);
+        }
+        upsert.setInternal(true);
+        upsert.initialize();
+        return upsert;
+    }
+
+    /**
+     * Add a comma separated list of column parameters to an attribute, either as plain values or as assignments.
+     */
+    private void addParameters(Attribute attribute, List<Entity.Column> parameters, boolean assignments)
+    {
+        int col = 0;
+        for (Entity.Column column : parameters)
+        {
+            if (col++ > 0)
+            {
+                attribute.addQueryPart(", ");
+            }
+            if (assignments)
+            {
+                attribute.addQueryPart(quoteIdentifier(column.sqlName) + " = ");
+            }
+            attribute.addParameter(column.name);
+        }
+    }
+
+    private Action generateUpdateAction(BitSet columnMask)
+    {
+        Action update = new Action("$update", this);
+        update.addQueryPart("UPDATE " + quoteIdentifier(getTable()) + " SET ");
+        int col = 0;
+        for (int i = columnMask.nextSetBit(0); i >= 0; i = columnMask.nextSetBit(i+1))
+        {
+            Entity.Column column = columns.get(columnNames.get(i));
+            if (col++ > 0)
+            {
+                update.addQueryPart(", ");
+            }
+            update.addQueryPart(quoteIdentifier(column.sqlName) + " = ");
+            update.addParameter(column.name);
+        }
+        update.addQueryPart(" WHERE ");
+        addKeyMapToAttribute(update);
+        update.setInternal(true);
+        update.initialize();
+        return update;
+    }
+
     private void addKeyMapToAttribute(Attribute attribute)
     {
         for (int i = 0; i < sqlPrimaryKey.size(); ++i)
@@ -394,6 +971,10 @@ public abstract class BaseEntity extends AttributeHolder
         addAttribute(upstreamAttribute);
         upstreamAttribute.setInternal(true);
         upstreamAttribute.initialize();
+        if (pkColumns.size() == 1)
+        {
+            upstreamJoins.put(upstreamAttributeName, Pair.of(pkEntity, translateColumnName(fkColumns.get(0))));
+        }
     }
 
     public void declareDownstreamJoin(String downstreamAttributeName, Entity fkEntity, List<String> fkColumns)
@@ -476,11 +1057,22 @@ public abstract class BaseEntity extends AttributeHolder
     }
 
     protected final Serializable filterValue(String columnName, Serializable value) throws SQLException
+    {
+        return filterValue(getColumn(columnName), value);
+    }
+
+    /**
+     * Filter a value written to a column, or a value which doesn't belong to any column.
+     * @param column target column, or null
+     * @param value value
+     * @return filtered value
+     * @throws SQLException
+     */
+    protected final Serializable filterValue(Column column, Serializable value) throws SQLException
     {
         if (value != null)
         {
             value = getModel().getFilters().getWriteFilters().filter(value);
-            Column column = getColumn(columnName);
             if (column != null)
             {
                 value = column.write(value);
@@ -555,6 +1147,111 @@ public abstract class BaseEntity extends AttributeHolder
     {
         return iterateAttribute;
     }
+
+    /**
+     * Get an upstream join which can be prefetched.
+     * @param name join attribute name
+     * @return pair of target entity and foreign key column name, or null if there is no such single column join
+     */
+    protected Pair<Entity, String> getUpstreamJoin(String name)
+    {
+        return upstreamJoins.get(name);
+    }
+
+    /**
+     * Get the attribute fetching the rows matching a fixed number of primary key values, using an <code>IN</code> list.
+     * Callers should only use a few distinct sizes, so that the statements pool keeps reusing the same statements.
+     * @param size number of key values
+     * @return fetch attribute, whose parameters are already filtered key values
+     */
+    protected RowsetAttribute getFetchAllAttribute(int size)
+    {
+        return fetchAllAttributes.computeIfAbsent(size, this::generateFetchAllAttribute);
+    }
+
+    /**
+     * Get the attribute fetching the rows matching an array of primary key values, for drivers supporting
+     * array parameters (see {@link DriverInfos.ArrayKeysPolicy}).
+     * @return fetch attribute, whose single parameter is an array of already filtered key values
+     */
+    protected RowsetAttribute getFetchAnyAttribute()
+    {
+        RowsetAttribute fetchAny = fetchAnyAttribute;
+        if (fetchAny == null)
+        {
+            fetchAny = newFetchAllAttribute(new TypedAccessor[] { TypedAccessor.OBJECT });
+            fetchAny.addQueryPart("SELECT * FROM " + quoteIdentifier(getTable()) + " WHERE " + quoteIdentifier(sqlPrimaryKey.get(0)));
+            switch (getModel().getDriverInfos().getArrayKeysPolicy())
+            {
+                case ANY:
+                    fetchAny.addQueryPart(" = ANY(");
+                    fetchAny.addParameter("keys");
+                    fetchAny.addQueryPart(")");
+                    break;
+                case UNNEST:
+                    fetchAny.addQueryPart(" IN (UNNEST(");
+                    fetchAny.addParameter("keys");
+                    fetchAny.addQueryPart("))");
+                    break;
+                default:
+                    throw new UnsupportedOperationException("array keys are not supported by driver " + getModel().getDriverInfos().getTag());
+            }
+            fetchAny.initialize();
+            fetchAnyAttribute = fetchAny;
+        }
+        return fetchAny;
+    }
+
+    private RowsetAttribute generateFetchAllAttribute(int size)
+    {
+        TypedAccessor[] accessors = new TypedAccessor[size];
+        Arrays.fill(accessors, getPrimaryKey().get(0).getAccessor());
+        RowsetAttribute fetchAll = newFetchAllAttribute(accessors);
+        String cast = getKeyCast();
+        fetchAll.addQueryPart("SELECT * FROM " + quoteIdentifier(getTable()) + " WHERE " + quoteIdentifier(sqlPrimaryKey.get(0)) + " IN (");
+        for (int i = 0; i < size; ++i)
+        {
+            if (i > 0)
+            {
+                fetchAll.addQueryPart(", ");
+            }
+            fetchAll.addParameter("key_" + i);
+            fetchAll.addQueryPart(cast);
+        }
+        fetchAll.addQueryPart(")");
+        fetchAll.initialize();
+        return fetchAll;
+    }
+
+    private RowsetAttribute newFetchAllAttribute(TypedAccessor[] accessors)
+    {
+        // key values are filtered by the caller, so that they can be matched back to the fetched rows
+        RowsetAttribute fetchAll = new RowsetAttribute("$fetchAll", this)
+        {
+            @Override
+            protected Serializable[] getParamValues(Serializable[] rawParamValues)
+            {
+                return rawParamValues;
+            }
+
+            @Override
+            protected TypedAccessor[] getParamAccessors()
+            {
+                return accessors;
+            }
+        };
+        fetchAll.setResultEntity((Entity)this);
+        fetchAll.setInternal(true);
+        return fetchAll;
+    }
+
+    private String getKeyCast()
+    {
+        return getModel().getDriverInfos().isStrictColumnTypes() && getModel().getDriverInfos().hasColumnMarkers()
+            ? "::" + getColumn(translateColumnName(sqlPrimaryKey.get(0))).typeName
+            : "";
+    }
+
     private String name = null;
     private String sqlName = null;
     private Model model = null;
@@ -568,10 +1265,19 @@ public abstract class BaseEntity extends AttributeHolder
     private ScalarAttribute countAttribute = null;
     private RowAttribute fetchAttribute = null;
     private RowsetAttribute iterateAttribute = null;
+    private Map<Integer, RowsetAttribute> fetchAllAttributes = new ConcurrentHashMap<>();
+    private volatile RowsetAttribute fetchAnyAttribute = null;
+    private Map<String, Pair<Entity, String>> upstreamJoins = new HashMap<>();
 
     private Action delete = null;
     private Action update = null;
-    private Map<BitSet, Action> insertPerColumnsMask = new HashMap<BitSet, Action>();
+    private Map<BitSet, Action> insertPerColumnsMask = new ConcurrentHashMap<BitSet, Action>();
+    private Map<BitSet, Action> updatePerColumnsMask = new ConcurrentHashMap<BitSet, Action>();
+    private Map<BitSet, Action> upsertPerColumnsMask = new ConcurrentHashMap<BitSet, Action>();
+
+    private int fetchCacheSize = 0;
+    private long fetchCacheTtl = 300000;
+    private IdentityCache fetchCache = null;
 
     private InstanceBuilder instanceBuilder = null;
 
@@ -595,6 +1301,7 @@ public abstract class BaseEntity extends AttributeHolder
             this.typeName = typeName;
             this.size = size;
             this.generated = generated;
+            this.accessor = TypedAccessor.forType(type, typeName);
         }
 
         public int getIndex()
@@ -636,17 +1343,36 @@ public abstract class BaseEntity extends AttributeHolder
             return value == null ? null : readFilter.apply(value);
         }
 
+        /**
+         * Whether values written to this column are filtered.
+         * @return true if the column has a write filter
+         */
+        public boolean hasWriteFilter()
+        {
+            return writeFilter != Filter.identity();
+        }
+
         public final Serializable write(Serializable value) throws SQLException
         {
             return writeFilter.apply(value);
         }
 
+        /**
+         * Get the typed accessor used to bind and read values of this column.
+         * @return typed accessor
+         */
+        public TypedAccessor getAccessor()
+        {
+            return accessor;
+        }
+
         public final String name;
         public final String sqlName;
         public final int type;
         public final String typeName;
         public final Integer size;
         public final boolean generated;
+        private final TypedAccessor accessor;
         private int index = -1;
         private boolean keyColumn = false;
         private Filter<Serializable> readFilter = Filter.identity();
@@ -34,7 +34,10 @@ import com.republicate.modality.config.ConfigurationException;
 import com.republicate.modality.config.Constants;
 import com.republicate.modality.filter.IdentifiersFilters;
 import com.republicate.modality.filter.ValueFilters;
+import com.republicate.modality.metrics.JmxMetrics;
+import com.republicate.modality.metrics.Metrics;
 import com.republicate.modality.sql.BasicDataSource;
+import com.republicate.modality.sql.BoundedConnectionPool;
 import com.republicate.modality.sql.ConnectionPool;
 import com.republicate.modality.sql.ConnectionWrapper;
 import com.republicate.modality.sql.Credentials;
@@ -50,6 +53,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.velocity.tools.ClassUtils;
 import org.apache.velocity.tools.XmlUtils;
+import org.apache.velocity.util.ExtProperties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.w3c.dom.Element;
@@ -81,6 +85,9 @@ import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.naming.Context;
 import javax.naming.InitialContext;
 import javax.naming.NameNotFoundException;
@@ -244,6 +251,35 @@ public abstract class BaseModel extends AttributeHolder implements Constants
             Optional.ofNullable(config.get(MODEL_INSTANCES_FACTORY)).ifPresent(getInstances()::setFactory);
             Optional.ofNullable(config.getSubProperties(MODEL_INSTANCES_CLASSES)).ifPresent(getInstances()::setClasses);
 
+            ExtProperties connectionsConfig = config.getSubProperties(MODEL_CONNECTIONS);
+            if (connectionsConfig != null)
+            {
+                ConfigDigester.setProperties(getConnections(), connectionsConfig);
+            }
+
+            ExtProperties cacheConfig = config.getSubProperties(MODEL_CACHE);
+            if (cacheConfig != null)
+            {
+                ConfigDigester.setProperties(getCache(), cacheConfig);
+            }
+
+            ExtProperties slowQueriesConfig = config.getSubProperties(MODEL_SLOW_QUERIES);
+            if (slowQueriesConfig != null)
+            {
+                ConfigDigester.setProperties(getSlowQueries(), slowQueriesConfig);
+            }
+
+            ExtProperties replicasConfig = config.getSubProperties(MODEL_REPLICAS);
+            if (replicasConfig != null)
+            {
+                ConfigDigester.setProperties(getReplicas(), replicasConfig);
+            }
+
+            Optional.ofNullable(config.getString(MODEL_BATCH_SIZE)).map(Integer::valueOf).ifPresent(this::setBatchSize);
+            Optional.ofNullable(config.getString(MODEL_FETCH_CHUNK_SIZE)).map(Integer::valueOf).ifPresent(this::setFetchChunkSize);
+
+            Optional.ofNullable(config.getString(MODEL_METRICS)).ifPresent(this::setMetrics);
+
             Optional.ofNullable(config.getString(MODEL_DATABASE)).ifPresent(this::setDatabaseURL);
             Optional.ofNullable(config.getString(MODEL_CREDENTIALS_USER)).ifPresent(getCredentials()::setUser);
             Optional.ofNullable(config.getString(MODEL_CREDENTIALS_PASSWORD)).ifPresent(getCredentials()::setPassword);
@@ -419,9 +455,38 @@ public abstract class BaseModel extends AttributeHolder implements Constants
         ConfigDigester.setProperties(this, props);
         getDriverInfos().log();
 
-        connectionPool = new ConnectionPool(dataSource, credentials, driverInfos, schema, true, maxConnections);
-        transactionConnectionPool = new ConnectionPool(dataSource, credentials, driverInfos, schema, false, maxConnections);
-        statementPool = new StatementPool(getModelId(), connectionPool, getConnectionsCheckInterval());
+        connectionPool = connectionsConfig.createPool(true);
+        // a unified pool toggles the autocommit mode of transaction connections
+        transactionConnectionPool = connectionsConfig.getPool() == PoolType.UNIFIED ? connectionPool : connectionsConfig.createPool(false);
+        if (Boolean.TRUE.equals(getDriverInfos().isStreamingTransaction()) && !transactionConnectionPool.isExclusive())
+        {
+            // see Model.prepareStreamingQuery()
+            logger.info("rowsets with a fetch size will not be streamed: streaming needs a bounded or unified connections pool");
+        }
+        statementPool = new StatementPool(getModelId(), connectionPool, getConnectionsCheckInterval(), connectionsConfig.getStatementsPerConnection());
+        connectionPool.setMetrics(metrics);
+        transactionConnectionPool.setMetrics(metrics);
+        metrics.register(getModelId(), connectionPool, transactionConnectionPool, statementPool);
+        List<DataSource> replicaDataSources = replicasConfig.getDataSources();
+        if (!replicaDataSources.isEmpty())
+        {
+            replicaSet = new ReplicaSet(replicasConfig.getRouting(), replicasConfig.getReadYourWrites());
+            for (DataSource replicaDataSource : replicaDataSources)
+            {
+                ConnectionPool replicaPool = connectionsConfig.createPool(replicaDataSource, true);
+                ConnectionPool replicaStreamingPool = connectionsConfig.getPool() == PoolType.UNIFIED ? replicaPool : connectionsConfig.createPool(replicaDataSource, false);
+                replicaPool.setMetrics(metrics);
+                replicaStreamingPool.setMetrics(metrics);
+                replicaSet.addReplica(new ReplicaSet.Replica(replicaPool, replicaStreamingPool,
+                    new StatementPool(getModelId(), replicaPool, getConnectionsCheckInterval(), connectionsConfig.getStatementsPerConnection())));
+            }
+        }
+        if (cacheConfig.getSize() > 0)
+        {
+            resultCache = new ResultCache(this, cacheConfig.getSize(), cacheConfig.getTtl());
+        }
+        slowQueryLog = new SlowQueryLog(slowQueriesConfig.getThreshold(), slowQueriesConfig.getTop(), slowQueriesConfig.getWindow());
+        slowQueryLog.setRedactor(slowQueriesConfig.getRedactor());
     }
 
     protected final void registerModel()
@@ -506,6 +571,17 @@ public abstract class BaseModel extends AttributeHolder implements Constants
      */
 
     public Model setDataSource(String dataSourceName) throws Exception
+    {
+        return setDataSource(lookupDataSource(dataSourceName));
+    }
+
+    /**
+     * Look up a data source in the JNDI environment.
+     * @param dataSourceName data source JNDI name, relative to <code>java:comp/env</code>
+     * @return data source
+     * @throws Exception
+     */
+    protected DataSource lookupDataSource(String dataSourceName) throws Exception
     {
         Object resource;
         Context ctx;
@@ -535,7 +611,7 @@ public abstract class BaseModel extends AttributeHolder implements Constants
         {
             throw new RuntimeException("Data source resource type not handled: " + dataSource.getClass().getName());
         }
-        return setDataSource(dataSource);
+        return dataSource;
     }
 
     public Model setDataSource(DataSource dataSource) throws Exception
@@ -588,6 +664,138 @@ public abstract class BaseModel extends AttributeHolder implements Constants
         return getModel();
     }
 
+    /**
+     * Get the default maximum number of rows sent per JDBC batch by entities batch operations.
+     * @return batch size
+     */
+    public int getBatchSize()
+    {
+        return batchSize;
+    }
+
+    public Model setBatchSize(int batchSize)
+    {
+        if (batchSize <= 0)
+        {
+            throw new ConfigurationException("batch size must be positive");
+        }
+        this.batchSize = batchSize;
+        return getModel();
+    }
+
+    /**
+     * Get the maximum number of keys looked up per query by <code>Entity.fetchAll()</code>.
+     * @return fetch chunk size
+     */
+    public int getFetchChunkSize()
+    {
+        return fetchChunkSize;
+    }
+
+    public Model setFetchChunkSize(int fetchChunkSize)
+    {
+        if (fetchChunkSize <= 0)
+        {
+            throw new ConfigurationException("fetch chunk size must be positive");
+        }
+        this.fetchChunkSize = fetchChunkSize;
+        return getModel();
+    }
+
+    /**
+     * Get the metrics implementation.
+     * @return metrics, never null
+     */
+    public Metrics getMetrics()
+    {
+        return metrics;
+    }
+
+    /**
+     * Set the metrics implementation. Must be called before initialization.
+     * @param metrics metrics implementation, or null for none
+     * @return model
+     */
+    public Model setMetrics(Metrics metrics)
+    {
+        this.metrics = metrics == null ? Metrics.NONE : metrics;
+        return getModel();
+    }
+
+    /**
+     * Set the metrics implementation: <code>none</code>, <code>jmx</code>, or an implementation class name.
+     * Must be called before initialization.
+     * @param metrics metrics implementation
+     * @return model
+     */
+    public Model setMetrics(String metrics)
+    {
+        switch (metrics.toLowerCase(Locale.ROOT))
+        {
+            case "none":
+                return setMetrics(Metrics.NONE);
+            case "jmx":
+                return setMetrics(new JmxMetrics());
+            default:
+                try
+                {
+                    return setMetrics((Metrics)ClassUtils.getClass(metrics).getConstructor().newInstance());
+                }
+                catch (Exception e)
+                {
+                    throw new ConfigurationException("could not instantiate metrics class: " + metrics, e);
+                }
+        }
+    }
+
+    /**
+     * Get the executor used by asynchronous operations. Unless set, it defaults to a virtual threads executor
+     * when the JDK provides one, or to an unbounded pool of daemon threads otherwise.
+     * @return executor
+     */
+    public Executor getExecutor()
+    {
+        Executor executor = this.executor;
+        if (executor == null)
+        {
+            synchronized (this)
+            {
+                executor = this.executor;
+                if (executor == null)
+                {
+                    this.executor = executor = createDefaultExecutor();
+                }
+            }
+        }
+        return executor;
+    }
+
+    public Model setExecutor(Executor executor)
+    {
+        this.executor = executor;
+        return getModel();
+    }
+
+    private Executor createDefaultExecutor()
+    {
+        try
+        {
+            // JDK 21+
+            return (Executor)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch (ReflectiveOperationException e)
+        {
+            String prefix = "modality-" + getModelId() + "-async-";
+            AtomicInteger counter = new AtomicInteger();
+            return Executors.newCachedThreadPool(runnable ->
+            {
+                Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
     public URL getDefinition()
     {
         return definition;
@@ -652,16 +860,116 @@ public abstract class BaseModel extends AttributeHolder implements Constants
         return entitiesMap.get(name);
     }
 
+    public ConnectionsConfig getConnections()
+    {
+        return connectionsConfig;
+    }
+
+    public CacheConfig getCache()
+    {
+        return cacheConfig;
+    }
+
+    public SlowQueriesConfig getSlowQueries()
+    {
+        return slowQueriesConfig;
+    }
+
+    public ReplicasConfig getReplicas()
+    {
+        return replicasConfig;
+    }
+
+    /**
+     * Get the read replicas.
+     * @return replica set, or null if no replica is configured
+     */
+    public ReplicaSet getReplicaSet()
+    {
+        return replicaSet;
+    }
+
+    /**
+     * Choose the replica a query should be sent to.
+     * @return chosen replica, or null for the primary database
+     */
+    protected ReplicaSet.Replica getReadReplica()
+    {
+        if (replicaSet == null || StatementPool.getCurrentTransactionConnection(getModelId()) != null)
+        {
+            return null;
+        }
+        return replicaSet.choose();
+    }
+
+    /**
+     * Notify a write to the primary database by the current thread, which will read from it during the
+     * read-your-writes window.
+     */
+    protected void recordPrimaryWrite()
+    {
+        if (replicaSet != null)
+        {
+            replicaSet.recordWrite();
+        }
+    }
+
+    /**
+     * Get the slow queries log.
+     * @return slow queries log
+     */
+    public SlowQueryLog getSlowQueryLog()
+    {
+        return slowQueryLog;
+    }
+
+    /**
+     * Get the slowest execution of the slowest attributes over the slow queries rolling window.
+     * @return slow queries, slowest first
+     */
+    public List<SlowQueryLog.SlowQuery> getSlowestQueries()
+    {
+        return slowQueryLog == null ? Collections.emptyList() : slowQueryLog.getSlowestQueries();
+    }
+
+    /**
+     * Get the model-wide cache of cached attributes results.
+     * @return results cache, or null if disabled
+     */
+    public ResultCache getResultCache()
+    {
+        return resultCache;
+    }
+
     public DriverInfos getDriverInfos()
     {
         return driverInfos;
     }
 
+    /**
+     * Get the PostgreSQL <code>COPY</code> statements manager, whose copy handler can be replaced
+     * by a stand-in implementation.
+     * @return copy manager
+     */
+    public synchronized PostgresqlCopyManager getPostgresqlCopyManager()
+    {
+        if (postgresqlCopyManager == null)
+        {
+            postgresqlCopyManager = new PostgresqlCopyManager(getModel());
+        }
+        return postgresqlCopyManager;
+    }
+
     protected ConnectionPool getConnectionPool()
     {
         return connectionPool;
     }
 
+    protected ConnectionPool getTransactionConnectionPool()
+    {
+        return transactionConnectionPool;
+    }
+
     protected StatementPool getStatementPool()
     {
         return statementPool;
@@ -669,7 +977,25 @@ public abstract class BaseModel extends AttributeHolder implements Constants
 
     protected ConnectionWrapper getTransactionConnection() throws SQLException
     {
-        return transactionConnectionPool.getConnection();
+        return transactionConnectionPool.getConnection(false);
+    }
+
+    protected void releaseTransactionConnection(ConnectionWrapper connection)
+    {
+        transactionConnectionPool.releaseConnection(connection);
+        recordPrimaryWrite();
+        if (resultCache != null)
+        {
+            resultCache.flushPendingInvalidations(connection);
+        }
+        for (Entity entity : entitiesMap.values())
+        {
+            IdentityCache fetchCache = entity.getFetchCache();
+            if (fetchCache != null)
+            {
+                fetchCache.flushPendingInvalidations(connection);
+            }
+        }
     }
 
     public NavigableMap<String, Entity> getEntities()
@@ -709,7 +1035,15 @@ public abstract class BaseModel extends AttributeHolder implements Constants
     public ReverseEngineer getMetaModel() throws SQLException
     {
         ConnectionWrapper connection = connectionPool.getConnection();
-        return getMetaModel(connection);
+        try
+        {
+            return getMetaModel(connection);
+        }
+        finally
+        {
+            // bounded pools would otherwise lose a permit at each call
+            connectionPool.releaseConnection(connection);
+        }
     }
 
     private void reverseEngineer() throws SQLException
@@ -897,6 +1231,7 @@ public abstract class BaseModel extends AttributeHolder implements Constants
             if (connection != null)
             {
                 connection.leaveBusyState();
+                connectionPool.releaseConnection(connection);
             }
         }
     }
@@ -1202,6 +1537,314 @@ public abstract class BaseModel extends AttributeHolder implements Constants
         private String cryptographClass = null;
     }
 
+    /**
+     * <p>gather connections pool settings in a subclass to ease configuration</p>
+     * <p>Must be configured before initialization.</p>
+     * <p>Durations are expressed in milliseconds.</p>
+     */
+    public class ConnectionsConfig
+    {
+        public PoolType getPool()
+        {
+            return pool;
+        }
+
+        public Model setPool(PoolType pool)
+        {
+            ensureConfigured();
+            this.pool = pool;
+            return getModel();
+        }
+
+        public int getMaxConnections()
+        {
+            return maxConnections;
+        }
+
+        public Model setMaxConnections(int maxConnections)
+        {
+            ensureConfigured();
+            BaseModel.this.maxConnections = maxConnections;
+            return getModel();
+        }
+
+        public int getMinIdle()
+        {
+            return minIdle;
+        }
+
+        public Model setMinIdle(int minIdle)
+        {
+            ensureConfigured();
+            this.minIdle = minIdle;
+            return getModel();
+        }
+
+        public int getMaxIdle()
+        {
+            return maxIdle < 0 ? maxConnections : maxIdle;
+        }
+
+        public Model setMaxIdle(int maxIdle)
+        {
+            ensureConfigured();
+            this.maxIdle = maxIdle;
+            return getModel();
+        }
+
+        public long getAcquireTimeout()
+        {
+            return acquireTimeout;
+        }
+
+        public Model setAcquireTimeout(long acquireTimeout)
+        {
+            ensureConfigured();
+            this.acquireTimeout = acquireTimeout;
+            return getModel();
+        }
+
+        public long getValidationInterval()
+        {
+            return validationInterval;
+        }
+
+        public Model setValidationInterval(long validationInterval)
+        {
+            ensureConfigured();
+            this.validationInterval = validationInterval;
+            return getModel();
+        }
+
+        public int getStatementsPerConnection()
+        {
+            return statementsPerConnection;
+        }
+
+        public Model setStatementsPerConnection(int statementsPerConnection)
+        {
+            ensureConfigured();
+            this.statementsPerConnection = statementsPerConnection;
+            return getModel();
+        }
+
+        protected ConnectionPool createPool(boolean autocommit) throws SQLException
+        {
+            return createPool(dataSource, autocommit);
+        }
+
+        protected ConnectionPool createPool(DataSource dataSource, boolean autocommit) throws SQLException
+        {
+            switch (pool)
+            {
+                case SHARED:
+                    return new ConnectionPool(dataSource, credentials, driverInfos, schema, autocommit, maxConnections);
+                case BOUNDED:
+                case UNIFIED:
+                {
+                    BoundedConnectionPool bounded = new BoundedConnectionPool(dataSource, credentials, driverInfos, schema, autocommit, maxConnections, minIdle, getMaxIdle(), acquireTimeout, validationInterval);
+                    bounded.warmUp();
+                    return bounded;
+                }
+                default:
+                    throw new ConfigurationException("unhandled connections pool type: " + pool);
+            }
+        }
+
+        private PoolType pool = PoolType.SHARED;
+
+        private int minIdle = 0;
+
+        private int maxIdle = -1;
+
+        private long acquireTimeout = 30000;
+
+        private long validationInterval = 60000;
+
+        private int statementsPerConnection = StatementPool.DEFAULT_STATEMENTS_PER_CONNECTION;
+    }
+
+    /**
+     * <p>Connections pool types:</p>
+     * <ul>
+     *     <li>SHARED: connections are shared between concurrent queries; the max number of connections is a soft limit,
+     *     beyond which busy connections are shared instead of waited for</li>
+     *     <li>BOUNDED: connections are exclusively borrowed, with wait, from two pools, for queries and for transactions</li>
+     *     <li>UNIFIED: like BOUNDED, but with a single pool for queries and transactions, so that the max number of connections is respected</li>
+     * </ul>
+     */
+    public enum PoolType { SHARED, BOUNDED, UNIFIED }
+
+    /**
+     * <p>gather results cache settings in a subclass to ease configuration</p>
+     * <p>The cache only applies to attributes flagged as <code>cached</code>, and is disabled when size is zero.</p>
+     * <p>Must be configured before initialization.</p>
+     */
+    public class CacheConfig
+    {
+        public int getSize()
+        {
+            return size;
+        }
+
+        public Model setSize(int size)
+        {
+            ensureConfigured();
+            this.size = size;
+            return getModel();
+        }
+
+        public long getTtl()
+        {
+            return ttl;
+        }
+
+        public Model setTtl(long ttl)
+        {
+            ensureConfigured();
+            this.ttl = ttl;
+            return getModel();
+        }
+
+        private int size = 0;
+
+        private long ttl = 300000;
+    }
+
+    /**
+     * <p>gather slow queries log settings in a subclass to ease configuration</p>
+     * <p>The model-wide threshold is disabled when negative, but attributes can still have their own threshold.</p>
+     * <p>Must be configured before initialization.</p>
+     */
+    public class SlowQueriesConfig
+    {
+        public long getThreshold()
+        {
+            return threshold;
+        }
+
+        public Model setThreshold(long threshold)
+        {
+            ensureConfigured();
+            this.threshold = threshold;
+            return getModel();
+        }
+
+        public int getTop()
+        {
+            return top;
+        }
+
+        public Model setTop(int top)
+        {
+            ensureConfigured();
+            this.top = top;
+            return getModel();
+        }
+
+        public long getWindow()
+        {
+            return window;
+        }
+
+        public Model setWindow(long window)
+        {
+            ensureConfigured();
+            this.window = window;
+            return getModel();
+        }
+
+        public SlowQueryLog.Redactor getRedactor()
+        {
+            return redactor;
+        }
+
+        public Model setRedactor(SlowQueryLog.Redactor redactor)
+        {
+            ensureConfigured();
+            this.redactor = redactor;
+            return getModel();
+        }
+
+        private long threshold = -1;
+
+        private int top = 20;
+
+        private long window = 3600000;
+
+        private SlowQueryLog.Redactor redactor = SlowQueryLog.DEFAULT_REDACTOR;
+    }
+
+    /**
+     * <p>gather read replicas settings in a subclass to ease configuration</p>
+     * <p>Replicas share the model credentials and connections settings.</p>
+     * <p>Must be configured before initialization.</p>
+     */
+    public class ReplicasConfig
+    {
+        public List<DataSource> getDataSources()
+        {
+            return Collections.unmodifiableList(dataSources);
+        }
+
+        /**
+         * Add replicas data sources.
+         * @param dataSources JNDI names or JDBC URLs
+         * @return model
+         * @throws Exception if a data source cannot be found
+         */
+        public Model setDataSources(String... dataSources) throws Exception
+        {
+            for (String dataSource : dataSources)
+            {
+                addDataSource(dataSource.startsWith("jdbc:") ? new BasicDataSource(dataSource) : lookupDataSource(dataSource));
+            }
+            return getModel();
+        }
+
+        public Model addDataSource(DataSource dataSource)
+        {
+            ensureConfigured();
+            dataSources.add(dataSource);
+            return getModel();
+        }
+
+        public ReplicaSet.Routing getRouting()
+        {
+            return routing;
+        }
+
+        public Model setRouting(ReplicaSet.Routing routing)
+        {
+            ensureConfigured();
+            this.routing = routing;
+            return getModel();
+        }
+
+        public long getReadYourWrites()
+        {
+            return readYourWrites;
+        }
+
+        /**
+         * Set the read-your-writes window.
+         * @param readYourWrites time during which a thread keeps reading from the primary database after a write, in milliseconds
+         * @return model
+         */
+        public Model setReadYourWrites(long readYourWrites)
+        {
+            ensureConfigured();
+            this.readYourWrites = readYourWrites;
+            return getModel();
+        }
+
+        private List<DataSource> dataSources = new ArrayList<>();
+
+        private ReplicaSet.Routing routing = ReplicaSet.Routing.ROUND_ROBIN;
+
+        private long readYourWrites = 1000;
+    }
+
     public class UserInstancesConfig
     {
 
@@ -1519,6 +2162,26 @@ public abstract class BaseModel extends AttributeHolder implements Constants
      */
     private long connectionsCheckInterval = 300;
 
+    /**
+     * Default maximum number of rows per JDBC batch.
+     */
+    private int batchSize = 1000;
+
+    /**
+     * Maximum number of keys per multiple fetch query.
+     */
+    private int fetchChunkSize = 100;
+
+    /**
+     * Executor of asynchronous operations.
+     */
+    private transient volatile Executor executor = null;
+
+    /**
+     * Metrics.
+     */
+    private transient Metrics metrics = Metrics.NONE;
+
     /**
      * Pool of connections for transactions.
      */
@@ -1554,6 +2217,34 @@ public abstract class BaseModel extends AttributeHolder implements Constants
 
     private UserInstancesConfig userInstancesConfig = new UserInstancesConfig();
 
+    private ConnectionsConfig connectionsConfig = new ConnectionsConfig();
+
+    private CacheConfig cacheConfig = new CacheConfig();
+
+    private SlowQueriesConfig slowQueriesConfig = new SlowQueriesConfig();
+
+    private ReplicasConfig replicasConfig = new ReplicasConfig();
+
+    /**
+     * Read replicas.
+     */
+    private transient ReplicaSet replicaSet = null;
+
+    /**
+     * Cached attributes results.
+     */
+    private transient ResultCache resultCache = null;
+
+    /**
+     * Slow queries log.
+     */
+    private transient SlowQueryLog slowQueryLog = null;
+
+    /**
+     * PostgreSQL <code>COPY</code> statements manager.
+     */
+    private transient PostgresqlCopyManager postgresqlCopyManager = null;
+
     /**
      * <p>Implicit values converters, used when:</p>
      * <ul>
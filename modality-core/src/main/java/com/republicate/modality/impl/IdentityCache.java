@@ -0,0 +1,247 @@
+package com.republicate.modality.impl;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import com.republicate.modality.Instance;
+import com.republicate.modality.sql.ConnectionWrapper;
+import com.republicate.modality.sql.SqlUtils;
+import com.republicate.modality.sql.StatementPool;
+
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Per-entity cache of the instances fetched by primary key.</p>
+ * <p>Keys are the string values of the primary key columns, as written to the database. The cache is bounded in size
+ * (least recently used entries are dropped first), and entries expire after a configurable time to live. Entries are
+ * invalidated by entity updates and deletions, and by any other action whose query references the entity table.</p>
+ * <p>Cached instances must never be handed out as is: callers get copies.</p>
+ */
+public class IdentityCache
+{
+    /**
+     * Constructor.
+     * @param entity cached entity
+     * @param size maximum number of entries
+     * @param ttl time to live of entries, in milliseconds, or a non-positive value for no expiration
+     */
+    public IdentityCache(BaseEntity entity, int size, long ttl)
+    {
+        this.modelId = entity.getModel().getModelId();
+        this.table = entity.getTable().toLowerCase(Locale.ROOT);
+        this.size = size;
+        this.ttl = ttl;
+        entries = new LinkedHashMap<List<String>, Entry>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<String>, Entry> eldest)
+            {
+                return size() > IdentityCache.this.size;
+            }
+        };
+    }
+
+    /**
+     * Get the cached instance for a primary key, loading it if needed. Missing rows are not cached.
+     * @param key cache key
+     * @param loader instance loader
+     * @return cached or loaded instance, or null if not found
+     * @throws SQLException
+     */
+    public Instance get(List<String> key, ResultCache.Loader loader) throws SQLException
+    {
+        if (key == null || StatementPool.getCurrentTransactionConnection(modelId) != null)
+        {
+            return (Instance)loader.load();
+        }
+        long now = System.currentTimeMillis();
+        Entry entry;
+        synchronized (entries)
+        {
+            entry = entries.get(key);
+            if (entry != null && entry.expiration <= now)
+            {
+                entries.remove(key);
+                entry = null;
+            }
+        }
+        if (entry != null)
+        {
+            hits.increment();
+            return entry.instance;
+        }
+        misses.increment();
+        // a concurrent invalidation while loading would make the loaded instance stale
+        long version = this.version.get();
+        Instance instance = (Instance)loader.load();
+        if (instance != null)
+        {
+            synchronized (entries)
+            {
+                if (version == this.version.get())
+                {
+                    entries.put(key, new Entry(instance, ttl > 0 ? now + ttl : Long.MAX_VALUE));
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Invalidate the cached instance for a primary key.
+     * @param key cache key
+     */
+    public void invalidate(List<String> key)
+    {
+        if (key == null)
+        {
+            invalidateAll();
+            return;
+        }
+        synchronized (entries)
+        {
+            version.incrementAndGet();
+            entries.remove(key);
+        }
+        ConnectionWrapper transaction = StatementPool.getCurrentTransactionConnection(modelId);
+        if (transaction != null)
+        {
+            pendingInvalidations.computeIfAbsent(transaction, t -> new HashSet<>()).add(key);
+        }
+    }
+
+    /**
+     * Invalidate all cached instances.
+     */
+    public void invalidateAll()
+    {
+        synchronized (entries)
+        {
+            version.incrementAndGet();
+            entries.clear();
+        }
+        ConnectionWrapper transaction = StatementPool.getCurrentTransactionConnection(modelId);
+        if (transaction != null)
+        {
+            pendingInvalidations.computeIfAbsent(transaction, t -> new HashSet<>()).add(null);
+        }
+    }
+
+    /**
+     * Invalidate cached instances if a write query references the entity table.
+     * @param query write query
+     */
+    public void invalidate(String query)
+    {
+        if (SqlUtils.getIdentifiers(query).contains(table))
+        {
+            invalidateAll();
+        }
+    }
+
+    /**
+     * Invalidate again instances written to during a transaction, once it is committed or rolled back.
+     * @param transaction transaction connection
+     */
+    public void flushPendingInvalidations(ConnectionWrapper transaction)
+    {
+        Set<List<String>> pending = pendingInvalidations.remove(transaction);
+        if (pending == null)
+        {
+            return;
+        }
+        synchronized (entries)
+        {
+            version.incrementAndGet();
+            if (pending.contains(null))
+            {
+                entries.clear();
+            }
+            else
+            {
+                entries.keySet().removeAll(pending);
+            }
+        }
+    }
+
+    /**
+     * Get usage statistics.
+     * @return a long array: [nb of hits, nb of misses, nb of entries]
+     */
+    public long[] getStats()
+    {
+        long count;
+        synchronized (entries)
+        {
+            count = entries.size();
+        }
+        return new long[] { hits.sum(), misses.sum(), count };
+    }
+
+    /**
+     * Cache entry
+     */
+    private static class Entry
+    {
+        Entry(Instance instance, long expiration)
+        {
+            this.instance = instance;
+            this.expiration = expiration;
+        }
+
+        private final Instance instance;
+        private final long expiration;
+    }
+
+    /** model id */
+    private final String modelId;
+
+    /** lowercase entity table */
+    private final String table;
+
+    /** maximum number of entries */
+    private final int size;
+
+    /** time to live, in milliseconds */
+    private final long ttl;
+
+    /** cached instances, in access order */
+    private final Map<List<String>, Entry> entries;
+
+    /** bumped at each invalidation */
+    private final AtomicLong version = new AtomicLong();
+
+    /** keys written to during pending transactions (null meaning all keys), by transaction connection */
+    private final Map<ConnectionWrapper, Set<List<String>>> pendingInvalidations = new ConcurrentHashMap<>();
+
+    /** hits counter */
+    private final LongAdder hits = new LongAdder();
+
+    /** misses counter */
+    private final LongAdder misses = new LongAdder();
+}
@@ -10,6 +10,7 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.Serializable;
+import java.io.Writer;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -22,6 +23,15 @@ import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+/**
+ * <p>PostgreSQL <code>COPY</code> statements support.</p>
+ * <p>Besides <code>COPY ... FROM STDIN</code> statements of actions taking a resource as parameter, the manager streams
+ * CSV data in and out of the database for entities and rowset attributes bulk operations. The actual copy is performed
+ * by a {@link CopyHandler}, which defaults to the PostgreSQL driver's <code>CopyManager</code>, and which can be replaced
+ * by a stand-in implementation.</p>
+ * <p>Bulk operations only use the CSV format: <code>COPY ... (FORMAT binary)</code> would need a binary encoder and decoder
+ * for each column type, and isn't supported.</p>
+ */
 public class PostgresqlCopyManager
 {
     protected Model model;
@@ -32,6 +42,7 @@ public class PostgresqlCopyManager
     private static Class copyManagerClass = null;
     private static Constructor copyManager_Ctor = null;
     private static Method copyManager_copyIn = null;
+    private static Method copyManager_copyOut = null;
     protected ConfigHelper helper = new ConfigHelper();
 
     public interface ResourceURLProvider extends Function<String, URL>, NonPositionedParameter
@@ -41,6 +52,34 @@ public class PostgresqlCopyManager
         // method
     }
 
+    /**
+     * Performs <code>COPY</code> statements on a JDBC connection.
+     */
+    public interface CopyHandler
+    {
+        /**
+         * Perform a <code>COPY ... FROM STDIN</code> statement.
+         * @param connection JDBC connection
+         * @param sql copy statement
+         * @param reader copied data
+         * @return number of copied rows
+         * @throws SQLException
+         * @throws IOException
+         */
+        long copyIn(Connection connection, String sql, Reader reader) throws SQLException, IOException;
+
+        /**
+         * Perform a <code>COPY ... TO STDOUT</code> statement.
+         * @param connection JDBC connection
+         * @param sql copy statement
+         * @param writer copied data target
+         * @return number of copied rows
+         * @throws SQLException
+         * @throws IOException
+         */
+        long copyOut(Connection connection, String sql, Writer writer) throws SQLException, IOException;
+    }
+
     public PostgresqlCopyManager(Model model)
     {
         this.model = model;
@@ -57,30 +96,122 @@ public class PostgresqlCopyManager
             && copyFromStdin.matcher(qry).matches();
     }
 
+    /**
+     * Whether <code>COPY</code> statements can be used, that is if a copy handler has been set
+     * or if the database is PostgreSQL.
+     * @return true if supported
+     */
+    public boolean isCopySupported()
+    {
+        return copyHandler != null || "postgresql".equals(model.getDriverInfos().getTag());
+    }
+
+    /**
+     * Get the copy handler.
+     * @return copy handler
+     * @throws SQLException if the PostgreSQL driver copy manager cannot be loaded
+     */
+    public CopyHandler getCopyHandler() throws SQLException
+    {
+        if (copyHandler == null)
+        {
+            loadCopyManagerClass();
+            copyHandler = DRIVER_COPY_HANDLER;
+        }
+        return copyHandler;
+    }
+
+    /**
+     * Set the copy handler, for instance to a stand-in implementation when PostgreSQL isn't available.
+     * @param copyHandler copy handler
+     */
+    public void setCopyHandler(CopyHandler copyHandler)
+    {
+        this.copyHandler = copyHandler;
+    }
+
     public long copyFromStdin(String query, Serializable param) throws SQLException
     {
-        ConnectionWrapper wrapper = null;
-        if (copyManagerClass == null)
+        // get resource reader
+        Reader reader = null;
+        try
         {
-            synchronized (getClass())
+            if (param instanceof ResourceURLProvider)
             {
-                if (copyManagerClass == null)
-                {
-                    try
-                    {
-                        copyManagerClass = Class.forName(COPY_MANAGER_CLASS);
-                        Class baseConnectionClass = Class.forName(BASE_CONNECTION_CLASS);
-                        Class params[] = { baseConnectionClass };
-                        copyManager_Ctor = copyManagerClass.getConstructor(params);
-                        copyManager_copyIn = copyManagerClass.getMethod("copyIn", String.class, Reader.class);
-                    }
-                    catch (ClassNotFoundException | NoSuchMethodException e)
-                    {
-                        throw new SQLException("Could not load postgresql CopyManager class", e);
-                    }
-                }
+                Matcher matcher = copyFromStdin.matcher(query);
+                if (!matcher.matches()) throw new SQLException("unhandled case");
+                String tableName = matcher.group(1);
+                param = ((ResourceURLProvider)param).apply(tableName);
+            }
+            else if (param instanceof String)
+            {
+                param = helper.findURL((String)param, model.getServletContext(), false);
+            }
+            else if (!(param instanceof URL))
+            {
+                throw new SQLException("Expecting a path or URL parameter");
             }
+            if (param == null)
+            {
+                throw new SQLException("Could not find resource: " + param);
+            }
+            reader = new InputStreamReader(((URL) param).openStream(), StandardCharsets.UTF_8);
+        }
+        catch (IOException e)
+        {
+            throw new SQLException("could not get URL reader", e);
+        }
+        try
+        {
+            return copyIn(query, reader);
         }
+        finally
+        {
+            try
+            {
+                reader.close();
+            }
+            catch (IOException ioe)
+            {
+                // nothing to do
+            }
+        }
+    }
+
+    /**
+     * Perform a <code>COPY ... FROM STDIN</code> statement, inside the current transaction or inside a new one.
+     * @param query copy statement
+     * @param reader copied data
+     * @return number of copied rows
+     * @throws SQLException
+     */
+    public long copyIn(String query, Reader reader) throws SQLException
+    {
+        CopyHandler handler = getCopyHandler();
+        return performCopy(connection -> handler.copyIn(connection, query, reader), true);
+    }
+
+    /**
+     * Perform a <code>COPY ... TO STDOUT</code> statement.
+     * @param query copy statement
+     * @param writer copied data target
+     * @return number of copied rows
+     * @throws SQLException
+     */
+    public long copyOut(String query, Writer writer) throws SQLException
+    {
+        CopyHandler handler = getCopyHandler();
+        return performCopy(connection -> handler.copyOut(connection, query, writer), false);
+    }
+
+    private interface CopyOperation
+    {
+        long perform(Connection connection) throws SQLException, IOException;
+    }
+
+    private long performCopy(CopyOperation operation, boolean write) throws SQLException
+    {
+        ConnectionWrapper wrapper = null;
         boolean ownsTransaction = false;
         try
         {
@@ -94,79 +225,37 @@ public class PostgresqlCopyManager
                 ownsTransaction = true;
             }
             wrapper.enterBusyState();
-
-            // instantiate copy manager
-            Object copyManager = null;
-            try
-            {
-                Connection connection = wrapper.unwrap();
-                Object ctorArgs[] = {connection};
-                copyManager = copyManager_Ctor.newInstance(ctorArgs);
-            }
-            catch (IllegalAccessException | InstantiationException | InvocationTargetException e)
-            {
-                Throwable cause = e.getCause();
-                if (cause != null && cause instanceof SQLException) throw (SQLException)cause;
-                throw new SQLException("could not instantiate copy manager", e);
-            }
-
-            // get resource reader
-            Reader reader = null;
-            try
+            long affected = operation.perform(wrapper.unwrap());
+            if (ownsTransaction)
             {
-                if (param instanceof ResourceURLProvider)
+                if (write)
                 {
-                    Matcher matcher = copyFromStdin.matcher(query);
-                    if (!matcher.matches()) throw new SQLException("unhandled case");
-                    String tableName = matcher.group(1);
-                    param = ((ResourceURLProvider)param).apply(tableName);
-                }
-                else if (param instanceof String)
-                {
-                    param = helper.findURL((String)param, model.getServletContext(), false);
-                }
-                else if (!(param instanceof URL))
-                {
-                    throw new SQLException("Expecting a path or URL parameter");
-                }
-                if (param == null)
-                {
-                    throw new SQLException("Could not find resource: " + param);
+                    wrapper.commit();
                 }
-                reader = new InputStreamReader(((URL) param).openStream(), StandardCharsets.UTF_8);
-            }
-            catch (IOException e)
-            {
-                throw new SQLException("could not get URL reader", e);
-            }
-
-            // copy
-            long affected = -1;
-            try
-            {
-                affected = ((Number)copyManager_copyIn.invoke(copyManager, query, reader)).longValue();
-                if (ownsTransaction)
+                else
                 {
-                    wrapper.commit();
+                    wrapper.rollback();
                 }
             }
-            catch (IllegalAccessException | InvocationTargetException e)
-            {
-                Throwable cause = e.getCause();
-                if (cause != null && cause instanceof SQLException) throw (SQLException)cause;
-                throw new SQLException("could not copy in", e);
-            }
+            return affected;
+        }
+        catch (IOException ioe)
+        {
+            // errors of the rows reader are reported as they were thrown
+            SQLException sqle = ioe.getCause() instanceof SQLException
+                ? (SQLException)ioe.getCause()
+                : new SQLException("could not copy data", ioe);
             if (ownsTransaction)
             {
-                wrapper.commit();
+                rollback(wrapper, sqle);
             }
-            return affected;
+            throw sqle;
         }
         catch (SQLException sqle)
         {
-            if (ownsTransaction)
+            if (ownsTransaction && wrapper != null)
             {
-                wrapper.rollback();
+                rollback(wrapper, sqle);
             }
             throw sqle;
         }
@@ -175,7 +264,83 @@ public class PostgresqlCopyManager
             if (wrapper != null)
             {
                 wrapper.leaveBusyState();
+                if (ownsTransaction)
+                {
+                    ((BaseModel)model).releaseTransactionConnection(wrapper);
+                }
             }
         }
     }
+
+    /**
+     * Roll back a failed copy, keeping the copy failure as the primary error.
+     * @param wrapper transaction connection
+     * @param e copy failure
+     */
+    private void rollback(ConnectionWrapper wrapper, SQLException e)
+    {
+        try
+        {
+            wrapper.rollback();
+        }
+        catch (SQLException rollbackException)
+        {
+            e.addSuppressed(rollbackException);
+        }
+    }
+
+    private static synchronized void loadCopyManagerClass() throws SQLException
+    {
+        if (copyManagerClass == null)
+        {
+            try
+            {
+                Class baseConnectionClass = Class.forName(BASE_CONNECTION_CLASS);
+                Class params[] = { baseConnectionClass };
+                Class managerClass = Class.forName(COPY_MANAGER_CLASS);
+                copyManager_Ctor = managerClass.getConstructor(params);
+                copyManager_copyIn = managerClass.getMethod("copyIn", String.class, Reader.class);
+                copyManager_copyOut = managerClass.getMethod("copyOut", String.class, Writer.class);
+                copyManagerClass = managerClass;
+            }
+            catch (ClassNotFoundException | NoSuchMethodException e)
+            {
+                throw new SQLException("Could not load postgresql CopyManager class", e);
+            }
+        }
+    }
+
+    private static Object invokeCopyManager(Connection connection, Method method, Object... args) throws SQLException
+    {
+        try
+        {
+            Object copyManager = copyManager_Ctor.newInstance(connection);
+            return method.invoke(copyManager, args);
+        }
+        catch (IllegalAccessException | InstantiationException | InvocationTargetException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause != null && cause instanceof SQLException) throw (SQLException)cause;
+            throw new SQLException("could not use copy manager", cause == null ? e : cause);
+        }
+    }
+
+    /** PostgreSQL driver copy manager, used through reflection */
+    private static final CopyHandler DRIVER_COPY_HANDLER = new CopyHandler()
+    {
+        @Override
+        public long copyIn(Connection connection, String sql, Reader reader) throws SQLException
+        {
+            return ((Number)invokeCopyManager(connection, copyManager_copyIn, sql, reader)).longValue();
+        }
+
+        @Override
+        public long copyOut(Connection connection, String sql, Writer writer) throws SQLException
+        {
+            return ((Number)invokeCopyManager(connection, copyManager_copyOut, sql, writer)).longValue();
+        }
+    };
+
+    /** copy handler */
+    private volatile CopyHandler copyHandler = null;
 }
@@ -0,0 +1,210 @@
+package com.republicate.modality.impl;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import com.republicate.modality.sql.ConnectionPool;
+import com.republicate.modality.sql.StatementPool;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>Read replicas of the model database.</p>
+ * <p>Queries of scalar, row and rowset attributes, hence entities fetches and iterations, are routed to a replica
+ * chosen in round-robin or towards the least busy one, unless they happen inside a transaction (including
+ * <code>Model.attempt()</code>), or in a thread which did write to the primary database during the last read-your-writes
+ * window. Actions, transactions and instances modifications always go to the primary database.</p>
+ */
+public class ReplicaSet
+{
+    /**
+     * Replica choice policy
+     */
+    public enum Routing { ROUND_ROBIN, LEAST_BUSY }
+
+    /**
+     * Pools of a single replica
+     */
+    public static class Replica
+    {
+        public Replica(ConnectionPool connectionPool, ConnectionPool streamingConnectionPool, StatementPool statementPool)
+        {
+            this.connectionPool = connectionPool;
+            this.streamingConnectionPool = streamingConnectionPool;
+            this.statementPool = statementPool;
+        }
+
+        public ConnectionPool getConnectionPool()
+        {
+            return connectionPool;
+        }
+
+        public ConnectionPool getStreamingConnectionPool()
+        {
+            return streamingConnectionPool;
+        }
+
+        public StatementPool getStatementPool()
+        {
+            return statementPool;
+        }
+
+        /** autocommit connections pool */
+        private final ConnectionPool connectionPool;
+
+        /** pool of manual commit connections for streamed queries */
+        private final ConnectionPool streamingConnectionPool;
+
+        /** statements pool */
+        private final StatementPool statementPool;
+    }
+
+    /**
+     * Constructor.
+     * @param routing replica choice policy
+     * @param readYourWritesWindow time during which a thread keeps reading from the primary database after a write, in milliseconds
+     */
+    public ReplicaSet(Routing routing, long readYourWritesWindow)
+    {
+        this.routing = routing;
+        this.readYourWritesWindow = readYourWritesWindow;
+    }
+
+    public void addReplica(Replica replica)
+    {
+        replicas.add(replica);
+    }
+
+    public List<Replica> getReplicas()
+    {
+        return Collections.unmodifiableList(replicas);
+    }
+
+    /**
+     * Choose a replica for a read.
+     * @return chosen replica, or null if the current thread has to read from the primary database
+     */
+    public Replica choose()
+    {
+        int size = replicas.size();
+        if (size == 0 || isReadingOwnWrites())
+        {
+            return null;
+        }
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        Replica chosen = replicas.get(start);
+        if (routing == Routing.LEAST_BUSY && size > 1)
+        {
+            int minBusy = chosen.getConnectionPool().getUsageStats()[0];
+            for (int i = 1; i < size && minBusy > 0; ++i)
+            {
+                Replica replica = replicas.get((start + i) % size);
+                int busy = replica.getConnectionPool().getUsageStats()[0];
+                if (busy < minBusy)
+                {
+                    chosen = replica;
+                    minBusy = busy;
+                }
+            }
+        }
+        return chosen;
+    }
+
+    /**
+     * Record a write to the primary database by the current thread.
+     */
+    public void recordWrite()
+    {
+        if (readYourWritesWindow <= 0)
+        {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (writeDeadlines.size() > SWEEP_THRESHOLD)
+        {
+            // forget about threads which didn't read since their window expired
+            writeDeadlines.values().removeIf(deadline -> deadline <= now);
+        }
+        writeDeadlines.put(Thread.currentThread(), now + readYourWritesWindow);
+    }
+
+    /**
+     * Check whether the current thread did write to the primary database during the read-your-writes window.
+     * @return whether the current thread has to read from the primary database
+     */
+    public boolean isReadingOwnWrites()
+    {
+        if (writeDeadlines.isEmpty())
+        {
+            return false;
+        }
+        Thread thread = Thread.currentThread();
+        Long deadline = writeDeadlines.get(thread);
+        if (deadline == null)
+        {
+            return false;
+        }
+        if (deadline > System.currentTimeMillis())
+        {
+            return true;
+        }
+        writeDeadlines.remove(thread, deadline);
+        return false;
+    }
+
+    /**
+     * Close all replicas connections.
+     */
+    public void clear()
+    {
+        for (Replica replica : replicas)
+        {
+            replica.getStatementPool().clear();
+            replica.getConnectionPool().clear();
+            if (replica.getStreamingConnectionPool() != replica.getConnectionPool())
+            {
+                replica.getStreamingConnectionPool().clear();
+            }
+        }
+    }
+
+    /** number of tracked writing threads above which expired entries are swept */
+    private static final int SWEEP_THRESHOLD = 1024;
+
+    /** replica choice policy */
+    private final Routing routing;
+
+    /** read-your-writes window, in milliseconds */
+    private final long readYourWritesWindow;
+
+    /** replicas */
+    private final List<Replica> replicas = new CopyOnWriteArrayList<>();
+
+    /** round-robin counter */
+    private final AtomicInteger next = new AtomicInteger();
+
+    /** read-your-writes windows ends, by thread (rather than a thread local, so that reading threads never allocate anything) */
+    private final Map<Thread, Long> writeDeadlines = new ConcurrentHashMap<>();
+}
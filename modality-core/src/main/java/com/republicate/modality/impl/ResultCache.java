@@ -0,0 +1,367 @@
+package com.republicate.modality.impl;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import com.republicate.modality.Entity;
+import com.republicate.modality.sql.ConnectionWrapper;
+import com.republicate.modality.sql.SqlUtils;
+import com.republicate.modality.sql.StatementPool;
+
+import java.io.Serializable;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Model-wide cache of the results of attributes flagged as <code>cached</code>, keyed by attribute and parameter values.</p>
+ * <p>The cache is bounded in size (least recently used entries are dropped first) and entries expire after a configurable
+ * time to live. Each entry remembers the version of the tables its query reads from; any action, transaction or entity
+ * write bumps the version of the tables it touches, which makes dependent entries stale. Writes done inside a
+ * transaction are invalidated again once the transaction is over, so that results read by other threads before
+ * the commit aren't kept.</p>
+ * <p>Results are never cached nor looked up from inside a transaction.</p>
+ */
+public class ResultCache
+{
+    /**
+     * Results loader
+     */
+    @FunctionalInterface
+    public interface Loader
+    {
+        Object load() throws SQLException;
+    }
+
+    /**
+     * Constructor.
+     * @param model model
+     * @param size maximum number of entries
+     * @param ttl time to live of entries, in milliseconds, or a non-positive value for no expiration
+     */
+    public ResultCache(BaseModel model, int size, long ttl)
+    {
+        this.model = model;
+        this.size = size;
+        this.ttl = ttl;
+        entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest)
+            {
+                return size() > ResultCache.this.size;
+            }
+        };
+    }
+
+    /**
+     * Get the result of an attribute for the given parameter values, loading it if needed.
+     * @param attribute cached attribute
+     * @param params parameter values
+     * @param loader result loader
+     * @return cached or loaded result
+     * @throws SQLException
+     */
+    public Object get(BaseAttribute attribute, Serializable[] params, Loader loader) throws SQLException
+    {
+        if (StatementPool.getCurrentTransactionConnection(model.getModelId()) != null)
+        {
+            return loader.load();
+        }
+        String query = attribute.getQuery();
+        Key key = new Key(attribute, query, params);
+        long now = System.currentTimeMillis();
+        Entry entry;
+        synchronized (entries)
+        {
+            entry = entries.get(key);
+            if (entry != null && !isFresh(entry, now))
+            {
+                entries.remove(key);
+                entry = null;
+            }
+        }
+        if (entry != null)
+        {
+            hits.increment();
+            return entry.value;
+        }
+        misses.increment();
+        // take the versions snapshot *before* querying, so that concurrent writes make the new entry stale
+        String[] tables = getTables(query);
+        long generation = this.generation.get();
+        long[] versions = new long[tables.length];
+        for (int i = 0; i < tables.length; ++i)
+        {
+            versions[i] = getVersion(tables[i]).get();
+        }
+        Object value = loader.load();
+        entry = new Entry(value, tables, generation, versions, ttl > 0 ? now + ttl : Long.MAX_VALUE);
+        synchronized (entries)
+        {
+            entries.put(key, entry);
+        }
+        return value;
+    }
+
+    /**
+     * Invalidate cached results depending on tables written to by a query. If the query doesn't reference
+     * any known table, all cached results are invalidated.
+     * @param query write query
+     */
+    public void invalidate(String query)
+    {
+        String[] tables = getTables(query);
+        if (tables == ALL_TABLES)
+        {
+            invalidateAll();
+        }
+        else
+        {
+            for (String table : tables)
+            {
+                getVersion(table).incrementAndGet();
+            }
+            // results of queries not referencing any known table depend on every write
+            getVersion(ALL_TABLES[0]).incrementAndGet();
+        }
+        ConnectionWrapper transaction = StatementPool.getCurrentTransactionConnection(model.getModelId());
+        if (transaction != null)
+        {
+            pendingInvalidations.computeIfAbsent(transaction, t -> new HashSet<>()).addAll(Arrays.asList(tables));
+        }
+    }
+
+    /**
+     * Invalidate all cached results.
+     */
+    public void invalidateAll()
+    {
+        generation.incrementAndGet();
+        synchronized (entries)
+        {
+            entries.clear();
+        }
+    }
+
+    /**
+     * Invalidate again tables written to during a transaction, once it is committed or rolled back.
+     * @param transaction transaction connection
+     */
+    public void flushPendingInvalidations(ConnectionWrapper transaction)
+    {
+        Set<String> pending = pendingInvalidations.remove(transaction);
+        if (pending == null)
+        {
+            return;
+        }
+        if (pending.contains(ALL_TABLES[0]))
+        {
+            invalidateAll();
+        }
+        else
+        {
+            for (String table : pending)
+            {
+                getVersion(table).incrementAndGet();
+            }
+            getVersion(ALL_TABLES[0]).incrementAndGet();
+        }
+    }
+
+    /**
+     * Get usage statistics.
+     * @return a long array: [nb of hits, nb of misses, nb of entries]
+     */
+    public long[] getStats()
+    {
+        long count;
+        synchronized (entries)
+        {
+            count = entries.size();
+        }
+        return new long[] { hits.sum(), misses.sum(), count };
+    }
+
+    private boolean isFresh(Entry entry, long now)
+    {
+        if (entry.expiration <= now || entry.generation != generation.get())
+        {
+            return false;
+        }
+        for (int i = 0; i < entry.tables.length; ++i)
+        {
+            if (entry.versions[i] != getVersion(entry.tables[i]).get())
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private AtomicLong getVersion(String table)
+    {
+        return versions.computeIfAbsent(table, t -> new AtomicLong());
+    }
+
+    /**
+     * Get the known tables referenced by a query. Queries which don't reference any known table, for instance
+     * queries on views, are considered as depending on all tables.
+     * @param query SQL query
+     * @return lowercase table names, or <code>ALL_TABLES</code>
+     */
+    protected String[] getTables(String query)
+    {
+        String[] tables = queryTables.get(query);
+        if (tables == null)
+        {
+            if (queryTables.size() >= MAX_QUERIES)
+            {
+                // merged queries may be endless
+                queryTables.clear();
+            }
+            tables = findTables(query);
+            queryTables.put(query, tables);
+        }
+        return tables;
+    }
+
+    private String[] findTables(String query)
+    {
+        if (knownTables == null)
+        {
+            Set<String> tables = new HashSet<>();
+            for (Entity entity : model.getEntities().values())
+            {
+                if (entity.getTable() != null)
+                {
+                    tables.add(entity.getTable().toLowerCase(Locale.ROOT));
+                }
+            }
+            knownTables = tables;
+        }
+        Set<String> found = new TreeSet<>(SqlUtils.getIdentifiers(query));
+        found.retainAll(knownTables);
+        return found.isEmpty() ? ALL_TABLES : found.toArray(new String[found.size()]);
+    }
+
+    /**
+     * Cache key
+     */
+    private static class Key
+    {
+        Key(BaseAttribute attribute, String query, Serializable[] params)
+        {
+            this.attribute = attribute;
+            this.query = query;
+            this.params = params;
+            this.hash = Objects.hash(attribute, query) * 31 + Arrays.deepHashCode(params);
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key)o;
+            return hash == other.hash && attribute == other.attribute && Objects.equals(query, other.query) && Arrays.deepEquals(params, other.params);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+
+        private final BaseAttribute attribute;
+        private final String query;
+        private final Serializable[] params;
+        private final int hash;
+    }
+
+    /**
+     * Cache entry
+     */
+    private static class Entry
+    {
+        Entry(Object value, String[] tables, long generation, long[] versions, long expiration)
+        {
+            this.value = value;
+            this.tables = tables;
+            this.generation = generation;
+            this.versions = versions;
+            this.expiration = expiration;
+        }
+
+        private final Object value;
+        private final String[] tables;
+        private final long generation;
+        private final long[] versions;
+        private final long expiration;
+    }
+
+    /** pseudo tables list meaning all tables */
+    private static final String[] ALL_TABLES = { "*" };
+
+    /** maximum number of memorized query tables */
+    private static final int MAX_QUERIES = 10000;
+
+    /** model */
+    private final BaseModel model;
+
+    /** maximum number of entries */
+    private final int size;
+
+    /** time to live, in milliseconds */
+    private final long ttl;
+
+    /** cached results, in access order */
+    private final Map<Key, Entry> entries;
+
+    /** global generation, bumped when all results are invalidated */
+    private final AtomicLong generation = new AtomicLong();
+
+    /** tables versions */
+    private final ConcurrentMap<String, AtomicLong> versions = new ConcurrentHashMap<>();
+
+    /** tables referenced by queries */
+    private final ConcurrentMap<String, String[]> queryTables = new ConcurrentHashMap<>();
+
+    /** lowercase names of the tables of known entities */
+    private volatile Set<String> knownTables = null;
+
+    /** tables written to during pending transactions, by transaction connection */
+    private final ConcurrentMap<ConnectionWrapper, Set<String>> pendingInvalidations = new ConcurrentHashMap<>();
+
+    /** hits counter */
+    private final LongAdder hits = new LongAdder();
+
+    /** misses counter */
+    private final LongAdder misses = new LongAdder();
+}
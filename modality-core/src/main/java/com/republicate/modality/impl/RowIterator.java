@@ -19,6 +19,7 @@ package com.republicate.modality.impl;
  * under the License.
  */
 
+import com.republicate.modality.CompactRow;
 import com.republicate.modality.Entity;
 import com.republicate.modality.Instance;
 import com.republicate.modality.sql.PooledStatement;
@@ -31,9 +32,11 @@ import org.slf4j.LoggerFactory;
 import java.io.Serializable;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
+import java.util.function.LongConsumer;
 
 //import com.republicate.modality.util.UserContext;
 
@@ -42,7 +45,7 @@ import java.util.Set;
  *
  *  @author <a href=mailto:claude.brisson@gmail.com>Claude Brisson</a>
  */
-public class RowIterator extends InstanceProducer implements Iterator<Instance>, Serializable
+public class RowIterator extends InstanceProducer implements Iterator<Instance>, AutoCloseable, Serializable
 {
     Logger logger = LoggerFactory.getLogger("sql");
 
@@ -54,10 +57,24 @@ public class RowIterator extends InstanceProducer implements Iterator<Instance>,
      * @param resultEntity the resulting entity (may be null)
      */
     public RowIterator(AttributeHolder parent, PooledStatement pooledStatement, ResultSet resultSet, Entity resultEntity)
+    {
+        this(parent, pooledStatement, resultSet, resultEntity, null);
+    }
+
+    /**
+     * Build a new RowIterator.
+     *
+     * @param pooledStatement the sql statement
+     * @param resultSet the resultset
+     * @param resultEntity the resulting entity (may be null)
+     * @param overListener listener receiving the number of fetched rows once the iteration is over (may be null)
+     */
+    public RowIterator(AttributeHolder parent, PooledStatement pooledStatement, ResultSet resultSet, Entity resultEntity, LongConsumer overListener)
     {
         super(parent.getModel(), resultEntity);
         this.pooledStatement = pooledStatement;
         this.resultSet = resultSet;
+        this.overListener = overListener;
     }
 
     /**
@@ -97,8 +114,7 @@ public class RowIterator extends InstanceProducer implements Iterator<Instance>,
                 }
                 else
                 {
-                    isOver = true;
-                    pooledStatement.notifyOver();
+                    over();
                 }
             }
             return ret;
@@ -106,8 +122,7 @@ public class RowIterator extends InstanceProducer implements Iterator<Instance>,
         catch(SQLException e)
         {
             logger.error(e.getMessage());
-            isOver = true;
-            pooledStatement.notifyOver();
+            over();
             return false;
         }
     }
@@ -123,25 +138,119 @@ public class RowIterator extends InstanceProducer implements Iterator<Instance>,
         {
             if (isOver || !prefetch && !resultSet.next())
             {
-                if(!isOver)
-                {
-                    isOver = true;
-                    pooledStatement.notifyOver();
-                }
+                over();
                 return null;
             }
             prefetch = false;
+            ++fetched;
 
             Instance row =  newResultInstance();
-            row.readValues(pooledStatement);
+            row.readValues(pooledStatement, getRowSchema());
             return row;
         }
         catch(SQLException sqle)
         {
             logger.error("could not get next row", sqle);
+            over();
+            return null;
+        }
+    }
+
+    /**
+     * Returns the next element in the iteration, as a compact row.
+     *
+     * @return a row.
+     */
+    public CompactRow nextRow()
+    {
+        try
+        {
+            if (isOver || !prefetch && !resultSet.next())
+            {
+                over();
+                return null;
+            }
+            prefetch = false;
+            ++fetched;
+
+            CompactRow.Schema rowSchema = getRowSchema();
+            Serializable[] values = new Serializable[rowSchema.size()];
+            int i = 0;
+            for (int index : pooledStatement.getColumnIndices().values())
+            {
+                values[i] = rowSchema.read(i, pooledStatement.getValue(index, rowSchema.getAccessor(i)));
+                ++i;
+            }
+            return new CompactRow(rowSchema, values);
+        }
+        catch(SQLException sqle)
+        {
+            logger.error("could not get next row", sqle);
+            over();
+            return null;
+        }
+    }
+
+    /**
+     * Get the result set columns, resolved once for all rows.
+     *
+     * @return columns schema
+     * @throws SQLException
+     */
+    protected CompactRow.Schema getRowSchema() throws SQLException
+    {
+        if (rowSchema == null)
+        {
+            rowSchema = new CompactRow.Schema(getModel(), getResultEntity(), new ArrayList<>(pooledStatement.getColumnIndices().keySet()));
+        }
+        return rowSchema;
+    }
+
+    /**
+     * Get a view of this iterator producing compact rows instead of instances.
+     *
+     * @return rows iterator
+     */
+    public Iterator<CompactRow> rows()
+    {
+        return new Iterator<CompactRow>()
+        {
+            @Override
+            public boolean hasNext()
+            {
+                return RowIterator.this.hasNext();
+            }
+
+            @Override
+            public CompactRow next()
+            {
+                return nextRow();
+            }
+        };
+    }
+
+    /**
+     * Stop the iteration and release the underlying statement, if not already done.
+     */
+    public void close()
+    {
+        prefetch = false;
+        over();
+    }
+
+    /**
+     * End the iteration, if not already done.
+     */
+    private void over()
+    {
+        if (!isOver)
+        {
             isOver = true;
             pooledStatement.notifyOver();
-            return null;
+            if (overListener != null)
+            {
+                overListener.accept(fetched);
+            }
         }
     }
 
@@ -225,8 +334,7 @@ public class RowIterator extends InstanceProducer implements Iterator<Instance>,
                 pooledStatement.getConnection().leaveBusyState();
                 if(!ret)
                 {
-                    pooledStatement.notifyOver();
-                    isOver = true;
+                    over();
                 }
             }
         }
@@ -252,6 +360,15 @@ public class RowIterator extends InstanceProducer implements Iterator<Instance>,
     /** whether we did prefetch a row */
     private boolean prefetch = false;
 
+    /** compact rows schema */
+    private CompactRow.Schema rowSchema = null;
+
     /** whether we reached the end */
     private boolean isOver = false;
+
+    /** number of fetched rows */
+    private long fetched = 0;
+
+    /** iteration end listener */
+    private transient LongConsumer overListener;
 }
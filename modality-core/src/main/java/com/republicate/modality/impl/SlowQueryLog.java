@@ -0,0 +1,307 @@
+package com.republicate.modality.impl;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import com.republicate.modality.Entity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * <p>Slow queries log.</p>
+ * <p>Attributes executions lasting longer than their threshold (the model threshold, unless overridden at the attribute level
+ * with the <code>slow_query_threshold</code> XML attribute) are logged at WARN level on the <code>sql.slow</code> logger, with
+ * their query, bound parameters, number of rows and the time spent to prepare the statement, execute it and fetch the rows.
+ * Parameters are passed through a {@link Redactor} before being logged; the default one masks parameters bound to columns
+ * having a write filter, like obfuscated or encrypted columns.</p>
+ * <p>The log also keeps the slowest execution of each slow attribute over a rolling time window, so that the top slowest
+ * attributes can be retrieved with {@link #getSlowestQueries()}.</p>
+ */
+public class SlowQueryLog
+{
+    protected static Logger logger = LoggerFactory.getLogger("sql.slow");
+
+    /**
+     * Parameters redaction hook
+     */
+    @FunctionalInterface
+    public interface Redactor
+    {
+        /**
+         * Get the loggable version of a parameter value.
+         * @param attribute executed attribute
+         * @param parameter parameter name, or null if unknown
+         * @param value parameter value
+         * @return value to log
+         */
+        Serializable redact(BaseAttribute attribute, String parameter, Serializable value);
+    }
+
+    /**
+     * Redacted values replacement
+     */
+    public static final String REDACTED = "***";
+
+    /**
+     * Default redactor, masking values bound to columns of the parent entity having a write filter.
+     */
+    public static final Redactor DEFAULT_REDACTOR = (attribute, parameter, value) ->
+    {
+        if (value != null && parameter != null && attribute.getParent() instanceof Entity)
+        {
+            Entity.Column column = ((Entity)attribute.getParent()).getColumn(parameter);
+            if (column != null && column.hasWriteFilter())
+            {
+                return REDACTED;
+            }
+        }
+        return value;
+    };
+
+    /**
+     * Slow query record
+     */
+    public static class SlowQuery implements Serializable
+    {
+        SlowQuery(String attribute, String query, List<Serializable> parameters, long rows, long prepareNanos, long executeNanos, long fetchNanos)
+        {
+            this.attribute = attribute;
+            this.query = query;
+            this.parameters = parameters;
+            this.rows = rows;
+            this.prepareNanos = prepareNanos;
+            this.executeNanos = executeNanos;
+            this.fetchNanos = fetchNanos;
+            this.timestamp = System.currentTimeMillis();
+        }
+
+        /**
+         * Get the attribute name, prefixed by its entity name if any.
+         * @return attribute name
+         */
+        public String getAttribute()
+        {
+            return attribute;
+        }
+
+        public String getQuery()
+        {
+            return query;
+        }
+
+        /**
+         * Get the bound parameters, after redaction.
+         * @return parameters values
+         */
+        public List<Serializable> getParameters()
+        {
+            return parameters;
+        }
+
+        /**
+         * Get the number of fetched rows for queries, or of changed rows for actions.
+         * @return number of rows
+         */
+        public long getRows()
+        {
+            return rows;
+        }
+
+        public long getPrepareNanos()
+        {
+            return prepareNanos;
+        }
+
+        public long getExecuteNanos()
+        {
+            return executeNanos;
+        }
+
+        public long getFetchNanos()
+        {
+            return fetchNanos;
+        }
+
+        public long getTotalNanos()
+        {
+            return prepareNanos + executeNanos + fetchNanos;
+        }
+
+        /**
+         * Get the time of the execution end.
+         * @return timestamp, in milliseconds
+         */
+        public long getTimestamp()
+        {
+            return timestamp;
+        }
+
+        @Override
+        public String toString()
+        {
+            return attribute + ": " + millis(getTotalNanos()) + "ms (prepare " + millis(prepareNanos) + "ms, execute " + millis(executeNanos) +
+                "ms, fetch " + millis(fetchNanos) + "ms), " + rows + " rows: " + query + " " + parameters;
+        }
+
+        private final String attribute;
+        private final String query;
+        private final List<Serializable> parameters;
+        private final long rows;
+        private final long prepareNanos;
+        private final long executeNanos;
+        private final long fetchNanos;
+        private final long timestamp;
+    }
+
+    /**
+     * Constructor.
+     * @param threshold model-wide threshold, in milliseconds, or a negative value to only log attributes having their own threshold
+     * @param top number of slowest attributes to report
+     * @param window rolling window of slowest attributes, in milliseconds
+     */
+    public SlowQueryLog(long threshold, int top, long window)
+    {
+        this.threshold = threshold;
+        this.top = top;
+        this.window = window;
+    }
+
+    /**
+     * Get the threshold applying to an attribute.
+     * @param attributeThreshold attribute own threshold, in milliseconds, or null
+     * @return threshold in nanoseconds, or a negative value if disabled
+     */
+    public long getThresholdNanos(Long attributeThreshold)
+    {
+        long millis = attributeThreshold == null ? threshold : attributeThreshold;
+        return millis < 0 ? -1 : TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    public Redactor getRedactor()
+    {
+        return redactor;
+    }
+
+    public void setRedactor(Redactor redactor)
+    {
+        this.redactor = redactor == null ? DEFAULT_REDACTOR : redactor;
+    }
+
+    /**
+     * Log a slow query.
+     * @param attribute executed attribute
+     * @param query executed query
+     * @param paramValues bound parameters values, may be null
+     * @param rows number of fetched or changed rows
+     * @param prepareNanos preparation time
+     * @param executeNanos execution time
+     * @param fetchNanos fetching time
+     */
+    public void record(BaseAttribute attribute, String query, Serializable[] paramValues, long rows, long prepareNanos, long executeNanos, long fetchNanos)
+    {
+        List<Serializable> parameters;
+        if (paramValues == null)
+        {
+            parameters = Collections.emptyList();
+        }
+        else
+        {
+            List<String> names = attribute.getParameterNames();
+            Serializable[] redacted = new Serializable[paramValues.length];
+            for (int i = 0; i < paramValues.length; ++i)
+            {
+                redacted[i] = redactor.redact(attribute, i < names.size() ? names.get(i) : null, paramValues[i]);
+            }
+            parameters = Collections.unmodifiableList(Arrays.asList(redacted));
+        }
+        Entity entity = attribute.getParent() instanceof Entity ? (Entity)attribute.getParent() : null;
+        String name = entity == null ? attribute.getName() : entity.getName() + "." + attribute.getName();
+        SlowQuery slowQuery = new SlowQuery(name, query, parameters, rows, prepareNanos, executeNanos, fetchNanos);
+        logger.warn("{}", slowQuery);
+        long since = slowQuery.getTimestamp() - window;
+        slowest.merge(attribute, slowQuery, (previous, current) ->
+            previous.getTimestamp() >= since && previous.getTotalNanos() >= current.getTotalNanos()
+                ? previous : current);
+        prune(since);
+    }
+
+    /**
+     * Get the slowest execution of the slowest attributes over the rolling window.
+     * @return slow queries, slowest first
+     */
+    public List<SlowQuery> getSlowestQueries()
+    {
+        prune(System.currentTimeMillis() - window);
+        return slowest.values().stream()
+            .sorted(Comparator.comparingLong(SlowQuery::getTotalNanos).reversed())
+            .limit(top)
+            .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    /**
+     * Forget executions older than the rolling window, and keep at most <code>top</code> attributes.
+     * @param since rolling window start, in milliseconds
+     */
+    private void prune(long since)
+    {
+        slowest.values().removeIf(slowQuery -> slowQuery.getTimestamp() < since);
+        while (slowest.size() > top)
+        {
+            Map.Entry<BaseAttribute, SlowQuery> fastest = slowest.entrySet().stream()
+                .min(Comparator.comparingLong(entry -> entry.getValue().getTotalNanos()))
+                .orElse(null);
+            if (fastest == null)
+            {
+                break;
+            }
+            slowest.remove(fastest.getKey(), fastest.getValue());
+        }
+    }
+
+    private static long millis(long nanos)
+    {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    /** model-wide threshold, in milliseconds */
+    private final long threshold;
+
+    /** number of slowest attributes to report */
+    private final int top;
+
+    /** rolling window, in milliseconds */
+    private final long window;
+
+    /** parameters redactor */
+    private volatile Redactor redactor = DEFAULT_REDACTOR;
+
+    /** slowest execution by attribute */
+    private final Map<BaseAttribute, SlowQuery> slowest = new ConcurrentHashMap<>();
+}
@@ -0,0 +1,58 @@
+package com.republicate.modality.metrics;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * <p>Metrics of a single attribute.</p>
+ * <p>Executions are timed from statement preparation to execution (or to the end of the update), results
+ * taken from the results cache are not recorded. For rowset attributes, the rows fetched by each iteration
+ * are recorded when the iteration is over.</p>
+ */
+public interface AttributeMetrics
+{
+    /**
+     * Record an execution.
+     * @param nanos execution time, in nanoseconds
+     * @param success whether the execution succeeded
+     */
+    void recordExecution(long nanos, boolean success);
+
+    /**
+     * Record the number of rows fetched by a rowset iteration.
+     * @param rows number of rows
+     */
+    void recordRows(long rows);
+
+    /**
+     * No-op implementation.
+     */
+    AttributeMetrics NONE = new AttributeMetrics()
+    {
+        @Override
+        public void recordExecution(long nanos, boolean success)
+        {
+        }
+
+        @Override
+        public void recordRows(long rows)
+        {
+        }
+    };
+}
@@ -0,0 +1,56 @@
+package com.republicate.modality.metrics;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * JMX view of the metrics of an attribute. Durations are in microseconds.
+ */
+public interface AttributeStatsMBean
+{
+    long getExecutions();
+
+    long getFailures();
+
+    long getMeanMicros();
+
+    long getP50Micros();
+
+    long getP90Micros();
+
+    long getP99Micros();
+
+    long getP999Micros();
+
+    long getMaxMicros();
+
+    /**
+     * Get the number of rows fetched by rowset iterations.
+     * @return total number of rows
+     */
+    long getRowsFetched();
+
+    /**
+     * Get the number of rowset iterations.
+     * @return number of iterations
+     */
+    long getIterations();
+
+    void reset();
+}
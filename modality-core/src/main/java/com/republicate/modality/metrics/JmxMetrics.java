@@ -0,0 +1,404 @@
+package com.republicate.modality.metrics;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import com.republicate.modality.sql.ConnectionPool;
+import com.republicate.modality.sql.StatementPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * <p>Metrics implementation publishing MBeans on the platform MBean server:</p>
+ * <ul>
+ *     <li><code>com.republicate.modality:type=Model,model=<i>modelId</i></code> for model-wide metrics (see {@link ModelStatsMBean}),</li>
+ *     <li><code>com.republicate.modality:type=Attribute,model=<i>modelId</i>[,entity=<i>entity</i>],name=<i>attribute</i></code>
+ *     for each executed attribute (see {@link AttributeStatsMBean}).</li>
+ * </ul>
+ * <p>Already registered MBeans with the same names are replaced.</p>
+ */
+public class JmxMetrics implements Metrics
+{
+    protected static Logger logger = LoggerFactory.getLogger("modality");
+
+    @Override
+    public synchronized void register(String modelId, ConnectionPool connectionPool, ConnectionPool transactionConnectionPool, StatementPool statementPool)
+    {
+        this.modelId = modelId;
+        modelStats.connectionPool = connectionPool;
+        modelStats.transactionConnectionPool = transactionConnectionPool;
+        modelStats.statementPool = statementPool;
+        registerMBean(DOMAIN + ":type=Model,model=" + quote(modelId), new StandardMBean(modelStats, ModelStatsMBean.class, false));
+        for (AttributeStats attributeStats : attributes.values())
+        {
+            registerAttribute(attributeStats);
+        }
+    }
+
+    @Override
+    public synchronized void unregister()
+    {
+        for (ObjectName name : registered.values())
+        {
+            try
+            {
+                server.unregisterMBean(name);
+            }
+            catch (JMException e)
+            {
+                logger.debug("could not unregister MBean {}", name, e);
+            }
+        }
+        registered.clear();
+        modelId = null;
+    }
+
+    @Override
+    public AttributeMetrics getAttributeMetrics(String entity, String attribute)
+    {
+        String key = entity == null ? attribute : entity + "." + attribute;
+        AttributeStats attributeStats = attributes.get(key);
+        if (attributeStats == null)
+        {
+            synchronized (this)
+            {
+                attributeStats = attributes.get(key);
+                if (attributeStats == null)
+                {
+                    attributeStats = new AttributeStats(entity, attribute);
+                    attributes.put(key, attributeStats);
+                    if (modelId != null)
+                    {
+                        registerAttribute(attributeStats);
+                    }
+                }
+            }
+        }
+        return attributeStats;
+    }
+
+    @Override
+    public void recordConnectionWait(long nanos)
+    {
+        modelStats.connectionWaits.record(nanos);
+    }
+
+    @Override
+    public void recordCommit()
+    {
+        modelStats.commits.increment();
+    }
+
+    @Override
+    public void recordRollback()
+    {
+        modelStats.rollbacks.increment();
+    }
+
+    private void registerAttribute(AttributeStats attributeStats)
+    {
+        registerMBean(DOMAIN + ":type=Attribute,model=" + quote(modelId) +
+            (attributeStats.entity == null ? "" : ",entity=" + quote(attributeStats.entity)) +
+            ",name=" + quote(attributeStats.attribute), new StandardMBean(attributeStats, AttributeStatsMBean.class, false));
+    }
+
+    private void registerMBean(String name, StandardMBean mbean)
+    {
+        try
+        {
+            ObjectName objectName = new ObjectName(name);
+            if (server.isRegistered(objectName))
+            {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(mbean, objectName);
+            registered.put(name, objectName);
+        }
+        catch (JMException e)
+        {
+            logger.warn("could not register MBean {}", name, e);
+        }
+    }
+
+    private static String quote(String value)
+    {
+        for (int i = 0; i < value.length(); ++i)
+        {
+            if (",=:\"*?\n".indexOf(value.charAt(i)) != -1)
+            {
+                return ObjectName.quote(value);
+            }
+        }
+        return value;
+    }
+
+    private static long micros(long nanos)
+    {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    /**
+     * Model-wide metrics
+     */
+    private static class ModelStats implements ModelStatsMBean
+    {
+        @Override
+        public long getCommits()
+        {
+            return commits.sum();
+        }
+
+        @Override
+        public long getRollbacks()
+        {
+            return rollbacks.sum();
+        }
+
+        @Override
+        public long getConnectionWaits()
+        {
+            return connectionWaits.getCount();
+        }
+
+        @Override
+        public long getConnectionWaitMeanMicros()
+        {
+            return micros(connectionWaits.getMean());
+        }
+
+        @Override
+        public long getConnectionWaitP99Micros()
+        {
+            return micros(connectionWaits.getValueAtPercentile(99.0));
+        }
+
+        @Override
+        public long getConnectionWaitMaxMicros()
+        {
+            return micros(connectionWaits.getMax());
+        }
+
+        @Override
+        public int getBusyConnections()
+        {
+            return getUsage(0);
+        }
+
+        @Override
+        public int getIdleConnections()
+        {
+            return getUsage(1);
+        }
+
+        @Override
+        public int getConnections()
+        {
+            return getUsage(2);
+        }
+
+        private int getUsage(int index)
+        {
+            int usage = connectionPool.getUsageStats()[index];
+            // a unified pool is given twice
+            if (transactionConnectionPool != connectionPool)
+            {
+                usage += transactionConnectionPool.getUsageStats()[index];
+            }
+            return usage;
+        }
+
+        @Override
+        public int getStatementsInUse()
+        {
+            return statementPool.getUsageStats()[0];
+        }
+
+        @Override
+        public int getStatements()
+        {
+            return statementPool.getUsageStats()[1];
+        }
+
+        @Override
+        public long getStatementCacheHits()
+        {
+            return statementPool.getCacheStats()[0];
+        }
+
+        @Override
+        public long getStatementCacheMisses()
+        {
+            return statementPool.getCacheStats()[1];
+        }
+
+        @Override
+        public long getStatementCacheEvictions()
+        {
+            return statementPool.getCacheStats()[2];
+        }
+
+        @Override
+        public void reset()
+        {
+            commits.reset();
+            rollbacks.reset();
+            connectionWaits.reset();
+        }
+
+        private final LongAdder commits = new LongAdder();
+        private final LongAdder rollbacks = new LongAdder();
+        private final LatencyHistogram connectionWaits = new LatencyHistogram();
+        private volatile ConnectionPool connectionPool = null;
+        private volatile ConnectionPool transactionConnectionPool = null;
+        private volatile StatementPool statementPool = null;
+    }
+
+    /**
+     * Attribute metrics
+     */
+    private static class AttributeStats implements AttributeMetrics, AttributeStatsMBean
+    {
+        AttributeStats(String entity, String attribute)
+        {
+            this.entity = entity;
+            this.attribute = attribute;
+        }
+
+        @Override
+        public void recordExecution(long nanos, boolean success)
+        {
+            latencies.record(nanos);
+            if (!success)
+            {
+                failures.increment();
+            }
+        }
+
+        @Override
+        public void recordRows(long rows)
+        {
+            iterations.increment();
+            this.rows.add(rows);
+        }
+
+        @Override
+        public long getExecutions()
+        {
+            return latencies.getCount();
+        }
+
+        @Override
+        public long getFailures()
+        {
+            return failures.sum();
+        }
+
+        @Override
+        public long getMeanMicros()
+        {
+            return micros(latencies.getMean());
+        }
+
+        @Override
+        public long getP50Micros()
+        {
+            return micros(latencies.getValueAtPercentile(50.0));
+        }
+
+        @Override
+        public long getP90Micros()
+        {
+            return micros(latencies.getValueAtPercentile(90.0));
+        }
+
+        @Override
+        public long getP99Micros()
+        {
+            return micros(latencies.getValueAtPercentile(99.0));
+        }
+
+        @Override
+        public long getP999Micros()
+        {
+            return micros(latencies.getValueAtPercentile(99.9));
+        }
+
+        @Override
+        public long getMaxMicros()
+        {
+            return micros(latencies.getMax());
+        }
+
+        @Override
+        public long getRowsFetched()
+        {
+            return rows.sum();
+        }
+
+        @Override
+        public long getIterations()
+        {
+            return iterations.sum();
+        }
+
+        @Override
+        public void reset()
+        {
+            latencies.reset();
+            failures.reset();
+            rows.reset();
+            iterations.reset();
+        }
+
+        private final String entity;
+        private final String attribute;
+        private final LatencyHistogram latencies = new LatencyHistogram();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder iterations = new LongAdder();
+    }
+
+    /** MBeans domain */
+    public static final String DOMAIN = "com.republicate.modality";
+
+    /** platform MBean server */
+    private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+    /** model id, null until registered */
+    private String modelId = null;
+
+    /** model-wide metrics */
+    private final ModelStats modelStats = new ModelStats();
+
+    /** attributes metrics, by qualified name */
+    private final Map<String, AttributeStats> attributes = new ConcurrentHashMap<>();
+
+    /** registered MBeans names */
+    private final Map<String, ObjectName> registered = new ConcurrentHashMap<>();
+}
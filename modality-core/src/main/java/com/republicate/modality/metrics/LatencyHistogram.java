@@ -0,0 +1,170 @@
+package com.republicate.modality.metrics;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Lock-free latency histogram, in the spirit of HdrHistogram.</p>
+ * <p>Values are counted in log-linear buckets: each power of two range is split in 16 linear sub-buckets,
+ * which bounds the relative error of reported percentiles to 1/16. Values above about 18 minutes (2<sup>40</sup>ns)
+ * are counted in the last bucket. Recording a value costs a couple of atomic increments.</p>
+ */
+public class LatencyHistogram
+{
+    /**
+     * Record a value.
+     * @param nanos value, in nanoseconds
+     */
+    public void record(long nanos)
+    {
+        if (nanos < 0)
+        {
+            nanos = 0;
+        }
+        counts.getAndIncrement(bucketIndex(Math.min(nanos, MAX_VALUE)));
+        count.increment();
+        sum.add(nanos);
+        long currentMax = max.get();
+        while (nanos > currentMax && !max.compareAndSet(currentMax, nanos))
+        {
+            currentMax = max.get();
+        }
+    }
+
+    /**
+     * Get the number of recorded values.
+     * @return count
+     */
+    public long getCount()
+    {
+        return count.sum();
+    }
+
+    /**
+     * Get the mean of recorded values.
+     * @return mean value, in nanoseconds, or 0 if no value has been recorded
+     */
+    public long getMean()
+    {
+        long n = count.sum();
+        return n == 0 ? 0 : sum.sum() / n;
+    }
+
+    /**
+     * Get the maximum recorded value.
+     * @return max value, in nanoseconds
+     */
+    public long getMax()
+    {
+        return max.get();
+    }
+
+    /**
+     * Get the value at a given percentile, as the upper bound of the bucket holding it.
+     * @param percentile percentile, between 0 and 100
+     * @return value, in nanoseconds, or 0 if no value has been recorded
+     */
+    public long getValueAtPercentile(double percentile)
+    {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; ++i)
+        {
+            total += snapshot[i] = counts.get(i);
+        }
+        if (total == 0)
+        {
+            return 0;
+        }
+        long rank = Math.max(1, (long)Math.ceil(Math.min(percentile, 100.0) / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; ++i)
+        {
+            seen += snapshot[i];
+            if (seen >= rank)
+            {
+                return Math.min(bucketUpperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Forget all recorded values.
+     */
+    public void reset()
+    {
+        for (int i = 0; i < BUCKETS; ++i)
+        {
+            counts.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.set(0);
+    }
+
+    static int bucketIndex(long value)
+    {
+        if (value < 2 * HALF_SUB_BUCKETS)
+        {
+            return (int)value;
+        }
+        int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * HALF_SUB_BUCKETS + (int)(value >>> shift);
+    }
+
+    static long bucketUpperBound(int index)
+    {
+        if (index < 2 * HALF_SUB_BUCKETS)
+        {
+            return index;
+        }
+        int shift = index / HALF_SUB_BUCKETS - 1;
+        long subBucket = index % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    /** number of bits of the linear sub-buckets index */
+    private static final int SUB_BUCKET_BITS = 5;
+
+    /** number of sub-buckets per power of two */
+    private static final int HALF_SUB_BUCKETS = 1 << (SUB_BUCKET_BITS - 1);
+
+    /** maximum tracked value */
+    private static final long MAX_VALUE = (1L << 40) - 1;
+
+    /** number of buckets */
+    private static final int BUCKETS = bucketIndex(MAX_VALUE) + 1;
+
+    /** buckets counts */
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    /** total count */
+    private final LongAdder count = new LongAdder();
+
+    /** values sum */
+    private final LongAdder sum = new LongAdder();
+
+    /** max value */
+    private final AtomicLong max = new AtomicLong();
+}
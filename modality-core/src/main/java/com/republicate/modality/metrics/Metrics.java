@@ -0,0 +1,103 @@
+package com.republicate.modality.metrics;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import com.republicate.modality.sql.ConnectionPool;
+import com.republicate.modality.sql.StatementPool;
+
+/**
+ * <p>Metrics SPI.</p>
+ * <p>Events (attributes executions, connections waits, transactions outcomes) are pushed to the implementation
+ * as they happen, from the calling threads, so implementations must be thread-safe and cheap. Gauges (pools occupancy,
+ * statements cache statistics) are meant to be pulled from the pools given at registration time.</p>
+ * <p>The model's implementation is chosen with the <code>model.metrics</code> configuration key: <code>none</code> (the default),
+ * <code>jmx</code> for {@link JmxMetrics}, or the class name of an implementation having a public default constructor.</p>
+ */
+public interface Metrics
+{
+    /**
+     * Called once the model pools are created.
+     * @param modelId model id
+     * @param connectionPool autocommit connections pool
+     * @param transactionConnectionPool transactions connections pool
+     * @param statementPool prepared statements pool
+     */
+    default void register(String modelId, ConnectionPool connectionPool, ConnectionPool transactionConnectionPool, StatementPool statementPool)
+    {
+    }
+
+    /**
+     * Release any resource held by this implementation.
+     */
+    default void unregister()
+    {
+    }
+
+    /**
+     * Get the metrics of an attribute. Called once per attribute, whose result is kept by the attribute.
+     * @param entity parent entity name, or null for root attributes
+     * @param attribute attribute name
+     * @return attribute metrics
+     */
+    AttributeMetrics getAttributeMetrics(String entity, String attribute);
+
+    /**
+     * Record the time spent to obtain a connection from a pool.
+     * @param nanos wait time, in nanoseconds
+     */
+    void recordConnectionWait(long nanos);
+
+    /**
+     * Record a transaction commit.
+     */
+    void recordCommit();
+
+    /**
+     * Record a transaction rollback.
+     */
+    void recordRollback();
+
+    /**
+     * No-op implementation.
+     */
+    Metrics NONE = new Metrics()
+    {
+        @Override
+        public AttributeMetrics getAttributeMetrics(String entity, String attribute)
+        {
+            return AttributeMetrics.NONE;
+        }
+
+        @Override
+        public void recordConnectionWait(long nanos)
+        {
+        }
+
+        @Override
+        public void recordCommit()
+        {
+        }
+
+        @Override
+        public void recordRollback()
+        {
+        }
+    };
+}
@@ -0,0 +1,68 @@
+package com.republicate.modality.metrics;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * JMX view of the model-wide metrics. Durations are in microseconds.
+ */
+public interface ModelStatsMBean
+{
+    long getCommits();
+
+    long getRollbacks();
+
+    long getConnectionWaits();
+
+    long getConnectionWaitMeanMicros();
+
+    long getConnectionWaitP99Micros();
+
+    long getConnectionWaitMaxMicros();
+
+    /**
+     * Get the number of connections in use, in both the autocommit and transactions pools.
+     * @return busy connections
+     */
+    int getBusyConnections();
+
+    /**
+     * Get the number of idle connections, in both the autocommit and transactions pools.
+     * @return idle connections
+     */
+    int getIdleConnections();
+
+    /**
+     * Get the total number of connections, in both the autocommit and transactions pools.
+     * @return total connections
+     */
+    int getConnections();
+
+    int getStatementsInUse();
+
+    int getStatements();
+
+    long getStatementCacheHits();
+
+    long getStatementCacheMisses();
+
+    long getStatementCacheEvictions();
+
+    void reset();
+}
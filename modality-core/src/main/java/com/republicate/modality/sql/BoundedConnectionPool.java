@@ -0,0 +1,405 @@
+package com.republicate.modality.sql;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sql.DataSource;
+
+/**
+ * <p>Bounded connection pool.</p>
+ * <p>Contrary to its base class, connections returned by {@link #getConnection()} are exclusively owned by the caller
+ * until given back with {@link #releaseConnection(ConnectionWrapper)}. When all connections are borrowed, callers
+ * wait up to the configured acquire timeout.</p>
+ * <p>Idle connections are kept in a lock-free stack, so that the most recently used connection is handed out first,
+ * and a semaphore bounds the number of borrowed connections. Idle connections are validated by a background
+ * thread rather than at borrow time.</p>
+ * <p>Since connections are exclusively owned, a single pool can serve both autocommit queries and transactions:
+ * {@link #getConnection(boolean)} toggles the autocommit mode of the borrowed connection, which is rolled back
+ * and restored when released.</p>
+ */
+public class BoundedConnectionPool extends ConnectionPool
+{
+    /**
+     * Constructor.
+     *
+     * @param dataSource data source
+     * @param credentials credentials
+     * @param driverInfos driver infos
+     * @param schema optional schema
+     * @param autocommit autocommit flag
+     * @param max maximum number of connections
+     * @param minIdle number of idle connections to keep around
+     * @param maxIdle maximum number of idle connections
+     * @param acquireTimeout maximum time to wait for a connection, in milliseconds
+     * @param validationInterval delay between background validations of idle connections, in milliseconds, or -1 for none
+     * @throws SQLException
+     */
+    public BoundedConnectionPool(DataSource dataSource, Credentials credentials, DriverInfos driverInfos, String schema, boolean autocommit, int max, int minIdle, int maxIdle, long acquireTimeout, long validationInterval) throws SQLException
+    {
+        super(dataSource, credentials, driverInfos, schema, autocommit, max, validationInterval > 0);
+        if (max <= 0)
+        {
+            throw new IllegalArgumentException("max connections must be strictly positive");
+        }
+        this.minIdle = Math.max(0, Math.min(minIdle, max));
+        this.maxIdle = Math.max(this.minIdle, Math.min(maxIdle, max));
+        this.acquireTimeout = acquireTimeout;
+        this.permits = new Semaphore(max, true);
+        if (validationInterval > 0)
+        {
+            maintenance = Executors.newSingleThreadScheduledExecutor(runnable ->
+            {
+                Thread thread = new Thread(runnable, "modality-connections-validation");
+                thread.setDaemon(true);
+                return thread;
+            });
+            maintenance.scheduleWithFixedDelay(this::maintain, validationInterval, validationInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Borrow a connection, waiting for one to be released if needed.
+     * @return a connection, to be given back using {@link #releaseConnection(ConnectionWrapper)}
+     * @throws SQLException if no connection could be obtained in time
+     */
+    @Override
+    protected ConnectionWrapper borrowConnection() throws SQLException
+    {
+        try
+        {
+            if (!permits.tryAcquire(acquireTimeout, TimeUnit.MILLISECONDS))
+            {
+                throw new SQLTransientConnectionException("Connection pool: no connection available after " + acquireTimeout + "ms (max = " + max + ")");
+            }
+        }
+        catch (InterruptedException ie)
+        {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Connection pool: interrupted while waiting for a connection", ie);
+        }
+        try
+        {
+            ConnectionWrapper connection = pollIdle();
+            if (connection == null)
+            {
+                connection = createConnection();
+                connections.add(connection);
+            }
+            borrowed.add(connection);
+            return connection;
+        }
+        catch (SQLException | RuntimeException e)
+        {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Borrow a connection in the given autocommit mode, waiting for one to be released if needed.
+     * @param autocommit wanted autocommit mode
+     * @return a connection, to be given back using {@link #releaseConnection(ConnectionWrapper)}
+     * @throws SQLException if no connection could be obtained in time
+     */
+    @Override
+    public ConnectionWrapper getConnection(boolean autocommit) throws SQLException
+    {
+        ConnectionWrapper connection = getConnection();
+        if (autocommit != isAutocommit())
+        {
+            toggled.add(connection);
+            try
+            {
+                connection.setAutoCommit(autocommit);
+            }
+            catch (SQLException | RuntimeException e)
+            {
+                releaseConnection(connection);
+                throw e;
+            }
+        }
+        return connection;
+    }
+
+    /**
+     * Try to borrow a specific connection, without waiting. Used by the statements pool to reuse
+     * a statement already prepared on an idle connection.
+     * @param connection wanted connection
+     * @return whether the connection has been borrowed
+     */
+    public boolean tryBorrow(ConnectionWrapper connection)
+    {
+        if (!permits.tryAcquire())
+        {
+            return false;
+        }
+        if (idle.remove(connection))
+        {
+            idleCount.decrementAndGet();
+            borrowed.add(connection);
+            return true;
+        }
+        permits.release();
+        return false;
+    }
+
+    /**
+     * Give back a borrowed connection. Connections released more than once are ignored.
+     * @param connection borrowed connection
+     */
+    @Override
+    public void releaseConnection(ConnectionWrapper connection)
+    {
+        if (connection == null || !borrowed.remove(connection))
+        {
+            return;
+        }
+        try
+        {
+            boolean keep;
+            try
+            {
+                keep = !connection.isClosed() && idleCount.get() < maxIdle;
+                if (keep && toggled.contains(connection))
+                {
+                    // discard any pending change before restoring the pool autocommit mode
+                    connection.rollback();
+                    connection.setAutoCommit(isAutocommit());
+                }
+            }
+            catch (SQLException sqle)
+            {
+                logger.warn("Connection pool: could not reset connection, discarding it", sqle);
+                keep = false;
+            }
+            finally
+            {
+                toggled.remove(connection);
+            }
+            if (keep)
+            {
+                idleCount.incrementAndGet();
+                idle.offerFirst(connection);
+            }
+            else
+            {
+                discard(connection);
+            }
+        }
+        finally
+        {
+            permits.release();
+        }
+    }
+
+    @Override
+    public boolean isExclusive()
+    {
+        return true;
+    }
+
+    /**
+     * Get usage statistics.
+     * @return an int array: [nb of borrowed connections, nb of idle connections, total nb of connections]
+     */
+    @Override
+    public int[] getUsageStats()
+    {
+        return new int[] { borrowed.size(), idleCount.get(), connections.size() };
+    }
+
+    /**
+     * Close all connections and stop background validation.
+     */
+    @Override
+    public void clear()
+    {
+        if (maintenance != null)
+        {
+            maintenance.shutdownNow();
+        }
+        for (Iterator<ConnectionWrapper> it = connections.iterator(); it.hasNext(); )
+        {
+            ConnectionWrapper connection = it.next();
+            it.remove();
+            try
+            {
+                connection.close();
+            }
+            catch (SQLException sqle) {}
+        }
+        idle.clear();
+        idleCount.set(0);
+    }
+
+    private ConnectionWrapper pollIdle()
+    {
+        ConnectionWrapper connection;
+        while ((connection = idle.pollFirst()) != null)
+        {
+            idleCount.decrementAndGet();
+            boolean closed;
+            try
+            {
+                closed = connection.isClosed();
+            }
+            catch (SQLException sqle)
+            {
+                closed = true;
+            }
+            if (!closed)
+            {
+                return connection;
+            }
+            discard(connection);
+        }
+        return null;
+    }
+
+    private void discard(ConnectionWrapper connection)
+    {
+        connections.remove(connection);
+        try
+        {
+            connection.close();
+        }
+        catch (SQLException sqle) {}
+    }
+
+    /**
+     * Background task: validate idle connections and replenish them up to minIdle.
+     * Each step borrows a permit like any other caller, so that the total number of connections never exceeds max.
+     */
+    private void maintain()
+    {
+        try
+        {
+            int toCheck = idleCount.get();
+            while (toCheck-- > 0 && permits.tryAcquire())
+            {
+                ConnectionWrapper connection = idle.pollLast();
+                if (connection == null)
+                {
+                    permits.release();
+                    break;
+                }
+                idleCount.decrementAndGet();
+                borrowed.add(connection);
+                boolean valid;
+                try
+                {
+                    valid = !connection.isClosed() && (!checkConnections || connection.isValid(VALIDATION_TIMEOUT));
+                }
+                catch (SQLException sqle)
+                {
+                    valid = false;
+                }
+                if (!valid)
+                {
+                    logger.info("Connection pool: dropping invalid connection");
+                    borrowed.remove(connection);
+                    discard(connection);
+                    permits.release();
+                }
+                else
+                {
+                    // put it back at the bottom of the stack
+                    borrowed.remove(connection);
+                    idleCount.incrementAndGet();
+                    idle.offerLast(connection);
+                    permits.release();
+                }
+            }
+            while (idleCount.get() < minIdle && connections.size() < max && permits.tryAcquire())
+            {
+                try
+                {
+                    ConnectionWrapper connection = createConnection();
+                    connections.add(connection);
+                    idleCount.incrementAndGet();
+                    idle.offerFirst(connection);
+                }
+                finally
+                {
+                    permits.release();
+                }
+            }
+        }
+        catch (SQLException | RuntimeException e)
+        {
+            logger.warn("Connection pool: error during connections maintenance", e);
+        }
+    }
+
+    /**
+     * Pre-create minIdle connections.
+     * @throws SQLException
+     */
+    public void warmUp() throws SQLException
+    {
+        while (idleCount.get() < minIdle && connections.size() < max)
+        {
+            ConnectionWrapper connection = createConnection();
+            connections.add(connection);
+            idleCount.incrementAndGet();
+            idle.offerFirst(connection);
+        }
+    }
+
+    /** minimum number of idle connections */
+    private int minIdle;
+
+    /** maximum number of idle connections */
+    private int maxIdle;
+
+    /** max wait time, in milliseconds */
+    private long acquireTimeout;
+
+    /** borrowing permits */
+    private final Semaphore permits;
+
+    /** idle connections stack */
+    private final ConcurrentLinkedDeque<ConnectionWrapper> idle = new ConcurrentLinkedDeque<>();
+
+    /** idle connections count (the deque size() method isn't constant time) */
+    private final AtomicInteger idleCount = new AtomicInteger();
+
+    /** borrowed connections */
+    private final Set<ConnectionWrapper> borrowed = ConcurrentHashMap.newKeySet();
+
+    /** borrowed connections whose autocommit mode has been toggled */
+    private final Set<ConnectionWrapper> toggled = ConcurrentHashMap.newKeySet();
+
+    /** all connections */
+    private final Set<ConnectionWrapper> connections = ConcurrentHashMap.newKeySet();
+
+    /** background validation */
+    private transient ScheduledExecutorService maintenance = null;
+}
@@ -19,6 +19,7 @@ package com.republicate.modality.sql;
  * under the License.
  */
 
+import com.republicate.modality.metrics.Metrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -30,16 +31,21 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 import javax.sql.DataSource;
 
 /**
- *  Connection pool.
+ *  <p>Connection pool.</p>
+ *  <p>Connections are shared between callers, and are never waited for: the max number of connections is a soft limit,
+ *  beyond which callers are handed a busy connection, so that their statements are queued by the driver on it.
+ *  Use a {@link BoundedConnectionPool} to bound the number of connections, with callers waiting for an idle one.</p>
  *
  *  @author <a href="mailto:claude.brisson@gmail.com">Claude Brisson</a>
  */
 public class ConnectionPool implements Serializable
 {
-    private static final int VALIDATION_TIMEOUT = 1; // 1s is long enough
+    protected static final int VALIDATION_TIMEOUT = 1; // 1s is long enough
 
     protected static Logger logger = LoggerFactory.getLogger("sql");
     private static Random randomizer = new Random();
@@ -86,39 +92,173 @@ public class ConnectionPool implements Serializable
     }
 
     /**
-     * Get a connection.
+     * Set the metrics to which connections wait times are reported.
+     * @param metrics metrics
+     */
+    public void setMetrics(Metrics metrics)
+    {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Get a connection: an idle one if possible, a new one if the max number of connections isn't reached,
+     * and a random busy one otherwise.
      * @return a connection
      * @throws SQLException
      */
-    public synchronized ConnectionWrapper getConnection() throws SQLException
+    public ConnectionWrapper getConnection() throws SQLException
     {
-        for(Iterator it = connections.iterator(); it.hasNext(); )
+        long start = System.nanoTime();
+        try
         {
-            ConnectionWrapper c = (ConnectionWrapper)it.next();
-            if (!c.isBusy())
+            return borrowConnection();
+        }
+        finally
+        {
+            metrics.recordConnectionWait(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Get a connection in the given autocommit mode. Since this pool shares its connections between callers,
+     * it can only hand out connections in its own mode.
+     * @param autocommit wanted autocommit mode
+     * @return a connection
+     * @throws SQLException
+     */
+    public ConnectionWrapper getConnection(boolean autocommit) throws SQLException
+    {
+        if (autocommit != this.autocommit)
+        {
+            throw new SQLException("Connection pool: cannot hand out " + (autocommit ? "autocommit" : "manual commit") + " connections");
+        }
+        return getConnection();
+    }
+
+    /**
+     * Get a connection, without metrics.
+     * @return a connection
+     * @throws SQLException
+     */
+    protected ConnectionWrapper borrowConnection() throws SQLException
+    {
+        lock.lock();
+        try
+        {
+            while (true)
             {
-                if(c.isClosed() || checkConnections && !c.isValid(VALIDATION_TIMEOUT))
+                for(Iterator it = connections.iterator(); it.hasNext(); )
                 {
-                    it.remove();
+                    ConnectionWrapper c = (ConnectionWrapper)it.next();
+                    if (!c.isBusy())
+                    {
+                        if(c.isClosed() || checkConnections && !c.isValid(VALIDATION_TIMEOUT))
+                        {
+                            it.remove();
+                        }
+                        else
+                        {
+                            return c;
+                        }
+                    }
                 }
-                else
+                if (connections.size() + pendingCreations < max)
                 {
-                    return c;
+                    break;
                 }
+                if (!connections.isEmpty())
+                {
+                    logger.warn("Connection pool: max number of connections reached! ");
+
+                    // connections are shared, so return a busy connection rather than waiting for an idle one
+                    return connections.get(randomizer.nextInt(connections.size()));
+                }
+                // all connections are being created
+                created.awaitUninterruptibly();
             }
+            ++pendingCreations;
         }
-        if(connections.size() == max)
+        finally
         {
-            logger.warn("Connection pool: max number of connections reached! ");
+            lock.unlock();
+        }
 
-            // return a busy connection...
-            return connections.get(randomizer.nextInt(connections.size()));
+        // the data source may block, so the connection is created outside of the lock
+        ConnectionWrapper newconn = null;
+        try
+        {
+            newconn = createConnection();
+            return newconn;
         }
+        finally
+        {
+            lock.lock();
+            try
+            {
+                --pendingCreations;
+                if (newconn != null)
+                {
+                    connections.add(newconn);
+                }
+                created.signalAll();
+            }
+            finally
+            {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Release a connection obtained through {@link #getConnection()}.
+     * This pool shares its connections between callers, so there is nothing to do here.
+     * @param connection connection to release
+     */
+    public void releaseConnection(ConnectionWrapper connection)
+    {
+    }
 
-        ConnectionWrapper newconn = createConnection();
+    /**
+     * Get the autocommit mode of idle connections.
+     * @return autocommit flag
+     */
+    public boolean isAutocommit()
+    {
+        return autocommit;
+    }
 
-        connections.add(newconn);
-        return newconn;
+    /**
+     * Whether connections handed out by this pool are exclusively owned until released.
+     * @return false for this pool
+     */
+    public boolean isExclusive()
+    {
+        return false;
+    }
+
+    /**
+     * Get usage statistics.
+     * @return an int array: [nb of busy connections, nb of idle connections, total nb of connections]
+     */
+    public int[] getUsageStats()
+    {
+        lock.lock();
+        try
+        {
+            int busy = 0;
+            for (ConnectionWrapper connection : connections)
+            {
+                if (connection.isBusy())
+                {
+                    ++busy;
+                }
+            }
+            return new int[] { busy, connections.size() - busy, connections.size() };
+        }
+        finally
+        {
+            lock.unlock();
+        }
     }
 
     /**
@@ -127,7 +267,7 @@ public class ConnectionPool implements Serializable
      * @return connection
      * @throws SQLException
      */
-    private ConnectionWrapper createConnection() throws SQLException
+    protected ConnectionWrapper createConnection() throws SQLException
     {
         logger.info("Creating a new connection{}.", schema != null && schema.length() > 0 ? " on schema " + schema : "");
 
@@ -199,8 +339,20 @@ public class ConnectionPool implements Serializable
     private List<ConnectionWrapper> connections = new ArrayList<>();
 
     /** Maximum number of connections. */
-    private int max;
+    protected int max;
 
     /** whether to check connections */
-    private boolean checkConnections;
+    protected boolean checkConnections;
+
+    /** metrics */
+    protected transient Metrics metrics = Metrics.NONE;
+
+    /** connections list lock, held while connections are checked */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** signaled when a connection creation is over */
+    private final Condition created = lock.newCondition();
+
+    /** number of connections being created */
+    private int pendingCreations = 0;
 }
@@ -45,10 +45,15 @@ import java.sql.Struct;
 import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Connection wrapper class. Allows the handling of a busy state
  *
+ * Calls to the wrapped connection are serialized using a <code>java.util.concurrent</code> lock rather than
+ * a monitor, so that virtual threads blocked on database I/O don't pin their carrier thread.
+ *
  *  @author <a href="mailto:claude.brisson@gmail.com">Claude Brisson</a>
  */
 
@@ -83,9 +88,10 @@ public class ConnectionWrapper
      * @return created statement
      * @throws SQLException
      */
-    public synchronized Statement createStatement()
+    public Statement createStatement()
         throws SQLException
     {
+        lock.lock();
         try
         {
             enterBusyState();
@@ -94,6 +100,7 @@ public class ConnectionWrapper
         finally
         {
             leaveBusyState();
+            lock.unlock();
         }
     }
 
@@ -103,9 +110,10 @@ public class ConnectionWrapper
      * @return prepared statement
      * @throws SQLException
      */
-    public synchronized PreparedStatement prepareStatement(String s)
+    public PreparedStatement prepareStatement(String s)
         throws SQLException
     {
+        lock.lock();
         try
         {
             enterBusyState();
@@ -114,6 +122,7 @@ public class ConnectionWrapper
         finally
         {
             leaveBusyState();
+            lock.unlock();
         }
     }
 
@@ -123,9 +132,10 @@ public class ConnectionWrapper
      * @return prepared callable statement
      * @throws SQLException
      */
-    public synchronized CallableStatement prepareCall(String s)
+    public CallableStatement prepareCall(String s)
         throws SQLException
     {
+        lock.lock();
         try
         {
             enterBusyState();
@@ -134,6 +144,7 @@ public class ConnectionWrapper
         finally
         {
             leaveBusyState();
+            lock.unlock();
         }
     }
 
@@ -143,9 +154,10 @@ public class ConnectionWrapper
      * @return native SQL
      * @throws SQLException
      */
-    public synchronized String nativeSQL(String s)
+    public String nativeSQL(String s)
         throws SQLException
     {
+        lock.lock();
         try
         {
             enterBusyState();
@@ -154,6 +166,7 @@ public class ConnectionWrapper
         finally
         {
             leaveBusyState();
+            lock.unlock();
         }
     }
 
@@ -185,9 +198,10 @@ public class ConnectionWrapper
      *
      * @throws SQLException
      */
-    public synchronized void commit()
+    public void commit()
         throws SQLException
     {
+        lock.lock();
         try
         {
             enterBusyState();
@@ -196,6 +210,7 @@ public class ConnectionWrapper
         finally
         {
             leaveBusyState();
+            lock.unlock();
         }
     }
 
@@ -204,9 +219,10 @@ public class ConnectionWrapper
      *
      * @throws SQLException
      */
-    public synchronized void rollback()
+    public void rollback()
         throws SQLException
     {
+        lock.lock();
         try
         {
             enterBusyState();
@@ -215,6 +231,7 @@ public class ConnectionWrapper
         finally
         {
             leaveBusyState();
+            lock.unlock();
         }
     }
 
@@ -350,9 +367,10 @@ public class ConnectionWrapper
      * @return new statement
      * @throws SQLException
      */
-    public synchronized Statement createStatement(int i, int j)
+    public Statement createStatement(int i, int j)
         throws SQLException
     {
+        lock.lock();
         try
         {
             enterBusyState();
@@ -361,6 +379,7 @@ public class ConnectionWrapper
         finally
         {
             leaveBusyState();
+            lock.unlock();
         }
 
     }
@@ -373,9 +392,10 @@ public class ConnectionWrapper
      * @return prepared statement
      * @throws SQLException
      */
-    public synchronized PreparedStatement prepareStatement(String s, int i, int j)
+    public PreparedStatement prepareStatement(String s, int i, int j)
         throws SQLException
     {
+        lock.lock();
         try
         {
             enterBusyState();
@@ -384,6 +404,7 @@ public class ConnectionWrapper
         finally
         {
             leaveBusyState();
+            lock.unlock();
         }
     }
 
@@ -395,9 +416,10 @@ public class ConnectionWrapper
      * @return callable statement
      * @throws SQLException
      */
-    public synchronized CallableStatement prepareCall(String s, int i, int j)
+    public CallableStatement prepareCall(String s, int i, int j)
         throws SQLException
     {
+        lock.lock();
         try
         {
             enterBusyState();
@@ -406,6 +428,7 @@ public class ConnectionWrapper
         finally
         {
             leaveBusyState();
+            lock.unlock();
         }
     }
 
@@ -458,10 +481,18 @@ public class ConnectionWrapper
      * @return save point
      * @throws SQLException
      */
-    public synchronized Savepoint setSavepoint()
+    public Savepoint setSavepoint()
         throws SQLException
     {
-        return connection.setSavepoint();
+        lock.lock();
+        try
+        {
+            return connection.setSavepoint();
+        }
+        finally
+        {
+            lock.unlock();
+        }
     }
 
     /**
@@ -470,10 +501,18 @@ public class ConnectionWrapper
      * @return savepoint
      * @throws SQLException
      */
-    public synchronized Savepoint setSavepoint(String s)
+    public Savepoint setSavepoint(String s)
         throws SQLException
     {
-        return connection.setSavepoint(s);
+        lock.lock();
+        try
+        {
+            return connection.setSavepoint(s);
+        }
+        finally
+        {
+            lock.unlock();
+        }
     }
 
     /**
@@ -481,10 +520,18 @@ public class ConnectionWrapper
      * @param savepoint savepoint
      * @throws SQLException
      */
-    public synchronized void rollback(Savepoint savepoint)
+    public void rollback(Savepoint savepoint)
         throws SQLException
     {
-        connection.rollback(savepoint);
+        lock.lock();
+        try
+        {
+            connection.rollback(savepoint);
+        }
+        finally
+        {
+            lock.unlock();
+        }
     }
     /**
      * Release savepoint.
@@ -492,10 +539,18 @@ public class ConnectionWrapper
      * @param savepoint savepoint
      * @throws SQLException
      */
-    public synchronized void releaseSavepoint(Savepoint savepoint)
+    public void releaseSavepoint(Savepoint savepoint)
         throws SQLException
     {
-        connection.releaseSavepoint(savepoint);
+        lock.lock();
+        try
+        {
+            connection.releaseSavepoint(savepoint);
+        }
+        finally
+        {
+            lock.unlock();
+        }
     }
 
     /**
@@ -506,17 +561,19 @@ public class ConnectionWrapper
      * @return created statement
      * @throws SQLException
      */
-    public synchronized Statement createStatement(int i, int j, int k)
+    public Statement createStatement(int i, int j, int k)
         throws SQLException
     {
+        lock.lock();
         try
         {
-           enterBusyState();
+            enterBusyState();
             return connection.createStatement(i, j, k);
         }
-        finally 
+        finally
         {
             leaveBusyState();
+            lock.unlock();
         }
     }
 
@@ -529,9 +586,10 @@ public class ConnectionWrapper
      * @return prepared statement
      * @throws SQLException
      */
-    public synchronized PreparedStatement prepareStatement(String s, int i, int j, int k)
+    public PreparedStatement prepareStatement(String s, int i, int j, int k)
         throws SQLException
     {
+        lock.lock();
         try
         {
             enterBusyState();
@@ -540,6 +598,7 @@ public class ConnectionWrapper
         finally
         {
             leaveBusyState();
+            lock.unlock();
         }
     }
 
@@ -552,9 +611,10 @@ public class ConnectionWrapper
      * @return prepared statement
      * @throws SQLException
      */
-    public synchronized CallableStatement prepareCall(String s, int i, int j, int k)
+    public CallableStatement prepareCall(String s, int i, int j, int k)
         throws SQLException
     {
+        lock.lock();
         try
         {
             enterBusyState();
@@ -563,6 +623,7 @@ public class ConnectionWrapper
         finally
         {
             leaveBusyState();
+            lock.unlock();
         }
     }
 
@@ -573,9 +634,10 @@ public class ConnectionWrapper
      * @return prepared statement
      * @throws SQLException
      */
-    public synchronized PreparedStatement prepareStatement(String s, int i)
+    public PreparedStatement prepareStatement(String s, int i)
         throws SQLException
     {
+        lock.lock();
         try
         {
             enterBusyState();
@@ -584,6 +646,7 @@ public class ConnectionWrapper
         finally
         {
             leaveBusyState();
+            lock.unlock();
         }
     }
 
@@ -594,9 +657,10 @@ public class ConnectionWrapper
      * @return prepared statement
      * @throws SQLException
      */
-    public synchronized PreparedStatement prepareStatement(String s, int[] ai)
+    public PreparedStatement prepareStatement(String s, int[] ai)
         throws SQLException
     {
+        lock.lock();
         try
         {
             enterBusyState();
@@ -605,6 +669,7 @@ public class ConnectionWrapper
         finally
         {
             leaveBusyState();
+            lock.unlock();
         }
     }
 
@@ -615,10 +680,11 @@ public class ConnectionWrapper
      * @return prepared statement
      * @throws SQLException
      */
-    public synchronized PreparedStatement prepareStatement(String s, String[] as)
+    public PreparedStatement prepareStatement(String s, String[] as)
         throws SQLException
     {
-        try     
+        lock.lock();
+        try
         {
             enterBusyState();
             return connection.prepareStatement(s,as);
@@ -626,25 +692,26 @@ public class ConnectionWrapper
         finally
         {
             leaveBusyState();
+            lock.unlock();
         }
     }
 
     /** 
      * Enter busy state.
      */
-    public synchronized void enterBusyState()
+    public void enterBusyState()
     {
         //Logger.trace("connection #"+toString()+": entering busy state.");
-        ++busy;
+        busy.incrementAndGet();
     }
 
     /**
      * Leave busy state.
      */
-    public synchronized void leaveBusyState()
+    public void leaveBusyState()
     {
         lastUse = System.currentTimeMillis();
-        busy--;
+        busy.decrementAndGet();
         //Logger.trace("connection #"+toString()+": leaving busy state.");
     }
 
@@ -654,7 +721,7 @@ public class ConnectionWrapper
      */
     public boolean isBusy()
     {
-        return busy > 0;
+        return busy.get() > 0;
     }
 
     /**
@@ -667,6 +734,15 @@ public class ConnectionWrapper
       return lastUse;
     }
 
+    /**
+     * Get the cache of prepared statements of this connection.
+     * @return statement cache
+     */
+    public StatementCache getStatementCache()
+    {
+        return statementCache;
+    }
+
     public DriverInfos getDriverInfos()
     {
         return driverInfos;
@@ -702,7 +778,8 @@ public class ConnectionWrapper
 
                 if (lastInsertIdMethod == null)
                 {
-                    synchronized(this)
+                    lock.lock();
+                    try
                     {
                         if (lastInsertIdMethod == null)
                         {
@@ -732,6 +809,10 @@ public class ConnectionWrapper
                             }
                         }
                     }
+                    finally
+                    {
+                        lock.unlock();
+                    }
                 }
 
                 // TEMPORARY HACK - tomcat jdbc2 + mysql
@@ -802,8 +883,9 @@ public class ConnectionWrapper
      *
      * @return true if the connection is ok
      */
-    public synchronized boolean check()
+    public boolean check()
     {
+        lock.lock();
         try
         {
             String checkQuery = driverInfos.getPingQuery();
@@ -827,26 +909,36 @@ public class ConnectionWrapper
             logger.warn("Exception while checking connection. Refreshing...");
             return false;
         }
+        finally
+        {
+            lock.unlock();
+        }
     }
 
     /** Infos on the driver. */
     private DriverInfos driverInfos = null;
 
     private Class lastInsertIdClass = null;
-    private Method lastInsertIdMethod = null;
+    private volatile Method lastInsertIdMethod = null;
 
     /** Wrapped connection. */
     private transient Connection connection = null;
 
     /** Busy state. */
-    private int busy = 0;
+    private final AtomicInteger busy = new AtomicInteger();
 
     /** Last use */
-    private long lastUse = System.currentTimeMillis();
+    private volatile long lastUse = System.currentTimeMillis();
+
+    /** Lock serializing calls to the wrapped connection. */
+    private final ReentrantLock lock = new ReentrantLock();
 
     /** Closed state. */
     private boolean closed = false;
 
+    /** pooled statements prepared on this connection */
+    private transient StatementCache statementCache = new StatementCache();
+
     /** statement used to check connection ("select 1").
      */
     private transient PreparedStatement checkStatement = null;
@@ -0,0 +1,204 @@
+package com.republicate.modality.sql;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Serializable;
+import java.io.Writer;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Calendar;
+import java.util.Date;
+
+/**
+ * <p>CSV encoding of rows, as read and written by PostgreSQL <code>COPY ... WITH (FORMAT csv)</code> statements.</p>
+ * <p>Null values are empty unquoted fields, while empty strings are quoted. Dates and calendars are written as
+ * timestamps, and byte arrays with the <code>bytea</code> hex format.</p>
+ */
+public class CsvFormat
+{
+    /**
+     * Reader producing CSV lines from rows, as they are requested.
+     */
+    public static abstract class RowsReader extends Reader
+    {
+        /**
+         * Get the next row values.
+         * @return next row values, or null at the end of rows
+         * @throws SQLException
+         */
+        protected abstract Serializable[] nextRow() throws SQLException;
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException
+        {
+            while (position == buffer.length() && !over)
+            {
+                buffer.setLength(0);
+                position = 0;
+                try
+                {
+                    Serializable[] row = nextRow();
+                    if (row == null)
+                    {
+                        over = true;
+                    }
+                    else
+                    {
+                        appendRow(buffer, row);
+                    }
+                }
+                catch (SQLException sqle)
+                {
+                    throw new IOException("could not get next row", sqle);
+                }
+            }
+            if (position == buffer.length())
+            {
+                return -1;
+            }
+            int count = Math.min(len, buffer.length() - position);
+            buffer.getChars(position, position + count, cbuf, off);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public void close()
+        {
+            over = true;
+        }
+
+        /** pending characters */
+        private final StringBuilder buffer = new StringBuilder();
+
+        /** position in pending characters */
+        private int position = 0;
+
+        /** whether rows are exhausted */
+        private boolean over = false;
+    }
+
+    /**
+     * Write a row as a CSV line.
+     * @param writer target writer
+     * @param row row values
+     * @throws IOException
+     */
+    public static void writeRow(Writer writer, Serializable[] row) throws IOException
+    {
+        StringBuilder builder = new StringBuilder();
+        appendRow(builder, row);
+        writer.write(builder.toString());
+    }
+
+    /**
+     * Append a row as a CSV line.
+     * @param builder target builder
+     * @param row row values
+     */
+    public static void appendRow(StringBuilder builder, Serializable[] row)
+    {
+        for (int i = 0; i < row.length; ++i)
+        {
+            if (i > 0)
+            {
+                builder.append(',');
+            }
+            appendValue(builder, row[i]);
+        }
+        builder.append('\n');
+    }
+
+    /**
+     * Append a single CSV field.
+     * @param builder target builder
+     * @param value value
+     */
+    public static void appendValue(StringBuilder builder, Serializable value)
+    {
+        if (value == null)
+        {
+            return;
+        }
+        String str;
+        if (value instanceof byte[])
+        {
+            byte[] bytes = (byte[])value;
+            builder.append("\\x");
+            for (byte b : bytes)
+            {
+                builder.append(HEX_DIGITS[(b >> 4) & 0xF]).append(HEX_DIGITS[b & 0xF]);
+            }
+            return;
+        }
+        else if (value instanceof Calendar)
+        {
+            str = new Timestamp(((Calendar)value).getTimeInMillis()).toString();
+        }
+        else if (value instanceof Date && !(value instanceof java.sql.Date || value instanceof java.sql.Time || value instanceof Timestamp))
+        {
+            str = new Timestamp(((Date)value).getTime()).toString();
+        }
+        else
+        {
+            str = String.valueOf(value);
+        }
+        if (needsQuoting(str))
+        {
+            builder.append('"');
+            for (int i = 0; i < str.length(); ++i)
+            {
+                char c = str.charAt(i);
+                if (c == '"')
+                {
+                    builder.append('"');
+                }
+                builder.append(c);
+            }
+            builder.append('"');
+        }
+        else
+        {
+            builder.append(str);
+        }
+    }
+
+    private static boolean needsQuoting(String str)
+    {
+        if (str.isEmpty() || str.equals("\\."))
+        {
+            return true;
+        }
+        for (int i = 0; i < str.length(); ++i)
+        {
+            char c = str.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r')
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+}
@@ -64,6 +64,10 @@ public class DriverInfos implements Constants, Serializable
         setLastInsertIdPolicy(Optional.ofNullable(getLastInsertIdPolicyString()).orElse(Optional.ofNullable(other.getLastInsertIdPolicyString()).orElse("none")));
         setStrictColumnTypes(Optional.ofNullable(isStrictColumnTypes()).orElse(Optional.ofNullable(other.isStrictColumnTypes()).orElse(false)));
         setColumnMarkers(Optional.ofNullable(hasColumnMarkers()).orElse(Optional.ofNullable(other.hasColumnMarkers()).orElse(false)));
+        setStreamingTransaction(Optional.ofNullable(isStreamingTransaction()).orElse(Optional.ofNullable(other.isStreamingTransaction()).orElse(false)));
+        Optional.ofNullable(Optional.ofNullable(getStreamingFetchSize()).orElse(other.getStreamingFetchSize())).ifPresent(this::setStreamingFetchSize);
+        setUpsertPolicy(Optional.ofNullable(getUpsertPolicy()).orElse(Optional.ofNullable(other.getUpsertPolicy()).orElse(UpsertPolicy.NONE)));
+        setArrayKeysPolicy(Optional.ofNullable(getArrayKeysPolicy()).orElse(Optional.ofNullable(other.getArrayKeysPolicy()).orElse(ArrayKeysPolicy.NONE)));
         Pattern ignoreTablesPattern = Optional.ofNullable(getIgnoreTablesPattern()).orElse(other.getIgnoreTablesPattern());
         setIgnoreTablesPattern(ignoreTablesPattern == null ? null : ignoreTablesPattern.toString());
         Character idQuoteChar = Optional.of(getIdentifierQuoteChar()).orElse(other.getIdentifierQuoteChar());
@@ -80,6 +84,10 @@ public class DriverInfos implements Constants, Serializable
         logger.info("driver last insert id policy: {}", getLastInsertIdPolicy());
         logger.info("driver strict column types: {}", isStrictColumnTypes());
         logger.info("driver column markers: {}", hasColumnMarkers());
+        logger.info("driver streaming transaction: {}", isStreamingTransaction());
+        logger.info("driver streaming fetch size: {}", getStreamingFetchSize());
+        logger.info("driver upsert policy: {}", getUpsertPolicy());
+        logger.info("driver array keys policy: {}", getArrayKeysPolicy());
         logger.info("driver ignore tables pattern: {}", getIgnoreTablesPattern());
         logger.info("driver identifier quote char: <{}>", getIdentifierQuoteChar());
     }
@@ -251,10 +259,61 @@ public class DriverInfos implements Constants, Serializable
         this.columnMarkers = columnMarkers;
     }
 
+    public Boolean isStreamingTransaction()
+    {
+        return streamingTransaction;
+    }
+
+    public void setStreamingTransaction(boolean streamingTransaction)
+    {
+        this.streamingTransaction = streamingTransaction;
+    }
+
+    public Integer getStreamingFetchSize()
+    {
+        return streamingFetchSize;
+    }
+
+    public void setStreamingFetchSize(int streamingFetchSize)
+    {
+        this.streamingFetchSize = streamingFetchSize;
+    }
+
+    public UpsertPolicy getUpsertPolicy()
+    {
+        return upsertPolicy;
+    }
+
+    public void setUpsertPolicy(UpsertPolicy upsertPolicy)
+    {
+        this.upsertPolicy = upsertPolicy;
+    }
+
+    public ArrayKeysPolicy getArrayKeysPolicy()
+    {
+        return arrayKeysPolicy;
+    }
+
+    public void setArrayKeysPolicy(ArrayKeysPolicy arrayKeysPolicy)
+    {
+        this.arrayKeysPolicy = arrayKeysPolicy;
+    }
+
     /*
      * Operations
      */
 
+    /**
+     * Get the fetch size to give to the driver for a requested fetch size.
+     *
+     * @param fetchSize requested fetch size, 0 for the driver default
+     * @return driver fetch size
+     */
+    public int getDriverFetchSize(int fetchSize)
+    {
+        return fetchSize > 0 && streamingFetchSize != null ? streamingFetchSize : fetchSize;
+    }
+
     public String getTableName(String entityName)
     {
         return filterTableName.apply(entityName);
@@ -361,6 +420,20 @@ public class DriverInfos implements Constants, Serializable
     /** whether driver supports ::varchar etc... */
     private Boolean columnMarkers = null;
 
+    /** whether streamed result sets (server-side cursors) require a dedicated connection in manual commit mode */
+    private Boolean streamingTransaction = null;
+
+    /** fetch size to use instead of any positive fetch size, for drivers with a special streaming value */
+    private Integer streamingFetchSize = null;
+
+    /** native upsert syntax: INSERT ... ON CONFLICT (PostgreSQL), INSERT ... ON DUPLICATE KEY UPDATE (MySQL) or MERGE INTO (SQL:2003) */
+    public enum UpsertPolicy { NONE, ON_CONFLICT, ON_DUPLICATE_KEY, MERGE }
+    private UpsertPolicy upsertPolicy = null;
+
+    /** keys lookup with a single array parameter bound with setObject(): key = ANY(?) (PostgreSQL) or key IN (UNNEST(?)) (HSQLDB) */
+    public enum ArrayKeysPolicy { NONE, ANY, UNNEST }
+    private ArrayKeysPolicy arrayKeysPolicy = null;
+
     /** sql query to get enum values */
     private String describeEnumQuery = null;
     private String describeEnumPattern = null;
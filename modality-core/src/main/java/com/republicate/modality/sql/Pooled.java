@@ -23,6 +23,7 @@ package com.republicate.modality.sql;
 import java.io.Serializable;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * This abstract class represents a pooled object with a potential encapsulated resultset.
@@ -63,10 +64,25 @@ public abstract class Pooled implements Serializable
      */
     public void notifyInUse()
     {
-        inUse = true;
+        inUse.set(true);
         resetTagTime();
     }
 
+    /**
+     * atomically notify this object that it is in use, if it wasn't already.
+     *
+     * @return whether the object has been acquired by the caller
+     */
+    public boolean tryNotifyInUse()
+    {
+        if (inUse.compareAndSet(false, true))
+        {
+            resetTagTime();
+            return true;
+        }
+        return false;
+    }
+
     /**
      * notify this object that it is no more in use.
      */
@@ -81,7 +97,7 @@ public abstract class Pooled implements Serializable
         }
         catch(SQLException sqle) {}    // ignore
         resultSet = null;
-        inUse = false;
+        inUse.set(false);
     }
 
     /**
@@ -91,7 +107,7 @@ public abstract class Pooled implements Serializable
      */
     public boolean isInUse()
     {
-        return inUse;
+        return inUse.get();
     }
 
     /**
@@ -130,19 +146,19 @@ public abstract class Pooled implements Serializable
     /**
      * time tag.
      */
-    private long tagTime = 0;
+    private volatile long tagTime = 0;
 
     // states (inUse - useOver) : (false-false) -> (true-false) -> (true-true) -> [delay] (false-false)
 
     /**
      * valid statement?
      */
-    private boolean valid = true;
+    private volatile boolean valid = true;
 
     /**
      * is this object in use?
      */
-    private boolean inUse = false;
+    private final AtomicBoolean inUse = new AtomicBoolean(false);
 
     /**
      * database connection.
@@ -27,10 +27,15 @@ import java.io.Serializable;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.ResultSetMetaData;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * this class encapsulates a jdbc PreparedStatement (and a potential ResultSet encapsulated by its base class).
@@ -63,11 +68,34 @@ public class PooledStatement extends Pooled implements RowValues
      * @param preparedStatement wrapped prepared statement
      */
     public PooledStatement(ConnectionWrapper connection, PreparedStatement preparedStatement)
+    {
+        this(connection, null, preparedStatement);
+    }
+
+    /**
+     * build a new PooledStatement.
+     *
+     * @param connection database connection
+     * @param query SQL query
+     * @param preparedStatement wrapped prepared statement
+     */
+    public PooledStatement(ConnectionWrapper connection, String query, PreparedStatement preparedStatement)
     {
         this.connection = connection;
+        this.query = query;
         this.preparedStatement = preparedStatement;
     }
 
+    /**
+     * get the SQL query of this statement.
+     *
+     * @return SQL query, if known
+     */
+    public String getQuery()
+    {
+        return query;
+    }
+
     /**
      * check whether this pooled object is marked as valid or invalid.
      * (used in the recovery execute)
@@ -79,26 +107,76 @@ public class PooledStatement extends Pooled implements RowValues
         return super.isValid() && preparedStatement != null;
     }
 
-    public synchronized ResultSet executeQuery(Serializable... paramValues) throws SQLException
+    /**
+     * Set the number of rows fetched at once from the database by the next queries, 0 meaning the driver default.
+     *
+     * @param fetchSize fetch size
+     * @exception SQLException thrown by the database engine
+     */
+    public void setFetchSize(int fetchSize) throws SQLException
+    {
+        lock.lock();
+        try
+        {
+            if (fetchSize != this.fetchSize)
+            {
+                preparedStatement.setFetchSize(fetchSize);
+                this.fetchSize = fetchSize;
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    public ResultSet executeQuery(Serializable... paramValues) throws SQLException
     {
+        return executeQuery(null, paramValues);
+    }
+
+    /**
+     * Execute the query of this statement, binding parameters with typed accessors.
+     * @param accessors parameters accessors, may be null or shorter than parameters
+     * @param paramValues parameters values
+     * @return result set
+     * @throws SQLException
+     */
+    public ResultSet executeQuery(TypedAccessor[] accessors, Serializable[] paramValues) throws SQLException
+    {
+        lock.lock();
         try
         {
-            setParamValues(paramValues);
+            setParamValues(accessors, paramValues);
             getConnection().enterBusyState();
             return resultSet = preparedStatement.executeQuery();
         }
         finally
         {
             getConnection().leaveBusyState();
+            lock.unlock();
         }
     }
 
-    public synchronized int executeUpdate(Serializable... paramValues) throws SQLException
+    public int executeUpdate(Serializable... paramValues) throws SQLException
     {
+        return executeUpdate(null, paramValues);
+    }
+
+    /**
+     * Execute the update of this statement, binding parameters with typed accessors.
+     * @param accessors parameters accessors, may be null or shorter than parameters
+     * @param paramValues parameters values
+     * @return number of changed rows
+     * @throws SQLException
+     */
+    public int executeUpdate(TypedAccessor[] accessors, Serializable[] paramValues) throws SQLException
+    {
+        lock.lock();
         try
         {
             int count = 0;
-            setParamValues(paramValues);
+            setParamValues(accessors, paramValues);
             getConnection().enterBusyState();
             if (!preparedStatement.execute())
             {
@@ -109,17 +187,23 @@ public class PooledStatement extends Pooled implements RowValues
         finally
         {
             getConnection().leaveBusyState();
+            lock.unlock();
         }
     }
 
 
-    private void setParamValues(Serializable[] paramValues) throws SQLException
+    private void setParamValues(TypedAccessor[] accessors, Serializable[] paramValues) throws SQLException
     {
         if (logger.isTraceEnabled())
         {
             logger.trace("params-{}", Arrays.asList(paramValues));
         }
-        for (int i = 0; i < paramValues.length; ++i)
+        int typed = accessors == null ? 0 : Math.min(accessors.length, paramValues.length);
+        for (int i = 0; i < typed; ++i)
+        {
+            accessors[i].bind(preparedStatement, i + 1, paramValues[i]);
+        }
+        for (int i = typed; i < paramValues.length; ++i)
         {
             preparedStatement.setObject(i + 1, paramValues[i]);
         }
@@ -132,12 +216,13 @@ public class PooledStatement extends Pooled implements RowValues
      * @exception SQLException thrown by the database engine
      * @return the numer of affected rows
      */
-    public synchronized int update(List params) throws SQLException
+    public int update(List params) throws SQLException
     {
+        lock.lock();
         try
         {
             Serializable arrParams[] = new Serializable[params.size()];
-            setParamValues((Serializable[])params.toArray(arrParams));
+            setParamValues(null, (Serializable[])params.toArray(arrParams));
             connection.enterBusyState();
 
             int rows = preparedStatement.executeUpdate();
@@ -148,6 +233,7 @@ public class PooledStatement extends Pooled implements RowValues
         {
             connection.leaveBusyState();
             notifyOver();
+            lock.unlock();
         }
     }
 
@@ -158,28 +244,110 @@ public class PooledStatement extends Pooled implements RowValues
      * @exception SQLException thrown by the database engine
      * @return the object value returned by jdbc
      */
-    public synchronized Serializable get(Object key) throws SQLException
+    public Serializable get(Object key) throws SQLException
     {
-        if(!(key instanceof String) || resultSet == null)
+        lock.lock();
+        try
+        {
+            if(!(key instanceof String) || resultSet == null)
+            {
+                return null;
+            }
+
+            Integer index = getColumnIndices().get(key);
+            Serializable ret = (Serializable)(index == null ? resultSet.getObject((String)key) : resultSet.getObject(index));
+
+            /*
+            if(entity != null && entity.isObfuscated((String)key))
+            {
+                ret = entity.obfuscate((ret));
+            }
+            */
+            return ret;
+        }
+        finally
         {
-            return null;
+            lock.unlock();
         }
+    }
 
-        Serializable ret = (Serializable)resultSet.getObject((String)key);
+    /**
+     * get the object value of the specified resultset column.
+     *
+     * @param index the index of the resultset column, starting at 1
+     * @exception SQLException thrown by the database engine
+     * @return the object value returned by jdbc
+     */
+    public Serializable getValue(int index) throws SQLException
+    {
+        return getValue(index, TypedAccessor.OBJECT);
+    }
 
-        /*
-        if(entity != null && entity.isObfuscated((String)key))
+    /**
+     * get the value of the specified resultset column, using a typed accessor.
+     *
+     * @param index the index of the resultset column, starting at 1
+     * @param accessor typed accessor
+     * @exception SQLException thrown by the database engine
+     * @return the column value
+     */
+    public Serializable getValue(int index, TypedAccessor accessor) throws SQLException
+    {
+        lock.lock();
+        try
         {
-            ret = entity.obfuscate((ret));
+            return resultSet == null ? null : accessor.read(resultSet, index);
+        }
+        finally
+        {
+            lock.unlock();
         }
-        */
-        return ret;
     }
 
     public Set<String> keySet() throws SQLException
     {
-        if(resultSet == null) return new HashSet<String>();
-        return new HashSet<String>(SqlUtils.getColumnNames(resultSet));
+        lock.lock();
+        try
+        {
+            if(resultSet == null) return new HashSet<String>();
+            return getColumnIndices().keySet();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * get the resultset columns indices by label. Since the query of a statement never changes, the mapping
+     * is only built once from the resultset metadata.
+     *
+     * @exception SQLException thrown by the database engine
+     * @return unmodifiable map of columns indices by label, in resultset order
+     */
+    public Map<String, Integer> getColumnIndices() throws SQLException
+    {
+        lock.lock();
+        try
+        {
+            if (columnIndices == null)
+            {
+                ResultSetMetaData meta = resultSet.getMetaData();
+                int count = meta.getColumnCount();
+                Map<String, Integer> indices = new LinkedHashMap<>();
+                for (int c = 1; c <= count; ++c)
+                {
+                    // like getObject(label), keep the first column of a given label
+                    indices.putIfAbsent(meta.getColumnLabel(c), c);
+                }
+                columnIndices = Collections.unmodifiableMap(indices);
+            }
+            return columnIndices;
+        }
+        finally
+        {
+            lock.unlock();
+        }
     }
 
     /**
@@ -188,9 +356,17 @@ public class PooledStatement extends Pooled implements RowValues
      * @exception SQLException thrown by the database engine
      * @return the last insert id
      */
-    public synchronized long getLastInsertID(String keyColumn) throws SQLException
+    public long getLastInsertID(String keyColumn) throws SQLException
     {
-        return connection.getLastInsertId(preparedStatement, keyColumn);
+        lock.lock();
+        try
+        {
+            return connection.getLastInsertId(preparedStatement, keyColumn);
+        }
+        finally
+        {
+            lock.unlock();
+        }
     }
 
     /**
@@ -198,14 +374,74 @@ public class PooledStatement extends Pooled implements RowValues
      *
      * @exception SQLException thrown by the database engine
      */
-    public synchronized void close() throws SQLException
+    public void close() throws SQLException
     {
-        if(preparedStatement != null)
+        lock.lock();
+        try
         {
-            preparedStatement.close();
+            if(preparedStatement != null)
+            {
+                preparedStatement.close();
+            }
+        }
+        finally
+        {
+            lock.unlock();
         }
     }
 
+    /**
+     * notify this statement that it is no more in use, giving back its connection
+     * to the connection pool it was borrowed from, if any.
+     */
+    @Override
+    public void notifyOver()
+    {
+        super.notifyOver();
+        ConnectionPool pool = lease;
+        if (pool != null)
+        {
+            lease = null;
+            if (dedicated)
+            {
+                // dedicated statements are not pooled, and their read-only transaction is over
+                try
+                {
+                    close();
+                    connection.rollback();
+                }
+                catch (SQLException sqle)
+                {
+                    logger.error("could not close dedicated statement", sqle);
+                }
+                connection.leaveBusyState();
+            }
+            pool.releaseConnection(connection);
+        }
+    }
+
+    /**
+     * set the connection pool the statement connection has been borrowed from.
+     *
+     * @param pool connection pool
+     */
+    void setLease(ConnectionPool pool)
+    {
+        lease = pool;
+    }
+
+    /**
+     * set the connection pool the statement connection has been borrowed from, for a statement which is
+     * not pooled and has to be closed once over, along with its connection transaction.
+     *
+     * @param pool connection pool
+     */
+    void setDedicatedLease(ConnectionPool pool)
+    {
+        lease = pool;
+        dedicated = true;
+    }
+
     /**
      * get statement Connection.
      *
@@ -239,8 +475,38 @@ public class PooledStatement extends Pooled implements RowValues
     }
     */
 
+    /**
+     * SQL query.
+     */
+    private String query = null;
+
     /**
      * wrapped prepared statement.
      */
     private transient PreparedStatement preparedStatement = null;
+
+    /**
+     * connection pool to give the connection back to, when the statement connection is exclusively borrowed.
+     */
+    private transient volatile ConnectionPool lease = null;
+
+    /**
+     * whether the statement is not pooled.
+     */
+    private boolean dedicated = false;
+
+    /**
+     * current fetch size.
+     */
+    private int fetchSize = 0;
+
+    /**
+     * resultset columns indices, by label.
+     */
+    private transient Map<String, Integer> columnIndices = null;
+
+    /**
+     * statement lock.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
 }
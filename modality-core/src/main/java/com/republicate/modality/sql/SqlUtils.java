@@ -34,9 +34,14 @@ import java.sql.SQLException;
 import java.sql.Types;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.Stack;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * various SQL-related helpers.
@@ -301,4 +306,22 @@ public class SqlUtils
     {
         return splitStatements(query, identifierQuoteChar).size() > 1;
     }
+
+    /**
+     * get the lowercase identifier-like tokens of a query (keywords, tables, columns...)
+     * @param query SQL query
+     * @return set of lowercase tokens
+     */
+    public static Set<String> getIdentifiers(String query)
+    {
+        Set<String> identifiers = new HashSet<>();
+        Matcher matcher = identifier.matcher(query);
+        while (matcher.find())
+        {
+            identifiers.add(matcher.group().toLowerCase(Locale.ROOT));
+        }
+        return identifiers;
+    }
+
+    private static final Pattern identifier = Pattern.compile("[\\p{Alpha}_][\\w$]*");
 }
@@ -0,0 +1,151 @@
+package com.republicate.modality.sql;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Least recently used cache of the prepared statements of a single connection.</p>
+ * <p>When the cache grows beyond its capacity, the least recently used statements which are not in use
+ * are invalidated and their underlying JDBC statement is closed, so that the number of server-side
+ * prepared statements stays bounded.</p>
+ */
+public class StatementCache
+{
+    protected static Logger logger = LoggerFactory.getLogger("sql");
+
+    /**
+     * find and acquire a cached statement for this query.
+     *
+     * @param query SQL query
+     * @return acquired statement, or null if none available
+     */
+    public synchronized PooledStatement acquire(String query)
+    {
+        PooledStatement found = null;
+        for (PooledStatement statement : statements.keySet())
+        {
+            if (query.equals(statement.getQuery()) && statement.isValid() && statement.tryNotifyInUse())
+            {
+                found = statement;
+                break;
+            }
+        }
+        if (found != null)
+        {
+            statements.get(found);
+        }
+        return found;
+    }
+
+    /**
+     * mark a statement as most recently used.
+     *
+     * @param statement pooled statement
+     */
+    public synchronized void touch(PooledStatement statement)
+    {
+        statements.get(statement);
+    }
+
+    /**
+     * add a statement to the cache, evicting the least recently used idle statements if needed.
+     *
+     * @param statement new statement
+     * @param capacity maximum number of statements, or a negative value for no limit
+     * @return evicted (and closed) statements
+     */
+    public List<PooledStatement> add(PooledStatement statement, int capacity)
+    {
+        List<PooledStatement> evicted = null;
+        synchronized (this)
+        {
+            statements.put(statement, Boolean.TRUE);
+            if (capacity >= 0 && statements.size() > capacity)
+            {
+                for (Iterator<PooledStatement> it = statements.keySet().iterator(); it.hasNext() && statements.size() > capacity; )
+                {
+                    PooledStatement candidate = it.next();
+                    if (candidate != statement && (!candidate.isValid() || candidate.tryNotifyInUse()))
+                    {
+                        it.remove();
+                        candidate.setInvalid();
+                        if (evicted == null)
+                        {
+                            evicted = new ArrayList<>();
+                        }
+                        evicted.add(candidate);
+                    }
+                }
+            }
+        }
+        if (evicted == null)
+        {
+            return Collections.emptyList();
+        }
+        // close evicted statements outside of the monitor
+        for (PooledStatement victim : evicted)
+        {
+            try
+            {
+                victim.close();
+            }
+            catch (SQLException sqle)
+            {
+                logger.warn("could not close evicted statement", sqle);
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * remove a statement from the cache.
+     *
+     * @param statement pooled statement
+     */
+    public synchronized void remove(PooledStatement statement)
+    {
+        statements.remove(statement);
+    }
+
+    /**
+     * get the number of cached statements.
+     *
+     * @return cached statements count
+     */
+    public synchronized int size()
+    {
+        return statements.size();
+    }
+
+    /**
+     * cached statements, in access order
+     */
+    private final Map<PooledStatement, Boolean> statements = new LinkedHashMap<>(16, 0.75f, true);
+}
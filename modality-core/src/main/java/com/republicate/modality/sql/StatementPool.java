@@ -20,8 +20,6 @@ package com.republicate.modality.sql;
  */
 
 
-import com.republicate.modality.util.HashMultiMap;
-import com.republicate.modality.util.MultiMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -31,15 +29,21 @@ import java.sql.Statement;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
- * This class is a pool of PooledPreparedStatements.
+ * <p>This class is a pool of PooledPreparedStatements.</p>
+ * <p>Statements are kept in concurrent lists, one per query, and are acquired by atomically flagging them
+ * as in use, so that preparing statements never requires a global lock.</p>
  *
  *  @author <a href=mailto:claude.brisson@gmail.com>Claude Brisson</a>
  *
  */
-public class StatementPool implements /* Runnable, */ Pool
+public class StatementPool implements Pool
 {
     protected Logger logger = LoggerFactory.getLogger("sql");
 
@@ -54,10 +58,23 @@ public class StatementPool implements /* Runnable, */ Pool
      * @param connectionPool connection pool
      */
     public StatementPool(String modelId, ConnectionPool connectionPool, long connectionsCheckInterval)
+    {
+        this(modelId, connectionPool, connectionsCheckInterval, DEFAULT_STATEMENTS_PER_CONNECTION);
+    }
+
+    /**
+     * build a new pool.
+     *
+     * @param connectionPool connection pool
+     * @param connectionsCheckInterval connections check interval
+     * @param statementsPerConnection maximum number of prepared statements kept per connection, or -1 for no limit
+     */
+    public StatementPool(String modelId, ConnectionPool connectionPool, long connectionsCheckInterval, int statementsPerConnection)
     {
         this.modelId = modelId;
         this.connectionPool = connectionPool;
         this.connectionsCheckInterval = connectionsCheckInterval;
+        this.statementsPerConnection = statementsPerConnection;
     }
 
     /**
@@ -67,97 +84,237 @@ public class StatementPool implements /* Runnable, */ Pool
      * @exception SQLException thrown by the database engine
      * @return a valid statement
      */
-    protected synchronized PooledStatement prepareStatement(String query, boolean update) throws SQLException
+    protected PooledStatement prepareStatement(String query, boolean update) throws SQLException
+    {
+        if (connectionPool.isExclusive() && getCurrentTransactionConnection(modelId) == null)
+        {
+            return prepareLeasedStatement(query, update);
+        }
+        return prepareSharedStatement(query, update);
+    }
+
+    /**
+     * get a PooledStatement associated with this query, on a shared connection.
+     *
+     * @param query an SQL query
+     * @param update whether the query is an update
+     * @exception SQLException thrown by the database engine
+     * @return a valid statement
+     */
+    private PooledStatement prepareSharedStatement(String query, boolean update) throws SQLException
     {
         logger.trace("prepare-{}", query);
 
         PooledStatement statement = null;
         ConnectionWrapper connection = getCurrentTransactionConnection(modelId);
-        boolean insideTransaction = false;
 
-        if (connection == null)
+        if (connection != null)
         {
-            List available = statementsMap.get(query);
-            for (Iterator it = available.iterator(); it.hasNext(); )
+            // inside a transaction: statements are only looked up in the transaction connection cache
+            statement = connection.getStatementCache().acquire(query);
+            if (statement != null)
             {
-                statement = (PooledStatement) it.next();
-                if (statement.isValid())
-                {
-                    if (!statement.isInUse() && !(connection = statement.getConnection()).isBusy())
-                    {
-                        // check connection
-                        if (!connection.isClosed() && (connectionsCheckInterval < 0 || System.currentTimeMillis() - connection.getLastUse() < connectionsCheckInterval || connection.check()))
-                        {
-                            statement.notifyInUse();
-                            return statement;
-                        }
-                        else
-                        {
-                            dropConnection(connection);
-                            it.remove();
-                        }
-                    }
-                }
-                else
+                hits.increment();
+                return statement;
+            }
+            statement = createStatement(connection, query, update);
+            statement.notifyInUse();
+            cacheStatement(statement);
+            return statement;
+        }
+
+        Queue<PooledStatement> statements = getStatements(query);
+        for (Iterator<PooledStatement> it = statements.iterator(); it.hasNext(); )
+        {
+            statement = it.next();
+            if (!statement.isValid())
+            {
+                it.remove();
+                continue;
+            }
+            connection = statement.getConnection();
+            if (statement.isInUse() || connection.isBusy() || !statement.tryNotifyInUse())
+            {
+                continue;
+            }
+            // check connection
+            if (!connection.isClosed() && (connectionsCheckInterval < 0 || System.currentTimeMillis() - connection.getLastUse() < connectionsCheckInterval || connection.check()))
+            {
+                connection.getStatementCache().touch(statement);
+                hits.increment();
+                return statement;
+            }
+            else
+            {
+                dropConnection(connection);
+                it.remove();
+            }
+        }
+        connection = connectionPool.getConnection();
+        statement = createStatement(connection, query, update);
+        statement.notifyInUse();
+        statements.add(statement);
+        cacheStatement(statement);
+        return statement;
+    }
+
+    /**
+     * get a PooledStatement associated with this query, on a connection exclusively borrowed
+     * from the connection pool until the statement is over.
+     *
+     * @param query an SQL query
+     * @param update whether the query is an update
+     * @exception SQLException thrown by the database engine
+     * @return a valid statement
+     */
+    private PooledStatement prepareLeasedStatement(String query, boolean update) throws SQLException
+    {
+        logger.trace("prepare-{}", query);
+
+        BoundedConnectionPool pool = (BoundedConnectionPool)connectionPool;
+        Queue<PooledStatement> statements = getStatements(query);
+
+        // first, try to reuse a statement prepared on an idle connection
+        for (Iterator<PooledStatement> it = statements.iterator(); it.hasNext(); )
+        {
+            PooledStatement statement = it.next();
+            if (!statement.isValid() || statement.getConnection().isClosed())
+            {
+                it.remove();
+            }
+            else if (!statement.isInUse() && pool.tryBorrow(statement.getConnection()))
+            {
+                if (statement.tryNotifyInUse())
                 {
-                    it.remove();
+                    statement.getConnection().getStatementCache().touch(statement);
+                    statement.setLease(pool);
+                    hits.increment();
+                    return statement;
                 }
+                pool.releaseConnection(statement.getConnection());
             }
-            if (count == maxStatements)
+        }
+
+        // otherwise, borrow a connection (which may wait)
+        ConnectionWrapper connection = pool.getConnection();
+        try
+        {
+            for (PooledStatement statement : statements)
             {
-                throw new SQLException("Error: Too many opened prepared statements!");
+                if (statement.getConnection() == connection && statement.isValid() && statement.tryNotifyInUse())
+                {
+                    connection.getStatementCache().touch(statement);
+                    statement.setLease(pool);
+                    hits.increment();
+                    return statement;
+                }
             }
-            connection = connectionPool.getConnection();
+            PooledStatement statement = createStatement(connection, query, update);
+            statement.notifyInUse();
+            statement.setLease(pool);
+            statements.add(statement);
+            cacheStatement(statement);
+            return statement;
         }
-        else
+        catch (SQLException | RuntimeException e)
         {
-            insideTransaction = true;
+            pool.releaseConnection(connection);
+            throw e;
         }
+    }
 
-        statement = new PooledStatement(connection,
+    /**
+     * get the statements list for a query.
+     *
+     * @param query an SQL query
+     * @return the concurrent list of statements prepared for this query
+     */
+    private Queue<PooledStatement> getStatements(String query)
+    {
+        Queue<PooledStatement> statements = statementsMap.get(query);
+        if (statements == null)
+        {
+            statements = statementsMap.computeIfAbsent(query, q -> new ConcurrentLinkedQueue<>());
+        }
+        return statements;
+    }
+
+    /**
+     * add a new statement to its connection cache, evicting least recently used statements if needed.
+     *
+     * @param statement new statement
+     */
+    private void cacheStatement(PooledStatement statement)
+    {
+        misses.increment();
+        List<PooledStatement> evicted = statement.getConnection().getStatementCache().add(statement, statementsPerConnection);
+        if (!evicted.isEmpty())
+        {
+            evictions.add(evicted.size());
+            for (PooledStatement victim : evicted)
+            {
+                // forget evicted statements, and the queries left without any statement
+                Queue<PooledStatement> statements = statementsMap.get(victim.getQuery());
+                if (statements != null)
+                {
+                    statements.remove(victim);
+                    statementsMap.computeIfPresent(victim.getQuery(), (query, queue) -> queue.isEmpty() ? null : queue);
+                }
+            }
+        }
+    }
+
+    private PooledStatement createStatement(ConnectionWrapper connection, String query, boolean update) throws SQLException
+    {
+        return new PooledStatement(connection, query,
                 update ?
                     connection.prepareStatement(
                             query, connection.getDriverInfos().getLastInsertIdPolicy() == DriverInfos.LastInsertIdPolicy.GENERATED_KEYS ?
                                     Statement.RETURN_GENERATED_KEYS :
                                     Statement.NO_GENERATED_KEYS) :
                     connection.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY));
-        if (!insideTransaction)
-        {
-            statementsMap.put(query, statement);
-        }
-        statement.notifyInUse();
-        return statement;
     }
 
-    public synchronized PooledStatement prepareQuery(String query) throws SQLException
+    public PooledStatement prepareQuery(String query) throws SQLException
     {
         return prepareStatement(query, false);
     }
 
-    public synchronized PooledStatement prepareUpdate(String query) throws SQLException
+    public PooledStatement prepareUpdate(String query) throws SQLException
     {
         return prepareStatement(query, true);
     }
 
     /**
-     * cycle through statements to check and recycle them.
-     * 
-     * public void run() {
-     *   while (running) {
-     *       try {
-     *           Thread.sleep(checkDelay);
-     *       } catch (InterruptedException e) {}
-     *       long now = System.currentTimeMillis();
-     *       PooledStatement statement = null;
-     *       for (Iterator it=statementsMap.keySet().iterator();it.hasNext();)
-     *           for (Iterator jt=statementsMap.get(it.next()).iterator();jt.hasNext();) {
-     *               statement = (PooledStatement)jt.next();
-     *               if (statement.isInUse() && now-statement.getTagTime() > timeout)
-     *                   statement.notifyOver();
-     *           }
-     *   }
-     * }
+     * get a statement for a streamed query, on a manual commit connection taken from the given pool and
+     * kept busy until the statement is over. Such statements are not pooled: they are closed, and their
+     * connection is given back, once over.
+     *
+     * @param query an SQL query
+     * @param pool connection pool
+     * @exception SQLException thrown by the database engine
+     * @return a valid statement
      */
+    public PooledStatement prepareStreamingQuery(String query, ConnectionPool pool) throws SQLException
+    {
+        logger.trace("prepare-streaming-{}", query);
+        ConnectionWrapper connection = pool.getConnection(false);
+        connection.enterBusyState();
+        try
+        {
+            PooledStatement statement = new PooledStatement(connection, query,
+                connection.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY));
+            statement.notifyInUse();
+            statement.setDedicatedLease(pool);
+            return statement;
+        }
+        catch (SQLException | RuntimeException e)
+        {
+            connection.leaveBusyState();
+            pool.releaseConnection(connection);
+            throw e;
+        }
+    }
 
     /**
      * close all statements.
@@ -165,13 +322,13 @@ public class StatementPool implements /* Runnable, */ Pool
     public void clear()
     {
         // close all statements
-        for(Iterator it = statementsMap.keySet().iterator(); it.hasNext(); )
+        for (Queue<PooledStatement> statements : statementsMap.values())
         {
-            for(Iterator jt = statementsMap.get(it.next()).iterator(); jt.hasNext(); )
+            for (PooledStatement statement : statements)
             {
                 try
                 {
-                    ((PooledStatement)jt.next()).close();
+                    statement.close();
                 }
                 catch(SQLException e)
                 {    // don't care now...
@@ -188,13 +345,12 @@ public class StatementPool implements /* Runnable, */ Pool
      */
     private void dropConnection(ConnectionWrapper connection)
     {
-        for(Iterator it = statementsMap.keySet().iterator(); it.hasNext(); )
+        for (Queue<PooledStatement> statements : statementsMap.values())
         {
-            for(Iterator jt = statementsMap.get(it.next()).iterator(); jt.hasNext(); )
+            for (Iterator<PooledStatement> it = statements.iterator(); it.hasNext(); )
             {
-                PooledStatement statement = (PooledStatement)jt.next();
-
-                if(statement.getConnection() == connection)
+                PooledStatement statement = it.next();
+                if (statement.getConnection() == connection)
                 {
                     try
                     {
@@ -202,6 +358,8 @@ public class StatementPool implements /* Runnable, */ Pool
                     }
                     catch(SQLException sqle) {}
                     statement.setInvalid();
+                    connection.getStatementCache().remove(statement);
+                    it.remove();
                 }
             }
         }
@@ -220,19 +378,38 @@ public class StatementPool implements /* Runnable, */ Pool
         clear();
     }
 
+    /**
+     * set the transaction connection of the current thread. It must be reset in a finally block, once
+     * the transaction is over.
+     *
+     * @param modelId model id
+     * @param connection transaction connection
+     */
     public static void setCurrentTransactionConnection(String modelId, ConnectionWrapper connection)
     {
-        currentTransactionConnection.get().put(modelId, connection);
+        currentTransactionConnection.computeIfAbsent(modelId, id -> new ConcurrentHashMap<>()).put(Thread.currentThread(), connection);
     }
 
     public static void resetCurrentTransactionConnection(String modelId)
     {
-        currentTransactionConnection.get().remove(modelId);
+        Map<Thread, ConnectionWrapper> connections = currentTransactionConnection.get(modelId);
+        if (connections != null)
+        {
+            connections.remove(Thread.currentThread());
+        }
     }
 
+    /**
+     * get the transaction connection of the current thread. Threads outside of any transaction don't
+     * allocate anything, so that this check stays cheap for huge numbers of short lived virtual threads.
+     *
+     * @param modelId model id
+     * @return current transaction connection, or null
+     */
     public static ConnectionWrapper getCurrentTransactionConnection(String modelId)
     {
-        return currentTransactionConnection.get().get(modelId);
+        Map<Thread, ConnectionWrapper> connections = currentTransactionConnection.get(modelId);
+        return connections == null ? null : connections.get(Thread.currentThread());
     }
 
     /**
@@ -244,44 +421,43 @@ public class StatementPool implements /* Runnable, */ Pool
     {
         int[] stats = new int[] { 0, 0 };
 
-        for(Iterator it = statementsMap.keySet().iterator(); it.hasNext(); )
+        for (Queue<PooledStatement> statements : statementsMap.values())
         {
-            for(Iterator jt = statementsMap.get(it.next()).iterator(); jt.hasNext(); )
+            for (PooledStatement statement : statements)
             {
-                if(!((PooledStatement)jt.next()).isInUse())
+                if (!statement.isValid())
+                {
+                    continue;
+                }
+                if (statement.isInUse())
                 {
                     stats[0]++;
                 }
+                stats[1]++;
             }
         }
-        stats[1] = statementsMap.size();
         return stats;
     }
 
     /**
-     * connection pool.
+     * get statements cache statistics.
+     *
+     * @return a long array : [nb of cache hits, nb of cache misses, nb of evicted statements]
      */
-    private ConnectionPool connectionPool;
+    public long[] getCacheStats()
+    {
+        return new long[] { hits.sum(), misses.sum(), evictions.sum() };
+    }
 
     /**
-     * statements getCount.
+     * connection pool.
      */
-    private int count = 0;
+    private ConnectionPool connectionPool;
 
     /**
      * map queries -&gt; statements.
      */
-    private MultiMap statementsMap = new HashMultiMap();    // query -> PooledStatement
-
-    /**
-     * running thread.
-     */
-    private Thread checkTimeoutThread = null;
-
-    /**
-     * true if running.
-     */
-    private boolean running = true;
+    private final ConcurrentMap<String, Queue<PooledStatement>> statementsMap = new ConcurrentHashMap<>();
 
     /**
      * connections check interval
@@ -294,23 +470,23 @@ public class StatementPool implements /* Runnable, */ Pool
     private String modelId = null;
 
     /**
-     * check delay.
+     * default max number of statements per connection.
      */
-
-//  private static final long checkDelay = 30*1000;
+    public static final int DEFAULT_STATEMENTS_PER_CONNECTION = 100;
 
     /**
-     * after this timeout, statements are recycled even if not closed.
+     * max number of statements per connection.
      */
-//  private static final long timeout = 60*60*1000;
+    private int statementsPerConnection;
 
     /**
-     * max number of statements.
+     * cache statistics.
      */
-    private static final int maxStatements = 50;
+    private final LongAdder hits = new LongAdder(), misses = new LongAdder(), evictions = new LongAdder();
 
     /**
-     * current transaction connection
+     * current transaction connections, by model id and thread (rather than a thread local, whose per-thread map
+     * would be created by every virtual thread)
      */
-    private static ThreadLocal<Map<String, ConnectionWrapper>> currentTransactionConnection = ThreadLocal.withInitial(() -> new ConcurrentHashMap<>());
+    private static final ConcurrentMap<String, Map<Thread, ConnectionWrapper>> currentTransactionConnection = new ConcurrentHashMap<>();
 }
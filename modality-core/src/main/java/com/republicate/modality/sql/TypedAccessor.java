@@ -0,0 +1,218 @@
+package com.republicate.modality.sql;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.io.Serializable;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Locale;
+
+/**
+ * <p>Typed parameters binding and columns reading, for columns whose SQL type is known.</p>
+ * <p>Typed accessors avoid the type inference and boxing done by drivers in <code>setObject()</code> and
+ * <code>getObject()</code>. They only cover SQL types for which the typed getter returns the same Java type
+ * as <code>getObject()</code>, and values which don't have the expected Java type are bound with <code>setObject()</code>,
+ * so that drivers keep doing conversions.</p>
+ */
+public enum TypedAccessor
+{
+    OBJECT(null, Types.NULL)
+    {
+        @Override
+        protected void bindTyped(PreparedStatement statement, int index, Serializable value) throws SQLException
+        {
+            statement.setObject(index, value);
+        }
+
+        @Override
+        public Serializable read(ResultSet resultSet, int index) throws SQLException
+        {
+            return (Serializable)resultSet.getObject(index);
+        }
+    },
+    INTEGER(Integer.class, Types.INTEGER)
+    {
+        @Override
+        protected void bindTyped(PreparedStatement statement, int index, Serializable value) throws SQLException
+        {
+            statement.setInt(index, (Integer)value);
+        }
+
+        @Override
+        public Serializable read(ResultSet resultSet, int index) throws SQLException
+        {
+            int value = resultSet.getInt(index);
+            return resultSet.wasNull() ? null : value;
+        }
+    },
+    BIGINT(Long.class, Types.BIGINT)
+    {
+        @Override
+        protected void bindTyped(PreparedStatement statement, int index, Serializable value) throws SQLException
+        {
+            statement.setLong(index, (Long)value);
+        }
+
+        @Override
+        public Serializable read(ResultSet resultSet, int index) throws SQLException
+        {
+            long value = resultSet.getLong(index);
+            return resultSet.wasNull() ? null : value;
+        }
+    },
+    DOUBLE(Double.class, Types.DOUBLE)
+    {
+        @Override
+        protected void bindTyped(PreparedStatement statement, int index, Serializable value) throws SQLException
+        {
+            statement.setDouble(index, (Double)value);
+        }
+
+        @Override
+        public Serializable read(ResultSet resultSet, int index) throws SQLException
+        {
+            double value = resultSet.getDouble(index);
+            return resultSet.wasNull() ? null : value;
+        }
+    },
+    BOOLEAN(Boolean.class, Types.BOOLEAN)
+    {
+        @Override
+        protected void bindTyped(PreparedStatement statement, int index, Serializable value) throws SQLException
+        {
+            statement.setBoolean(index, (Boolean)value);
+        }
+
+        @Override
+        public Serializable read(ResultSet resultSet, int index) throws SQLException
+        {
+            boolean value = resultSet.getBoolean(index);
+            return resultSet.wasNull() ? null : value;
+        }
+    },
+    STRING(String.class, Types.VARCHAR)
+    {
+        @Override
+        protected void bindTyped(PreparedStatement statement, int index, Serializable value) throws SQLException
+        {
+            statement.setString(index, (String)value);
+        }
+
+        @Override
+        public Serializable read(ResultSet resultSet, int index) throws SQLException
+        {
+            return resultSet.getString(index);
+        }
+    };
+
+    TypedAccessor(Class javaClass, int sqlType)
+    {
+        this.javaClass = javaClass;
+        this.sqlType = sqlType;
+    }
+
+    /**
+     * Bind a parameter value, with the typed setter if the value has the expected class, with <code>setObject()</code> otherwise.
+     * Null values are bound with <code>setNull()</code> and the accessor SQL type, except for <code>OBJECT</code>.
+     * @param statement prepared statement
+     * @param index parameter index, starting at 1
+     * @param value parameter value
+     * @throws SQLException
+     */
+    public final void bind(PreparedStatement statement, int index, Serializable value) throws SQLException
+    {
+        if (value == null && javaClass != null)
+        {
+            statement.setNull(index, sqlType);
+        }
+        else if (value != null && value.getClass() == javaClass)
+        {
+            bindTyped(statement, index, value);
+        }
+        else
+        {
+            statement.setObject(index, value);
+        }
+    }
+
+    /**
+     * Get the class of values read by this accessor.
+     * @return values class, or null for <code>OBJECT</code>
+     */
+    public Class getJavaClass()
+    {
+        return javaClass;
+    }
+
+    protected abstract void bindTyped(PreparedStatement statement, int index, Serializable value) throws SQLException;
+
+    /**
+     * Read a column value.
+     * @param resultSet result set
+     * @param index column index, starting at 1
+     * @return column value, or null
+     * @throws SQLException
+     */
+    public abstract Serializable read(ResultSet resultSet, int index) throws SQLException;
+
+    /**
+     * Get the accessor for a column type.
+     * @param sqlType column type, as in <code>java.sql.Types</code>
+     * @param typeName column type name, as reported by the database
+     * @return typed accessor, or <code>OBJECT</code>
+     */
+    public static TypedAccessor forType(int sqlType, String typeName)
+    {
+        // unsigned integers are read as wider types
+        if (typeName != null && typeName.toUpperCase(Locale.ROOT).contains("UNSIGNED"))
+        {
+            return OBJECT;
+        }
+        switch (sqlType)
+        {
+            case Types.INTEGER:
+                return INTEGER;
+            case Types.BIGINT:
+                return BIGINT;
+            case Types.DOUBLE:
+                return DOUBLE;
+            case Types.BOOLEAN:
+                return BOOLEAN;
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.LONGVARCHAR:
+            case Types.NCHAR:
+            case Types.NVARCHAR:
+            case Types.LONGNVARCHAR:
+                return STRING;
+            default:
+                return OBJECT;
+        }
+    }
+
+    /** expected class of values bound with the typed setter */
+    private final Class javaClass;
+
+    /** SQL type used to bind null values */
+    private final int sqlType;
+}
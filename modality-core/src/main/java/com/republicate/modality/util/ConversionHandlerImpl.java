@@ -89,6 +89,11 @@ public class ConversionHandlerImpl implements ConversionHandler
      */
     Map<Pair<? extends Class, ? extends Class>, Converter> converterCacheMap;
 
+    /**
+     * resolved converters, by formal class then by actual class, reset whenever a converter is added.
+     */
+    private volatile ClassValue<ClassValue<Converter>> converters;
+
     static
     {
         standardConverterMap = new HashMap<>();
@@ -797,6 +802,39 @@ public class ConversionHandlerImpl implements ConversionHandler
      */
     @Override
     public Converter getNeededConverter(final Class formal, final Class actual)
+    {
+        ClassValue<ClassValue<Converter>> converters = this.converters;
+        if (converters == null)
+        {
+            this.converters = converters = new ClassValue<ClassValue<Converter>>()
+            {
+                @Override
+                protected ClassValue<Converter> computeValue(Class<?> formal)
+                {
+                    return new ClassValue<Converter>()
+                    {
+                        @Override
+                        protected Converter computeValue(Class<?> actual)
+                        {
+                            Converter converter = lookupConverter(formal, actual);
+                            return converter == null ? cacheMiss : converter;
+                        }
+                    };
+                }
+            };
+        }
+        Converter converter = converters.get(formal).get(actual);
+        return converter == cacheMiss ? null : converter;
+    }
+
+    /**
+     * Resolve the converter needed for an explicit conversion, without caching.
+     *
+     * @param formal expected formal type
+     * @param actual found argument type
+     * @return null if no conversion is needed, or the appropriate Converter object
+     */
+    protected Converter lookupConverter(final Class formal, final Class actual)
     {
         Pair<Class, Class> key = Pair.of(formal, actual);
 
@@ -804,7 +842,7 @@ public class ConversionHandlerImpl implements ConversionHandler
         Converter converter = standardConverterMap.get(key);
         if (converter == null)
         {
-            /* then the converters cache map */
+            /* then the added converters */
             converter = converterCacheMap.get(key);
             if (converter == null)
             {
@@ -825,11 +863,9 @@ public class ConversionHandlerImpl implements ConversionHandler
                         }
                     };
                 }
-
-                converterCacheMap.put(key, converter == null ? cacheMiss : converter);
             }
         }
-        return converter == cacheMiss ? null : converter;
+        return converter;
     }
 
     /**
@@ -859,6 +895,8 @@ public class ConversionHandlerImpl implements ConversionHandler
                 converterCacheMap.put(key, converter);
             }
         }
+        /* previously resolved conversions may now resolve to the added converter */
+        converters = null;
     }
 
 
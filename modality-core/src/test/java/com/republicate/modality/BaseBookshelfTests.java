@@ -36,6 +36,7 @@ import java.sql.Connection;
 import java.sql.Statement;
 import java.util.Arrays;
 import java.util.Hashtable;
+import java.util.Properties;
 import java.util.stream.Collectors;
 import javax.naming.InitialContext;
 import javax.naming.NamingException;
@@ -116,6 +117,47 @@ public class BaseBookshelfTests implements Colorizer
     }
 
 
+    /*
+     * Models setup
+     */
+
+    /**
+     * Returns a model on the test data source, reversing the columns of declared entities,
+     * for tests to tune before calling <code>initialize(getResourceReader("test_action.xml"))</code>.
+     */
+    protected static Model createModel(Model model) throws Exception
+    {
+        model.setDataSource(getDataSource());
+        model.setReverseMode(Model.ReverseMode.COLUMNS);
+        return model;
+    }
+
+    protected static Model createModel() throws Exception
+    {
+        return createModel(new Model());
+    }
+
+    /**
+     * Returns an initialized model with the actions, streamed rowsets and cached scalars of <code>test_action.xml</code>.
+     */
+    protected static Model createActionModel() throws Exception
+    {
+        return createModel().initialize(getResourceReader("test_action.xml"));
+    }
+
+    /**
+     * Returns the configuration properties of a fully reversed model with lowercase identifiers.
+     */
+    protected static Properties getModelProperties() throws Exception
+    {
+        Properties props = new Properties();
+        props.put("model.datasource", getDataSource());
+        props.put("model.reverse", "full");
+        props.put("model.identifiers.mapping.*", "lowercase");
+        props.put("model.identifiers.mapping.*.*", "lowercase");
+        return props;
+    }
+
     protected static URL getResource(String name)
     {
         return BasicModelToolTests.class.getClassLoader().getResource(name);
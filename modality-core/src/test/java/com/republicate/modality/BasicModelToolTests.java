@@ -437,6 +437,46 @@ public class BasicModelToolTests extends BaseBookshelfTests
         }
     }
 
+    public @Test void testMixedParamsMapping() throws Exception
+    {
+        DataSource dataSource = getDataSource();
+        Model model = new Model();
+        model.setDataSource(dataSource);
+        model.setReverseMode(Model.ReverseMode.FULL);
+        model.initialize(getResourceReader("test_mixed_params.xml"));
+        Instance book = model.getEntity("book").fetch(1);
+        // repeated parameters are bound from their first occurrence, in order: start, title, end
+        RowsetAttribute similar = (RowsetAttribute)model.getEntity("book").getAttribute("find_similar_books_2");
+        assertEquals(book, similar.query("2018-01-01", "Life", "2018-12-01").next());
+        assertFalse(similar.query("2018-01-01", "Death", "2018-12-01").hasNext());
+        assertFalse(similar.query("2018-12-01", "Life", "2018-01-01").hasNext());
+
+        // named parameters, from a map
+        Map<String, Serializable> params = new HashMap<>();
+        params.put("start", "2018-01-01");
+        params.put("title", "Life");
+        params.put("end", "2018-12-01");
+        assertEquals(book, similar.query(params).next());
+
+        // missing named parameters consume additional parameters in order
+        params.remove("start");
+        params.remove("end");
+        assertEquals(book, similar.query(params, "2018-01-01", "2018-12-01").next());
+        assertFalse(similar.query(params, "2018-12-01", "2018-01-01").hasNext());
+        try
+        {
+            similar.query(params, "2018-01-01");
+            fail("expecting too few parameters");
+        }
+        catch (SQLException sqle) {}
+        try
+        {
+            similar.query(params, "2018-01-01", "2018-12-01", "2018-12-31");
+            fail("expecting too many parameters");
+        }
+        catch (SQLException sqle) {}
+    }
+
     public @Test void testModelInit() throws Exception
     {
         // test model
@@ -0,0 +1,258 @@
+package com.republicate.modality;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import com.republicate.modality.impl.PostgresqlCopyManager;
+import com.republicate.modality.sql.DriverInfos;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Serializable;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * <p>Batches, bulk fetch and COPY tests</p>
+ *
+ * Note: db state is not resetted between tests ; so each test MUST leave a clean state when succesful.
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class BulkOperationsTests extends BaseBookshelfTests
+{
+    @BeforeClass
+    public static void populateDataSource() throws Exception
+    {
+        BaseBookshelfTests.populateDataSource("bookshelf.sql");
+    }
+
+    public @Test void testBatches() throws Exception
+    {
+        Model model = createActionModel();
+        Entity book = model.getEntity("book");
+        try
+        {
+            List<Instance> books = new ArrayList<>();
+            for (int i = 0; i < 5; ++i)
+            {
+                Instance newBook = book.newInstance();
+                newBook.put("title", "Volume " + i);
+                newBook.put("publisher_id", 1);
+                books.add(newBook);
+            }
+            assertEquals(5L, book.flush(books));
+            assertEquals(6L, book.getCount());
+            for (Instance newBook : books)
+            {
+                assertFalse(newBook.isDirty());
+                assertNotNull(newBook.get("book_id"));
+                newBook.put("title", newBook.getString("title").toUpperCase());
+            }
+            assertEquals(5L, book.updateBatch(books, 2));
+            assertEquals("VOLUME 3", book.fetch(books.get(3).get("book_id")).getString("title"));
+            assertEquals(5L, book.deleteBatch(books));
+            assertEquals(1L, book.getCount());
+        }
+        finally
+        {
+            model.perform("cleanup_books");
+        }
+    }
+
+    public @Test void testCopy() throws Exception
+    {
+        Model model = createActionModel();
+        Entity book = model.getEntity("book");
+        List<Map> rows = new ArrayList<>();
+        for (int id = 1; id <= 2; ++id)
+        {
+            Map<String, Object> row = new HashMap<>();
+            row.put("book_id", 100 + id);
+            row.put("title", id == 1 ? "Copied, once" : "Copied \"twice\"");
+            row.put("publisher_id", 1);
+            rows.add(row);
+        }
+        try
+        {
+            // no COPY support on hsqldb, rows are inserted and exported with plain JDBC
+            assertEquals(2L, book.copyIn(rows.iterator()));
+            assertEquals(3L, book.getCount());
+            StringWriter exported = new StringWriter();
+            assertEquals(3L, book.copyOut(exported));
+            assertTrue(exported.toString().contains("101,\"Copied, once\","));
+            assertTrue(exported.toString().contains("102,\"Copied \"\"twice\"\"\","));
+
+            // stand-in copy handler
+            StringBuilder copied = new StringBuilder();
+            model.getPostgresqlCopyManager().setCopyHandler(new PostgresqlCopyManager.CopyHandler()
+            {
+                @Override
+                public long copyIn(Connection connection, String sql, Reader reader) throws IOException
+                {
+                    copied.append(sql).append('\n');
+                    long lines = 0;
+                    int c;
+                    while ((c = reader.read()) != -1)
+                    {
+                        copied.append((char)c);
+                        if (c == '\n')
+                        {
+                            ++lines;
+                        }
+                    }
+                    return lines;
+                }
+
+                @Override
+                public long copyOut(Connection connection, String sql, Writer writer) throws IOException
+                {
+                    writer.write(sql);
+                    return 0;
+                }
+            });
+            assertEquals(2L, book.copyIn(rows.iterator()));
+            assertTrue(copied.toString().startsWith("COPY "));
+            assertTrue(copied.toString().endsWith(") FROM STDIN WITH (FORMAT csv)\n101,\"Copied, once\",1\n102,\"Copied \"\"twice\"\"\",1\n"));
+            exported = new StringWriter();
+            book.copyOut(exported);
+            assertTrue(exported.toString().startsWith("COPY (SELECT * FROM "));
+            assertTrue(exported.toString().endsWith(") TO STDOUT WITH (FORMAT csv)"));
+
+            // a failed rollback doesn't mask the copy failure
+            model.getPostgresqlCopyManager().setCopyHandler(new PostgresqlCopyManager.CopyHandler()
+            {
+                @Override
+                public long copyIn(Connection connection, String sql, Reader reader) throws SQLException
+                {
+                    connection.close();
+                    throw new SQLException("copy failed");
+                }
+
+                @Override
+                public long copyOut(Connection connection, String sql, Writer writer) throws SQLException
+                {
+                    throw new SQLException("copy failed");
+                }
+            });
+            try
+            {
+                book.copyIn(rows.iterator());
+                fail("expecting a copy failure");
+            }
+            catch (SQLException sqle)
+            {
+                assertEquals("copy failed", sqle.getMessage());
+                assertEquals(1, sqle.getSuppressed().length);
+            }
+        }
+        finally
+        {
+            model.getPostgresqlCopyManager().setCopyHandler(null);
+            model.perform("cleanup_books");
+        }
+    }
+
+    public @Test void testFetchAll() throws Exception
+    {
+        Model model = createModel();
+        model.setFetchChunkSize(4);
+        model.initialize(getResourceReader("test_action.xml"));
+        Entity book = model.getEntity("book");
+        try
+        {
+            List<Serializable> keys = new ArrayList<>();
+            List<Integer> intKeys = new ArrayList<>();
+            for (int i = 0; i < 5; ++i)
+            {
+                Instance newBook = book.newInstance();
+                newBook.put("title", "Volume " + i);
+                newBook.put("publisher_id", 1);
+                newBook.insert();
+                keys.add(String.valueOf(newBook.get("book_id")));
+                intKeys.add(newBook.getInteger("book_id"));
+            }
+            keys.add(1);
+            keys.add(999);
+            intKeys.add(999);
+            // padded IN lists, then arrays of keys sharing the same class
+            for (DriverInfos.ArrayKeysPolicy policy : new DriverInfos.ArrayKeysPolicy[] { DriverInfos.ArrayKeysPolicy.NONE, DriverInfos.ArrayKeysPolicy.UNNEST })
+            {
+                model.getDriverInfos().setArrayKeysPolicy(policy);
+                Map<Serializable, Instance> books = book.fetchAll(keys);
+                assertEquals(6, books.size());
+                assertFalse(books.containsKey(999));
+                assertEquals("Volume 3", books.get(keys.get(3)).getString("title"));
+                assertEquals("The Astonishing Life of Duncan Moonwalker", books.get(1).getString("title"));
+
+                Map<Integer, Instance> volumes = book.fetchAll(intKeys);
+                assertEquals(5, volumes.size());
+                assertFalse(volumes.containsKey(999));
+                assertEquals("Volume 4", volumes.get(intKeys.get(4)).getString("title"));
+            }
+        }
+        finally
+        {
+            model.perform("cleanup_books");
+        }
+    }
+
+    public @Test void testUpsertBatch() throws Exception
+    {
+        Model model = createActionModel();
+        Entity book = model.getEntity("book");
+        assertTrue(book.hasNativeUpsert());
+        String title = book.fetch(1).getString("title");
+        try
+        {
+            List<Map> rows = new ArrayList<>();
+            for (int id = 1; id <= 3; ++id)
+            {
+                Map<String, Object> row = new HashMap<>();
+                row.put("book_id", 100 + id);
+                row.put("title", "Upserted " + id);
+                row.put("publisher_id", 1);
+                rows.add(row);
+            }
+            rows.get(0).put("book_id", 1);
+            assertEquals(3L, book.upsertBatch(rows, 2));
+            assertEquals(3L, book.getCount());
+            assertEquals("Upserted 1", book.fetch(1).getString("title"));
+            assertEquals("Upserted 3", book.fetch(103).getString("title"));
+        }
+        finally
+        {
+            model.perform("cleanup_books");
+            Instance first = book.fetch(1);
+            first.put("title", title);
+            first.update();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.republicate.modality;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import com.republicate.modality.impl.IdentityCache;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.Spliterator;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * <p>Results and fetch caches tests</p>
+ *
+ * Note: db state is not resetted between tests ; so each test MUST leave a clean state when succesful.
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class CachesTests extends BaseBookshelfTests
+{
+    @BeforeClass
+    public static void populateDataSource() throws Exception
+    {
+        BaseBookshelfTests.populateDataSource("bookshelf.sql");
+    }
+
+    public @Test void testFetchCache() throws Exception
+    {
+        Model model = createModel();
+        model.initialize(getResourceReader("test_fetch_cache.xml"));
+        Entity book = model.getEntity("book");
+        IdentityCache cache = book.getFetchCache();
+        assertNotNull(cache);
+        Instance first = book.fetch(1);
+        Instance second = book.fetch(1);
+        assertNotSame(first, second);
+        String title = "The Astonishing Life of Duncan Moonwalker";
+        assertEquals(title, second.getString("title"));
+        long[] stats = cache.getStats();
+        assertEquals(1L, stats[0]); // hits
+        assertEquals(1L, stats[1]); // misses
+
+        // modifying a copy doesn't affect the cache, updating it does
+        first.put("title", "Another title");
+        assertEquals(title, book.fetch(1).getString("title"));
+        first.update();
+        assertEquals("Another title", book.fetch(1).getString("title"));
+        first.put("title", title);
+        first.update();
+        assertEquals(title, book.fetch(1).getString("title"));
+    }
+
+    public @Test void testResultCache() throws Exception
+    {
+        Model model = createModel();
+        model.getCache().setSize(10);
+        model.initialize(getResourceReader("test_action.xml"));
+        Entity book = model.getEntity("book");
+        String title = "The Astonishing Life of Duncan Moonwalker";
+        assertEquals(title, book.evaluate("cached_title", 1));
+        assertEquals(title, book.evaluate("cached_title", 1));
+        long[] stats = model.getResultCache().getStats();
+        assertEquals(1L, stats[0]); // hits
+        assertEquals(1L, stats[1]); // misses
+
+        // writes invalidate dependent results
+        Instance oneBook = book.fetch(1);
+        oneBook.perform("censor");
+        assertEquals("** censored **", book.evaluate("cached_title", 1));
+        oneBook.perform("rename", title);
+        assertEquals(title, book.evaluate("cached_title", 1));
+
+        // results of queries on unknown tables, like views, depend on every write
+        try (Connection connection = getDataSource().getConnection(); Statement statement = connection.createStatement())
+        {
+            statement.executeUpdate("create view book_titles as select book_id, title from book");
+        }
+        try
+        {
+            assertEquals(title, book.evaluate("cached_view_title", 1));
+            oneBook.perform("censor");
+            assertEquals("** censored **", book.evaluate("cached_view_title", 1));
+        }
+        finally
+        {
+            oneBook.perform("rename", title);
+            try (Connection connection = getDataSource().getConnection(); Statement statement = connection.createStatement())
+            {
+                statement.executeUpdate("drop view book_titles");
+            }
+        }
+    }
+
+    public @Test void testCachedRowset() throws Exception
+    {
+        Model model = createModel();
+        model.setReverseMode(Model.ReverseMode.TABLES);
+        model.getCache().setSize(10);
+        model.initialize(new StringReader(
+            "<model write=\"java\" identifiers.mapping=\"lowercase\">" +
+            "<rowset name=\"cached_books\" result=\"book\" cached=\"true\">select * from book</rowset>" +
+            "</model>"));
+        RowsetAttribute books = (RowsetAttribute)model.getAttribute("cached_books");
+        try (Stream<Instance> first = books.stream())
+        {
+            assertEquals(1L, first.count());
+        }
+        // cached rows are streamed from a sized list of copies
+        try (Stream<Instance> second = books.stream())
+        {
+            Spliterator<Instance> spliterator = second.spliterator();
+            assertTrue(spliterator.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED));
+            assertEquals(1L, spliterator.getExactSizeIfKnown());
+        }
+        Instance book = books.query().next();
+        book.put("title", "Modified title");
+        assertEquals("The Astonishing Life of Duncan Moonwalker", books.query().next().getString("title"));
+        long[] stats = model.getResultCache().getStats();
+        assertEquals(3L, stats[0]); // hits
+        assertEquals(1L, stats[1]); // misses
+    }
+}
@@ -0,0 +1,284 @@
+package com.republicate.modality;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import com.republicate.modality.sql.ConnectionPool;
+import com.republicate.modality.sql.StatementPool;
+import org.apache.commons.dbcp2.BasicDataSource;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * <p>Connection pools, replicas and statements pools tests</p>
+ *
+ * Note: db state is not resetted between tests ; so each test MUST leave a clean state when succesful.
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class ConnectionPoolsTests extends BaseBookshelfTests
+{
+    @BeforeClass
+    public static void populateDataSource() throws Exception
+    {
+        BaseBookshelfTests.populateDataSource("bookshelf.sql");
+    }
+
+    public @Test void testBoundedConnectionPool() throws Exception
+    {
+        Properties props = getModelProperties();
+        props.put("model.connections.pool", "bounded");
+        props.put("model.connections.max_connections", "2");
+        props.put("model.connections.acquire_timeout", "200");
+        Model model = new Model().configure(props).initialize();
+
+        // two pending iterators hold both connections
+        Iterator<Instance> first = model.getEntity("author").iterate();
+        assertTrue(first.hasNext());
+        Iterator<Instance> second = model.getEntity("author").iterate();
+        assertTrue(second.hasNext());
+        try
+        {
+            model.getEntity("book").fetch(1);
+            fail("expecting a connection pool timeout");
+        }
+        catch (SQLException sqle) {}
+
+        // draining an iterator gives its connection back
+        while (first.hasNext())
+        {
+            first.next();
+        }
+        assertNotNull(model.getEntity("book").fetch(1));
+        while (second.hasNext())
+        {
+            second.next();
+        }
+    }
+
+    /**
+     * Gives access to the model pools.
+     */
+    public static class PoolsModel extends Model
+    {
+        public ConnectionPool connections()
+        {
+            return getConnectionPool();
+        }
+
+        public StatementPool statements()
+        {
+            return getStatementPool();
+        }
+    }
+
+    public @Test void testConcurrentStatements() throws Exception
+    {
+        // shared statements, then statements leased with their connection
+        for (String pool : Arrays.asList("shared", "bounded"))
+        {
+            Properties props = getModelProperties();
+            props.put("model.connections.pool", pool);
+            props.put("model.connections.max_connections", "4");
+            props.put("model.connections.acquire_timeout", "10000");
+            PoolsModel model = new PoolsModel();
+            model.configure(props).initialize();
+
+            // only the publisher table is read, since other tests write to books and authors
+            Entity publisher = model.getEntity("publisher");
+            int threads = 8, iterations = 200;
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try
+            {
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<?>> results = new ArrayList<>();
+                for (int i = 0; i < threads; ++i)
+                {
+                    results.add(executor.submit(() ->
+                    {
+                        start.await();
+                        for (int j = 0; j < iterations; ++j)
+                        {
+                            assertEquals("Green Penguin Books", publisher.fetch(1).getString("name"));
+                            assertTrue(publisher.getCount() >= 1L);
+                        }
+                        return null;
+                    }));
+                }
+                start.countDown();
+                for (Future<?> result : results)
+                {
+                    result.get(60, TimeUnit.SECONDS);
+                }
+            }
+            finally
+            {
+                executor.shutdown();
+            }
+
+            // all statements are given back and mostly reused
+            long[] cacheStats = model.statements().getCacheStats();
+            int[] usageStats = model.statements().getUsageStats();
+            int connections = model.connections().getUsageStats()[2];
+            assertEquals(pool, 0, usageStats[0]);
+            assertEquals(pool, 2L * threads * iterations, cacheStats[0] + cacheStats[1]);
+            assertTrue(pool, cacheStats[0] > cacheStats[1]);
+            if (pool.equals("bounded"))
+            {
+                // leased statements are prepared at most once per query and connection
+                assertTrue(pool, connections <= 4);
+                assertTrue(pool, cacheStats[1] <= 2L * connections);
+            }
+        }
+    }
+
+    public @Test void testReplicas() throws Exception
+    {
+        // a replica lagging behind the primary database
+        try (Connection connection = DriverManager.getConnection("jdbc:hsqldb:mem:replica", "sa", "");
+             Statement statement = connection.createStatement())
+        {
+            statement.executeUpdate("drop table book if exists");
+            statement.executeUpdate("create table book (book_id int not null, title varchar(200) not null, published date default current_date not null, publisher_id int not null, primary key (book_id))");
+            statement.executeUpdate("insert into book values (1, 'Stale Title', '2018-05-09', 1)");
+        }
+        Model model = createModel();
+        model.getReplicas().setDataSources("jdbc:hsqldb:mem:replica");
+        model.getReplicas().setReadYourWrites(60000);
+        model.initialize(getResourceReader("test_action.xml"));
+        Entity book = model.getEntity("book");
+        String title = "The Astonishing Life of Duncan Moonwalker";
+        assertEquals("Stale Title", book.fetch(1).getString("title"));
+        // transactions use the primary database
+        model.attempt(() -> assertEquals(title, book.fetch(1).getString("title")));
+        // and so do the following reads of the same thread
+        assertEquals(title, book.fetch(1).getString("title"));
+        // but not the reads of other threads
+        assertEquals("Stale Title", book.fetchAsync(1).join().getString("title"));
+    }
+
+    public @Test void testStatementsCache() throws Exception
+    {
+        Properties props = getModelProperties();
+        props.put("model.connections.statements_per_connection", "1");
+        Model model = new Model().configure(props).initialize();
+
+        // alternate queries so that statements keep being evicted
+        // (only the publisher table is read, since other tests write to books and authors)
+        Entity publisher = model.getEntity("publisher");
+        for (int i = 0; i < 5; ++i)
+        {
+            assertEquals("Green Penguin Books", publisher.fetch(1).getString("name"));
+            assertTrue(publisher.getCount() >= 1L);
+        }
+    }
+
+    public @Test void testUnifiedConnectionPool() throws Exception
+    {
+        Properties props = getModelProperties();
+        props.put("model.connections.pool", "unified");
+        props.put("model.connections.max_connections", "1");
+        props.put("model.connections.acquire_timeout", "200");
+        Model model = new Model().configure(props).initialize();
+
+        // transactions and queries share the single connection
+        // (only the publisher table is read, since other tests write to books and authors)
+        Entity publisher = model.getEntity("publisher");
+        model.attempt(() -> assertEquals("Green Penguin Books", publisher.fetch(1).getString("name")));
+        assertEquals("Green Penguin Books", publisher.fetch(1).getString("name"));
+
+        // a pending iterator holds it
+        Iterator<Instance> pending = model.getEntity("publisher").iterate();
+        assertTrue(pending.hasNext());
+        try
+        {
+            model.attempt(() -> publisher.fetch(1));
+            fail("expecting a connection pool timeout");
+        }
+        catch (SQLException sqle) {}
+        while (pending.hasNext())
+        {
+            pending.next();
+        }
+        model.attempt(() -> assertEquals("Green Penguin Books", publisher.fetch(1).getString("name")));
+    }
+
+    public @Test void testVirtualThreads() throws Exception
+    {
+        // the shared pools may open up to twice 50 connections
+        BasicDataSource dataSource = (BasicDataSource)getDataSource();
+        dataSource.setMaxTotal(-1);
+        Properties props = getModelProperties();
+        props.put("model.datasource", dataSource);
+        Model model = new Model().configure(props).initialize();
+        ExecutorService executor;
+        try
+        {
+            executor = (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch (NoSuchMethodException nsme)
+        {
+            // no virtual threads before Java 21, use a large pool instead
+            executor = Executors.newFixedThreadPool(256);
+        }
+        try
+        {
+            Entity publisher = model.getEntity("publisher");
+            int requests = 10000;
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < requests; ++i)
+            {
+                results.add(executor.submit(() ->
+                {
+                    start.await();
+                    assertNull(StatementPool.getCurrentTransactionConnection(model.getModelId()));
+                    return publisher.fetch(1).getString("name");
+                }));
+            }
+            start.countDown();
+            for (Future<String> result : results)
+            {
+                assertEquals("Green Penguin Books", result.get(60, TimeUnit.SECONDS));
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+}
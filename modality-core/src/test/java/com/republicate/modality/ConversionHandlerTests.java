@@ -0,0 +1,147 @@
+package com.republicate.modality;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import com.republicate.json.Json;
+import com.republicate.modality.util.ConversionHandlerImpl;
+import com.republicate.modality.util.Converter;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+
+import static org.junit.Assert.*;
+
+/**
+ * <p>Conversion handler tests</p>
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class ConversionHandlerTests
+{
+    public enum Color { RED, GREEN }
+
+    /**
+     * Gives access to the uncached pair-keyed converters resolution.
+     */
+    public static class ReferenceHandler extends ConversionHandlerImpl
+    {
+        public Converter lookup(Class formal, Class actual)
+        {
+            return lookupConverter(formal, actual);
+        }
+    }
+
+    /* primitive and boxed types, superclasses, subclasses and interfaces */
+    static final Class[] classes = {
+        Boolean.TYPE, Byte.TYPE, Short.TYPE, Character.TYPE, Integer.TYPE, Long.TYPE, Float.TYPE, Double.TYPE,
+        Boolean.class, Byte.class, Short.class, Character.class, Integer.class, Long.class, Float.class, Double.class,
+        Number.class, BigInteger.class, BigDecimal.class, String.class, CharSequence.class, Object.class, Serializable.class,
+        java.util.Date.class, java.sql.Date.class, java.sql.Time.class, java.sql.Timestamp.class,
+        Calendar.class, GregorianCalendar.class, Json.class, Json.Object.class, Color.class
+    };
+
+    public @Test void testCachedLookups() throws Exception
+    {
+        ReferenceHandler handler = new ReferenceHandler();
+        for (int pass = 0; pass < 2; ++pass)
+        {
+            for (Class formal : classes)
+            {
+                for (Class actual : classes)
+                {
+                    Converter expected = handler.lookup(formal, actual);
+                    Converter converter = handler.getNeededConverter(formal, actual);
+                    String pair = formal.getName() + " <- " + actual.getName();
+                    if (formal.isEnum() && actual == String.class)
+                    {
+                        // enum converters are built on each lookup
+                        assertNotNull(pair, converter);
+                        assertSame(pair, converter, handler.getNeededConverter(formal, actual));
+                    }
+                    else
+                    {
+                        assertSame(pair, expected, converter);
+                    }
+                }
+            }
+        }
+    }
+
+    public @Test void testConversions() throws Exception
+    {
+        ConversionHandlerImpl handler = new ConversionHandlerImpl();
+
+        // primitive <-> boxed
+        assertEquals(42, handler.getNeededConverter(Integer.TYPE, String.class).convert("42"));
+        assertEquals(42, handler.getNeededConverter(Integer.class, Long.TYPE).convert(42L));
+        assertEquals(42L, handler.getNeededConverter(Long.class, Integer.TYPE).convert(42));
+        assertEquals(true, handler.getNeededConverter(Boolean.TYPE, Integer.TYPE).convert(1));
+        assertEquals(false, handler.getNeededConverter(Boolean.class, Character.TYPE).convert('\0'));
+        try
+        {
+            handler.getNeededConverter(Byte.TYPE, Integer.class).convert(300);
+            fail("expecting an out of range value");
+        }
+        catch (NumberFormatException nfe) {}
+
+        // superclasses: numbers of any kind narrow towards integer, everything converts to string
+        assertEquals(3, handler.getNeededConverter(Integer.class, Number.class).convert(new BigDecimal("3.5")));
+        assertEquals("3.5", handler.getNeededConverter(String.class, BigDecimal.class).convert(new BigDecimal("3.5")));
+        assertEquals("2018-05-09", handler.getNeededConverter(String.class, java.sql.Date.class).convert(java.sql.Date.valueOf("2018-05-09")));
+
+        // pairs are matched exactly, without falling back to superclasses or interfaces of the actual class
+        assertNull(handler.getNeededConverter(Integer.class, BigDecimal.class));
+        assertNull(handler.getNeededConverter(java.sql.Timestamp.class, GregorianCalendar.class));
+        assertNull(handler.getNeededConverter(Json.class, CharSequence.class));
+
+        // string to enum constants
+        assertEquals(Color.GREEN, handler.getNeededConverter(Color.class, String.class).convert("GREEN"));
+    }
+
+    public @Test void testAddedConverters() throws Exception
+    {
+        ConversionHandlerImpl handler = new ConversionHandlerImpl();
+        assertNull(handler.getNeededConverter(Integer.TYPE, BigDecimal.class));
+        Converter<Integer> rounding = new Converter<Integer>()
+        {
+            @Override
+            public Integer convert(Serializable o)
+            {
+                return ((BigDecimal)o).setScale(0, RoundingMode.HALF_UP).intValue();
+            }
+        };
+        handler.addConverter(Integer.TYPE, BigDecimal.class, rounding);
+
+        // previous cache misses are forgotten, and the converter is registered for the boxed class as well
+        assertSame(rounding, handler.getNeededConverter(Integer.TYPE, BigDecimal.class));
+        assertSame(rounding, handler.getNeededConverter(Integer.class, BigDecimal.class));
+        assertEquals(4, handler.getNeededConverter(Integer.class, BigDecimal.class).convert(new BigDecimal("3.5")));
+
+        // standard conversions take precedence over added ones
+        handler.addConverter(Integer.class, Long.class, rounding);
+        assertNotSame(rounding, handler.getNeededConverter(Integer.class, Long.class));
+    }
+}
@@ -0,0 +1,172 @@
+package com.republicate.modality;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import com.republicate.modality.impl.BaseAttribute;
+import com.republicate.modality.impl.SlowQueryLog;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import static org.junit.Assert.*;
+
+/**
+ * <p>Metrics and slow queries tests</p>
+ *
+ * Note: db state is not resetted between tests ; so each test MUST leave a clean state when succesful.
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class MonitoringTests extends BaseBookshelfTests
+{
+    @BeforeClass
+    public static void populateDataSource() throws Exception
+    {
+        BaseBookshelfTests.populateDataSource("bookshelf.sql");
+    }
+
+    public @Test void testMetrics() throws Exception
+    {
+        Model model = createModel(new Model("metrics"));
+        model.setMetrics("jmx");
+        model.initialize(getResourceReader("test_action.xml"));
+        try
+        {
+            ScalarAttribute title = (ScalarAttribute)model.getEntity("book").getAttribute("cached_title");
+            assertEquals("The Astonishing Life of Duncan Moonwalker", title.evaluate(1));
+            assertEquals("The Astonishing Life of Duncan Moonwalker", title.evaluate(1));
+            long count = 0;
+            Iterator<Instance> books = model.query("streamed_books");
+            while (books.hasNext())
+            {
+                books.next();
+                ++count;
+            }
+            model.attempt(() -> title.evaluate(1));
+            assertEquals(1, model.getEntity("book").fetchAll(Arrays.asList(1, 999)).size());
+
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName titleName = new ObjectName("com.republicate.modality:type=Attribute,model=metrics,entity=book,name=cached_title");
+            assertEquals(3L, server.getAttribute(titleName, "Executions"));
+            assertEquals(0L, server.getAttribute(titleName, "Failures"));
+            ObjectName booksName = new ObjectName("com.republicate.modality:type=Attribute,model=metrics,name=streamed_books");
+            assertEquals(1L, server.getAttribute(booksName, "Iterations"));
+            assertEquals(count, server.getAttribute(booksName, "RowsFetched"));
+            // generated attributes get reserved names and per-entity metrics
+            ObjectName fetchAllName = new ObjectName("com.republicate.modality:type=Attribute,model=metrics,entity=book,name=$fetchAll");
+            assertEquals(1L, server.getAttribute(fetchAllName, "Executions"));
+            assertEquals(1L, server.getAttribute(fetchAllName, "RowsFetched"));
+            ObjectName modelName = new ObjectName("com.republicate.modality:type=Model,model=metrics");
+            assertEquals(1L, server.getAttribute(modelName, "Commits"));
+            assertTrue((Long)server.getAttribute(modelName, "ConnectionWaits") > 0);
+            assertTrue((Integer)server.getAttribute(modelName, "Connections") > 0);
+            assertTrue((Long)server.getAttribute(modelName, "StatementCacheHits") > 0);
+        }
+        finally
+        {
+            model.getMetrics().unregister();
+        }
+    }
+
+    public @Test void testSlowQueries() throws Exception
+    {
+        Model model = createModel();
+        model.getSlowQueries().setThreshold(0);
+        model.initialize(getResourceReader("test_action.xml"));
+        assertEquals("The Astonishing Life of Duncan Moonwalker", model.getEntity("book").evaluate("cached_title", 1));
+        long count = 0;
+        Iterator<Instance> books = model.query("streamed_books");
+        while (books.hasNext())
+        {
+            books.next();
+            ++count;
+        }
+        assertEquals("The Astonishing Life of Duncan Moonwalker", model.getEntity("book").fetch(1).getString("title"));
+        List<SlowQueryLog.SlowQuery> slowest = model.getSlowestQueries();
+        Map<String, SlowQueryLog.SlowQuery> byAttribute = slowest.stream().collect(Collectors.toMap(SlowQueryLog.SlowQuery::getAttribute, q -> q));
+        // cached_title has its own disabling threshold
+        assertFalse(byAttribute.containsKey("book.cached_title"));
+        SlowQueryLog.SlowQuery streamed = byAttribute.get("streamed_books");
+        assertNotNull(streamed);
+        assertEquals(count, streamed.getRows());
+        assertTrue(streamed.getTotalNanos() >= streamed.getFetchNanos());
+        assertEquals("1", String.valueOf(byAttribute.get("book.retrieve").getParameters().get(0)));
+        for (int i = 1; i < slowest.size(); ++i)
+        {
+            assertTrue(slowest.get(i - 1).getTotalNanos() >= slowest.get(i).getTotalNanos());
+        }
+    }
+
+    public @Test void testSlowQueriesTimings() throws Exception
+    {
+        Model model = createModel();
+        model.getSlowQueries().setThreshold(0);
+        model.initialize(getResourceReader("test_action.xml"));
+        model.getEntity("book").perform("good_transaction", 1);
+        List<Map<String, Serializable>> rows = Arrays.asList(Collections.singletonMap("title", "First"), Collections.singletonMap("title", "Second"));
+        assertEquals(2L, model.getAction("new_book").performBatch(rows, 10, null));
+        model.perform("cleanup_books");
+        Map<String, SlowQueryLog.SlowQuery> byAttribute = model.getSlowestQueries().stream().collect(Collectors.toMap(SlowQueryLog.SlowQuery::getAttribute, q -> q));
+        // transactions and batches report their preparation and execution times
+        for (String attribute : Arrays.asList("book.good_transaction", "new_book"))
+        {
+            SlowQueryLog.SlowQuery slowQuery = byAttribute.get(attribute);
+            assertNotNull(attribute, slowQuery);
+            assertTrue(attribute, slowQuery.getPrepareNanos() > 0);
+            assertTrue(attribute, slowQuery.getExecuteNanos() > 0);
+        }
+    }
+
+    public @Test void testSlowQueriesWindow() throws Exception
+    {
+        Model model = createModel();
+        model.initialize(getResourceReader("test_action.xml"));
+        BaseAttribute first = model.getAction("new_book");
+        BaseAttribute second = model.getAction("cleanup_books");
+        BaseAttribute third = model.getAttribute("streamed_books");
+
+        SlowQueryLog log = new SlowQueryLog(0, 2, 100);
+        log.record(first, "first", null, 0, 0, 1000, 0);
+        log.record(first, "first", null, 0, 0, 10, 0);
+        // the slowest execution is kept while within the window
+        assertEquals(1000L, log.getSlowestQueries().get(0).getTotalNanos());
+        Thread.sleep(150);
+        log.record(first, "first", null, 0, 0, 10, 0);
+        // and is replaced by the next execution once expired
+        assertEquals(10L, log.getSlowestQueries().get(0).getTotalNanos());
+
+        // only the top slowest attributes are kept
+        log.record(second, "second", null, 0, 0, 500, 0);
+        log.record(third, "third", null, 0, 0, 100, 0);
+        List<SlowQueryLog.SlowQuery> slowest = log.getSlowestQueries();
+        assertEquals(Arrays.asList("second", "third"), slowest.stream().map(SlowQueryLog.SlowQuery::getQuery).collect(Collectors.toList()));
+    }
+}
@@ -0,0 +1,170 @@
+package com.republicate.modality;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import java.io.Serializable;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Stream;
+import javax.sql.DataSource;
+
+import static org.junit.Assert.*;
+
+/**
+ * <p>Streaming, rows, prefetch and asynchronous queries tests</p>
+ *
+ * Note: db state is not resetted between tests ; so each test MUST leave a clean state when succesful.
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class StreamingTests extends BaseBookshelfTests
+{
+    @BeforeClass
+    public static void populateDataSource() throws Exception
+    {
+        BaseBookshelfTests.populateDataSource("bookshelf.sql");
+    }
+
+    public @Test void testAsync() throws Exception
+    {
+        Model model = createActionModel();
+        Entity bookEntity = model.getEntity("book");
+        CompletableFuture<Serializable> title = bookEntity.evaluateAsync("cached_title", 1);
+        CompletableFuture<List<Instance>> books = model.queryAsync("streamed_books");
+        CompletableFuture<Instance> book = bookEntity.fetchAsync(1);
+        assertEquals("The Astonishing Life of Duncan Moonwalker", title.join());
+        assertEquals(1, books.join().size());
+        assertEquals("The Astonishing Life of Duncan Moonwalker", book.join().getString("title"));
+        try
+        {
+            model.evaluateAsync("no_such_attribute").join();
+            fail("should have failed");
+        }
+        catch (CompletionException ce)
+        {
+            assertTrue(ce.getCause() instanceof SQLException);
+        }
+    }
+
+    public @Test void testPrefetch() throws Exception
+    {
+        DataSource dataSource = getDataSource();
+        Model model = new Model();
+        model.setDataSource(dataSource);
+        model.setReverseMode(Model.ReverseMode.JOINS);
+        model.getIdentifiersFilters().setInflector("org.atteo.evo.inflector.English");
+        model.getIdentifiersFilters().addMappings("lowercase");
+        model.initialize(getResourceReader("test_minimal_model.xml"));
+        Entity bookEntity = model.getEntity("book");
+        Instance sibling = bookEntity.newInstance();
+        sibling.put("title", "Sibling Book");
+        sibling.put("publisher_id", 1);
+        sibling.insert();
+        try
+        {
+            Iterator<Instance> books = bookEntity.iterate("publisher");
+            assertTrue(books.hasNext());
+            Instance book = books.next();
+            Instance publisher = book.retrieve("publisher");
+            assertNotNull(publisher);
+            assertEquals("Green Penguin Books", publisher.getString("name"));
+            // prefetched targets are attached to the instance
+            assertSame(publisher, book.retrieve("publisher"));
+            // each instance has its own copy of a shared target
+            assertTrue(books.hasNext());
+            Instance other = books.next();
+            publisher.put("name", "Modified Name");
+            assertEquals("Green Penguin Books", other.retrieve("publisher").getString("name"));
+            assertFalse(books.hasNext());
+            // changing a column drops prefetched targets
+            book.put("publisher_id", book.get("publisher_id"));
+            assertNotSame(publisher, book.retrieve("publisher"));
+        }
+        finally
+        {
+            sibling.delete();
+        }
+    }
+
+    public @Test void testRows() throws Exception
+    {
+        Model model = createActionModel();
+        RowsetAttribute books = (RowsetAttribute)model.getAttribute("streamed_books");
+        Iterator<CompactRow> rows = books.queryRows();
+        assertTrue(rows.hasNext());
+        CompactRow row = rows.next();
+        assertEquals("The Astonishing Life of Duncan Moonwalker", row.getString("title"));
+        assertEquals(Integer.valueOf(1), row.getInteger("publisher_id"));
+        Instance book = row.toInstance();
+        assertEquals("book", book.getEntity().getName());
+        assertFalse(book.isDirty());
+        assertEquals(row.get("title"), book.get("title"));
+        assertFalse(rows.hasNext());
+    }
+
+    public @Test void testStream() throws Exception
+    {
+        Model model = createActionModel();
+        Entity book = model.getEntity("book");
+        try (Stream<Instance> books = book.stream())
+        {
+            // early termination
+            assertEquals("The Astonishing Life of Duncan Moonwalker", books.findFirst().get().getString("title"));
+        }
+        try (Stream<Instance> books = model.stream("streamed_books"))
+        {
+            assertEquals(1L, books.filter(b -> b.get("publisher_id") != null).count());
+        }
+    }
+
+    public @Test void testStreaming() throws Exception
+    {
+        Model model = createActionModel();
+        try
+        {
+            for (int i = 0; i < 4; ++i)
+            {
+                model.perform("new_book", "Volume " + i);
+            }
+            Iterator<Instance> books = model.query("streamed_books");
+            int count = 0;
+            while (books.hasNext())
+            {
+                Instance book = books.next();
+                assertEquals("book", book.getEntity().getName());
+                assertNotNull(book.getString("title"));
+                assertNotNull(book.get("publisher_id"));
+                ++count;
+            }
+            assertEquals(5, count);
+        }
+        finally
+        {
+            model.perform("cleanup_books");
+        }
+    }
+}
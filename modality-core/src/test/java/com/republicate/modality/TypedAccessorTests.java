@@ -0,0 +1,130 @@
+package com.republicate.modality;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import com.republicate.modality.sql.TypedAccessor;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Types;
+
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
+
+/**
+ * <p>Typed accessors tests</p>
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TypedAccessorTests extends BaseBookshelfTests
+{
+    @BeforeClass
+    public static void populateDataSource() throws Exception
+    {
+        BaseBookshelfTests.populateDataSource("bookshelf.sql");
+    }
+
+    public @Test void testBindings() throws Exception
+    {
+        PreparedStatement statement = strictMock(PreparedStatement.class);
+        // values of the expected class use the typed setter
+        statement.setInt(1, 42);
+        statement.setLong(2, 42L);
+        statement.setDouble(3, 4.2);
+        statement.setBoolean(4, true);
+        statement.setString(5, "text");
+        // other values are left to the driver
+        statement.setObject(1, 42L);
+        statement.setObject(5, new BigDecimal("4.2"));
+        statement.setObject(6, 42);
+        // null values are bound with their SQL type, unless unknown
+        statement.setNull(1, Types.INTEGER);
+        statement.setNull(2, Types.BIGINT);
+        statement.setNull(3, Types.DOUBLE);
+        statement.setNull(4, Types.BOOLEAN);
+        statement.setNull(5, Types.VARCHAR);
+        statement.setObject(6, null);
+        replay(statement);
+
+        TypedAccessor.INTEGER.bind(statement, 1, 42);
+        TypedAccessor.BIGINT.bind(statement, 2, 42L);
+        TypedAccessor.DOUBLE.bind(statement, 3, 4.2);
+        TypedAccessor.BOOLEAN.bind(statement, 4, true);
+        TypedAccessor.STRING.bind(statement, 5, "text");
+
+        TypedAccessor.INTEGER.bind(statement, 1, 42L);
+        TypedAccessor.STRING.bind(statement, 5, new BigDecimal("4.2"));
+        TypedAccessor.OBJECT.bind(statement, 6, 42);
+
+        TypedAccessor.INTEGER.bind(statement, 1, null);
+        TypedAccessor.BIGINT.bind(statement, 2, null);
+        TypedAccessor.DOUBLE.bind(statement, 3, null);
+        TypedAccessor.BOOLEAN.bind(statement, 4, null);
+        TypedAccessor.STRING.bind(statement, 5, null);
+        TypedAccessor.OBJECT.bind(statement, 6, null);
+        verify(statement);
+    }
+
+    public @Test void testNullBindings() throws Exception
+    {
+        try (Connection connection = getDataSource().getConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                 "SELECT COUNT(*) FROM book WHERE ? IS NULL AND ? IS NULL AND ? IS NULL AND ? IS NULL AND ? IS NULL"))
+        {
+            TypedAccessor.INTEGER.bind(statement, 1, null);
+            TypedAccessor.BIGINT.bind(statement, 2, null);
+            TypedAccessor.DOUBLE.bind(statement, 3, null);
+            TypedAccessor.BOOLEAN.bind(statement, 4, null);
+            TypedAccessor.STRING.bind(statement, 5, null);
+            try (ResultSet resultSet = statement.executeQuery())
+            {
+                assertTrue(resultSet.next());
+                assertEquals(1, resultSet.getInt(1));
+            }
+        }
+    }
+
+    public @Test void testReads() throws Exception
+    {
+        try (Connection connection = getDataSource().getConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                 "SELECT CAST(NULL AS INTEGER), CAST(NULL AS BIGINT), CAST(NULL AS DOUBLE), CAST(NULL AS BOOLEAN), CAST(NULL AS VARCHAR(10)), " +
+                     "CAST(0 AS INTEGER), CAST(0 AS BIGINT), CAST(0 AS DOUBLE), FALSE, '' FROM book WHERE book_id = 1");
+             ResultSet resultSet = statement.executeQuery())
+        {
+            assertTrue(resultSet.next());
+            TypedAccessor[] accessors = { TypedAccessor.INTEGER, TypedAccessor.BIGINT, TypedAccessor.DOUBLE, TypedAccessor.BOOLEAN, TypedAccessor.STRING };
+            Object[] zeros = { 0, 0L, 0.0, false, "" };
+            for (int i = 0; i < accessors.length; ++i)
+            {
+                // primitive getters return zero or false for NULL, which must be read back as null
+                assertNull(accessors[i].name(), accessors[i].read(resultSet, i + 1));
+                assertNull(accessors[i].name(), TypedAccessor.OBJECT.read(resultSet, i + 1));
+                assertEquals(accessors[i].name(), zeros[i], accessors[i].read(resultSet, i + 6));
+                assertEquals(accessors[i].name(), zeros[i], TypedAccessor.OBJECT.read(resultSet, i + 6));
+            }
+        }
+    }
+}
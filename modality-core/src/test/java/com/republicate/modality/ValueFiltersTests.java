@@ -0,0 +1,71 @@
+package com.republicate.modality;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import com.republicate.modality.filter.Filter;
+import com.republicate.modality.filter.ValueFilters;
+import com.republicate.modality.sql.TypedAccessor;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+import static org.junit.Assert.*;
+
+/**
+ * <p>Value filters tests</p>
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class ValueFiltersTests
+{
+    static final Serializable[] values = {
+        "Value", 42, 42L, 4.2, true, new BigDecimal("4.2"), java.sql.Date.valueOf("2018-05-09")
+    };
+
+    public @Test void testColumnTypeFilters() throws Exception
+    {
+        ValueFilters filters = new ValueFilters("filters.read");
+        filters.addMapping("java.lang.String", "uppercase");
+        filters.addMapping("java.lang.Number", (Filter<Serializable>)x -> "number " + x);
+        filters.addMapping("java.util.Date", (Filter<Serializable>)x -> "date " + x);
+        filters.addMapping("book.title", "lowercase");
+        filters.initialize();
+
+        for (TypedAccessor accessor : TypedAccessor.values())
+        {
+            Filter<Serializable> declared = filters.getColumnFilter("book", "title", accessor.getJavaClass());
+            Filter<Serializable> dispatched = filters.getColumnFilter("book", "title", null);
+            for (Serializable value : values)
+            {
+                // filters resolved from the declared class of values behave as runtime class dispatch,
+                // even for values of another class
+                assertEquals(accessor + " " + value.getClass().getName(), dispatched.apply(value), declared.apply(value));
+            }
+        }
+
+        assertEquals("value", filters.getColumnFilter("book", "title", String.class).apply("Value"));
+        assertEquals("number 42", filters.getColumnFilter("book", "price", Integer.class).apply(42));
+        assertEquals("number 4.2", filters.getColumnFilter("book", "price", Integer.class).apply(new BigDecimal("4.2")));
+        assertEquals("date 2018-05-09", filters.getColumnFilter("book", "published", String.class).apply(java.sql.Date.valueOf("2018-05-09")));
+        assertEquals(true, filters.getColumnFilter("book", "available", Boolean.class).apply(true));
+    }
+}
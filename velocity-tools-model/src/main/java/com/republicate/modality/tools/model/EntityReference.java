@@ -34,6 +34,7 @@ import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.sql.SQLException;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 public class EntityReference implements Reference, Serializable
@@ -62,11 +63,30 @@ public class EntityReference implements Reference, Serializable
         }
     }
 
+    /**
+     * Iterate on instances, prefetching the targets of upstream joins, as in
+     * <code>#foreach($book in $db.book.prefetch('publisher'))</code>.
+     * @param joins upstream joins names
+     * @return instance references iterator
+     */
+    public Iterator<InstanceReference> prefetch(String... joins)
+    {
+        try
+        {
+            return modelReference.createInstanceReferenceIterator(entity.iterate(joins));
+        }
+        catch (SQLException sqle)
+        {
+            error("cannot iterate on instances of " + entity.getName(), sqle);
+            return null;
+        }
+    }
+
     public long getCount()
     {
         try
         {
-            return entity.getCount();
+            return modelReference.fromUnitOfWork(ModelTool.unitOfWorkKey("count", entity.getName()), () -> entity.getCount());
         }
         catch (SQLException sqle)
         {
@@ -125,7 +145,7 @@ public class EntityReference implements Reference, Serializable
     {
         try
         {
-            Instance instance = entity.fetch(key);
+            Instance instance = modelReference.fromUnitOfWork(fetchKey(key), () -> entity.fetch(key));
             return instance == null ? null : createInstanceReference(instance);
         }
         catch (SQLException sqle)
@@ -139,7 +159,7 @@ public class EntityReference implements Reference, Serializable
     {
         try
         {
-            Instance instance = entity.fetch(key);
+            Instance instance = modelReference.fromUnitOfWork(fetchKey(key), () -> entity.fetch(key));
             return instance == null ? null : createInstanceReference(instance);
         }
         catch (SQLException sqle)
@@ -158,16 +178,16 @@ public class EntityReference implements Reference, Serializable
             {
                 if (attribute instanceof ScalarAttribute)
                 {
-                    return ((ScalarAttribute)attribute).evaluate();
+                    return modelReference.fromUnitOfWork(attributeKey("evaluate", key), () -> ((ScalarAttribute)attribute).evaluate());
                 }
                 else if (attribute instanceof RowAttribute)
                 {
-                    Instance instance = ((RowAttribute)attribute).retrieve();
+                    Instance instance = modelReference.fromUnitOfWork(attributeKey("retrieve", key), () -> ((RowAttribute)attribute).retrieve());
                     return instance == null ? null : createInstanceReference(instance);
                 }
                 else if (attribute instanceof RowsetAttribute)
                 {
-                    return modelReference.createInstanceReferenceIterator(((RowsetAttribute)attribute).query());
+                    return modelReference.createInstanceReferenceIterator(modelReference.queryFromUnitOfWork(attributeKey("query", key), () -> ((RowsetAttribute)attribute).query()));
                 }
             }
             return null;
@@ -183,7 +203,7 @@ public class EntityReference implements Reference, Serializable
     {
         try
         {
-            return entity.evaluate(name, params);
+            return modelReference.fromUnitOfWork(params.length == 0 ? attributeKey("evaluate", name) : null, () -> entity.evaluate(name, params));
         }
         catch (SQLException sqle)
         {
@@ -209,7 +229,7 @@ public class EntityReference implements Reference, Serializable
     {
         try
         {
-            return entity.evaluate(name);
+            return modelReference.fromUnitOfWork(attributeKey("evaluate", name), () -> entity.evaluate(name));
         }
         catch (SQLException sqle)
         {
@@ -222,7 +242,7 @@ public class EntityReference implements Reference, Serializable
     {
         try
         {
-            Instance instance = entity.retrieve(name, params);
+            Instance instance = modelReference.fromUnitOfWork(params.length == 0 ? attributeKey("retrieve", name) : null, () -> entity.retrieve(name, params));
             return instance == null ? null : createInstanceReference(instance);
         }
         catch (SQLException sqle)
@@ -250,7 +270,7 @@ public class EntityReference implements Reference, Serializable
     {
         try
         {
-            Instance instance = entity.retrieve(name);
+            Instance instance = modelReference.fromUnitOfWork(attributeKey("retrieve", name), () -> entity.retrieve(name));
             return instance == null ? null : createInstanceReference(instance);
         }
         catch (SQLException sqle)
@@ -264,7 +284,7 @@ public class EntityReference implements Reference, Serializable
     {
         try
         {
-            return modelReference.createInstanceReferenceIterator(entity.query(name, params));
+            return modelReference.createInstanceReferenceIterator(modelReference.queryFromUnitOfWork(params.length == 0 ? attributeKey("query", name) : null, () -> entity.query(name, params)));
 
         }
         catch (SQLException sqle)
@@ -292,7 +312,7 @@ public class EntityReference implements Reference, Serializable
     {
         try
         {
-            return modelReference.createInstanceReferenceIterator(entity.query(name));
+            return modelReference.createInstanceReferenceIterator(modelReference.queryFromUnitOfWork(attributeKey("query", name), () -> entity.query(name)));
 
         }
         catch (SQLException sqle)
@@ -362,6 +382,35 @@ public class EntityReference implements Reference, Serializable
         }
     }
 
+    protected List<Object> attributeKey(String operation, String name)
+    {
+        return ModelTool.unitOfWorkKey(operation, entity.getName(), name);
+    }
+
+    protected List<Object> fetchKey(Serializable... key)
+    {
+        Object[] parts = new Object[key.length + 2];
+        parts[0] = "fetch";
+        parts[1] = entity.getName();
+        System.arraycopy(key, 0, parts, 2, key.length);
+        return ModelTool.unitOfWorkKey(parts);
+    }
+
+    protected List<Object> fetchKey(Map key)
+    {
+        List<Entity.Column> primaryKey = entity.getPrimaryKey();
+        if (primaryKey == null)
+        {
+            return null;
+        }
+        Serializable[] values = new Serializable[primaryKey.size()];
+        for (int i = 0; i < values.length; ++i)
+        {
+            values[i] = (Serializable)key.get(primaryKey.get(i).name);
+        }
+        return fetchKey(values);
+    }
+
     // serialization
 
     private void writeObject(ObjectOutputStream out) throws IOException
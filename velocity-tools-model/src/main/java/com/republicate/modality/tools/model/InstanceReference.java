@@ -19,13 +19,16 @@ package com.republicate.modality.tools.model;
  * under the License.
  */
 
+import com.republicate.modality.Attribute;
 import com.republicate.modality.Instance;
 import com.republicate.modality.Model;
+import com.republicate.modality.RowsetAttribute;
 
 import java.io.Serializable;
 import java.sql.SQLException;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -127,7 +130,7 @@ public class InstanceReference implements Reference, Map<String, Serializable>,
     {
         try
         {
-            return instance.evaluate(name, params);
+            return modelReference.fromUnitOfWork(params.length == 0 ? attributeKey("evaluate", name) : null, () -> instance.evaluate(name, params));
         }
         catch (SQLException sqle)
         {
@@ -154,7 +157,7 @@ public class InstanceReference implements Reference, Map<String, Serializable>,
     {
         try
         {
-            Instance inst = instance.retrieve(name, params);
+            Instance inst = modelReference.fromUnitOfWork(params.length == 0 ? attributeKey("retrieve", name) : null, () -> instance.retrieve(name, params));
             return inst == null ? null : modelReference.createInstanceReference(inst);
         }
         catch (SQLException sqle)
@@ -181,7 +184,32 @@ public class InstanceReference implements Reference, Map<String, Serializable>,
     {
         try
         {
-            return modelReference.createInstanceReferenceIterator(instance.query(name, params));
+            return modelReference.createInstanceReferenceIterator(modelReference.queryFromUnitOfWork(params.length == 0 ? attributeKey("query", name) : null, () -> instance.query(name, params)));
+        }
+        catch (SQLException sqle)
+        {
+            error("could not query instance property {}.{}", instance.getEntity().getName(), name, sqle);
+            return null;
+        }
+    }
+
+    /**
+     * Query a rowset property, prefetching the targets of upstream joins of the resulting instances,
+     * as in <code>#foreach($book in $author.prefetch('books', 'publisher'))</code>.
+     * @param name rowset property name
+     * @param joins upstream joins names of the resulting instances
+     * @return instance references iterator
+     */
+    public Iterator<InstanceReference> prefetch(String name, String... joins)
+    {
+        try
+        {
+            Attribute attribute = instance.getEntity().getAttribute(name);
+            if (!(attribute instanceof RowsetAttribute) || attribute.getResultEntity() == null)
+            {
+                throw new SQLException("not a rowset property with a result entity: " + name);
+            }
+            return modelReference.createInstanceReferenceIterator(attribute.getResultEntity().prefetch(instance.query(name), joins));
         }
         catch (SQLException sqle)
         {
@@ -214,6 +242,10 @@ public class InstanceReference implements Reference, Map<String, Serializable>,
             error("could not perform instance action {}.{}", instance.getEntity().getName(), name, sqle);
             return 0;
         }
+        finally
+        {
+            modelReference.clearUnitOfWork();
+        }
     }
 
     public long perform(String name, Serializable... params)
@@ -240,6 +272,10 @@ public class InstanceReference implements Reference, Map<String, Serializable>,
             error("could not perform instance action {}.{}", instance.getEntity().getName(), name, sqle);
             return 0;
         }
+        finally
+        {
+            modelReference.clearUnitOfWork();
+        }
     }
 
     public boolean delete()
@@ -267,6 +303,10 @@ public class InstanceReference implements Reference, Map<String, Serializable>,
             error("could not delete instance", sqle);
             return false;
         }
+        finally
+        {
+            modelReference.clearUnitOfWork();
+        }
     }
 
     public boolean insert()
@@ -294,6 +334,10 @@ public class InstanceReference implements Reference, Map<String, Serializable>,
             error("could not insert instance", sqle);
             return false;
         }
+        finally
+        {
+            modelReference.clearUnitOfWork();
+        }
     }
 
     public boolean update()
@@ -321,6 +365,10 @@ public class InstanceReference implements Reference, Map<String, Serializable>,
             error("could not update instance", sqle);
             return false;
         }
+        finally
+        {
+            modelReference.clearUnitOfWork();
+        }
     }
 
     public boolean upsert()
@@ -348,6 +396,10 @@ public class InstanceReference implements Reference, Map<String, Serializable>,
             error("could not upsert instance", sqle);
             return false;
         }
+        finally
+        {
+            modelReference.clearUnitOfWork();
+        }
     }
 
     @Override
@@ -367,6 +419,38 @@ public class InstanceReference implements Reference, Map<String, Serializable>,
         return instance.isDirty();
     }
     
+    /**
+     * Key of a parameterless attribute of this instance in the unit of work, only for persisted unmodified instances.
+     * @param operation attribute operation
+     * @param name attribute name
+     * @return unit of work key, or null
+     */
+    protected List<Object> attributeKey(String operation, String name)
+    {
+        if (instance.getEntity() == null || instance.isDirty())
+        {
+            return null;
+        }
+        Serializable[] primaryKey = instance.getPrimaryKey();
+        if (primaryKey == null)
+        {
+            return null;
+        }
+        Object[] parts = new Object[primaryKey.length + 3];
+        parts[0] = operation;
+        parts[1] = instance.getEntity().getName();
+        parts[2] = name;
+        for (int i = 0; i < primaryKey.length; ++i)
+        {
+            if (primaryKey[i] == null)
+            {
+                return null;
+            }
+            parts[i + 3] = primaryKey[i];
+        }
+        return ModelTool.unitOfWorkKey(parts);
+    }
+
     protected Instance getInstance()
     {
         return instance;
@@ -56,18 +56,23 @@ import java.util.stream.Collectors;
 
 /**
  * <p>ModelTool</p>
+ * <p>The tool is usually declared in the application scope. When declared in the request scope, it keeps a
+ * {@link UnitOfWork} which remembers fetched instances and the results of attributes called without parameters
+ * for the duration of the request (this can be disabled with <code>unit_of_work = false</code>).</p>
  *
  * @author Claude Brisson
  * @version $Revision: $
  * @since VelocityTools 3.1
  */
 
-@ValidScope(Scope.APPLICATION)
+@ValidScope({Scope.APPLICATION, Scope.REQUEST})
 @DefaultKey("model")
 public class ModelTool extends SafeConfig implements Constants, Reference, Serializable
 {
     public static final String MODEL_TOOLS_DEFAULTS_PATH = "com/republicate/modality/tools/model/tools.xml";
 
+    public static final String UNIT_OF_WORK_KEY = "unit_of_work";
+
     /* TODO *
      * Configuration entry point. Can only be called once.
      * @param params configuration values map
@@ -137,6 +142,21 @@ public class ModelTool extends SafeConfig implements Constants, Reference, Seria
             model.initialize(model.getDefinition());
         }
         canWrite = model.getWriteAccess() == Model.WriteAccess.VTL;
+
+        // only request-scoped tools are given the request
+        boolean requestScoped = params.get("request") != null;
+        Boolean useUnitOfWork = params.getBoolean(UNIT_OF_WORK_KEY);
+        if (useUnitOfWork == null ? requestScoped : useUnitOfWork)
+        {
+            if (requestScoped)
+            {
+                unitOfWork = new UnitOfWork();
+            }
+            else
+            {
+                getLog().warn("ignoring {}: the model tool must be request-scoped", UNIT_OF_WORK_KEY);
+            }
+        }
     }
 
     protected Model getModel(Object context, String modelId)
@@ -163,7 +183,7 @@ public class ModelTool extends SafeConfig implements Constants, Reference, Seria
     {
         try
         {
-            return getModel().evaluate(name, params);
+            return fromUnitOfWork(params.length == 0 ? unitOfWorkKey("evaluate", null, name) : null, () -> getModel().evaluate(name, params));
         }
         catch (SQLException sqle)
         {
@@ -189,7 +209,7 @@ public class ModelTool extends SafeConfig implements Constants, Reference, Seria
     {
         try
         {
-            Instance instance = getModel().retrieve(name, params);
+            Instance instance = fromUnitOfWork(params.length == 0 ? unitOfWorkKey("retrieve", null, name) : null, () -> getModel().retrieve(name, params));
             return instance == null ? null : createInstanceReference(instance);
         }
         catch (SQLException sqle)
@@ -217,7 +237,7 @@ public class ModelTool extends SafeConfig implements Constants, Reference, Seria
     {
         try
         {
-            return createInstanceReferenceIterator(getModel().query(name, params));
+            return createInstanceReferenceIterator(queryFromUnitOfWork(params.length == 0 ? unitOfWorkKey("query", null, name) : null, () -> getModel().query(name, params)));
         }
         catch (SQLException sqle)
         {
@@ -255,6 +275,10 @@ public class ModelTool extends SafeConfig implements Constants, Reference, Seria
             error("could not perform action {}", name, sqle);
             return 0;
         }
+        finally
+        {
+            clearUnitOfWork();
+        }
     }
 
     public long perform(String name, Map params)
@@ -273,6 +297,10 @@ public class ModelTool extends SafeConfig implements Constants, Reference, Seria
             error("could not perform action {}", name, sqle);
             return 0;
         }
+        finally
+        {
+            clearUnitOfWork();
+        }
     }
 
     public Object get(String key)
@@ -284,16 +312,16 @@ public class ModelTool extends SafeConfig implements Constants, Reference, Seria
             {
                 if (attribute instanceof ScalarAttribute)
                 {
-                    return ((ScalarAttribute)attribute).evaluate();
+                    return fromUnitOfWork(unitOfWorkKey("evaluate", null, key), () -> ((ScalarAttribute)attribute).evaluate());
                 }
                 else if (attribute instanceof RowAttribute)
                 {
-                    Instance instance = ((RowAttribute)attribute).retrieve();
+                    Instance instance = fromUnitOfWork(unitOfWorkKey("retrieve", null, key), () -> ((RowAttribute)attribute).retrieve());
                     return instance == null ? null : createInstanceReference(instance);
                 }
                 else if (attribute instanceof RowsetAttribute)
                 {
-                    return createInstanceReferenceIterator(((RowsetAttribute)attribute).query());
+                    return createInstanceReferenceIterator(queryFromUnitOfWork(unitOfWorkKey("query", null, key), () -> ((RowsetAttribute)attribute).query()));
                 }
             }
             Entity entity = model.getEntity(key);
@@ -325,6 +353,77 @@ public class ModelTool extends SafeConfig implements Constants, Reference, Seria
         return new InstanceReferenceIterator(query);
     }
 
+    /**
+     * Get the request unit of work, if any.
+     * @return unit of work, or null
+     */
+    protected UnitOfWork getUnitOfWork()
+    {
+        return unitOfWork;
+    }
+
+    /**
+     * Build a unit of work key.
+     * @param parts key parts
+     * @return unit of work key
+     */
+    protected static List<Object> unitOfWorkKey(Object... parts)
+    {
+        // values given by templates are often strings, so compare their string forms
+        List<Object> key = new ArrayList<>(parts.length);
+        for (Object part : parts)
+        {
+            key.add(part == null ? null : String.valueOf(part));
+        }
+        return key;
+    }
+
+    /**
+     * Get a result from the unit of work, loading it if needed.
+     * @param key result key, or null if the result is not to be remembered
+     * @param loader result loader
+     * @param <T> result type
+     * @return result
+     * @throws SQLException
+     */
+    protected <T> T fromUnitOfWork(List<Object> key, UnitOfWork.Loader<T> loader) throws SQLException
+    {
+        return unitOfWork == null || key == null ? loader.load() : unitOfWork.get(key, loader);
+    }
+
+    /**
+     * Get a rowset from the unit of work, loading it if needed. Remembered rowsets are fully read.
+     * @param key rowset key, or null if the rowset is not to be remembered
+     * @param loader rowset loader
+     * @return rowset iterator
+     * @throws SQLException
+     */
+    protected Iterator<Instance> queryFromUnitOfWork(List<Object> key, UnitOfWork.Loader<Iterator<Instance>> loader) throws SQLException
+    {
+        if (unitOfWork == null || key == null)
+        {
+            return loader.load();
+        }
+        List<Instance> rows = unitOfWork.get(key, () ->
+        {
+            List<Instance> list = new ArrayList<>();
+            loader.load().forEachRemaining(list::add);
+            return list;
+        });
+        return rows.iterator();
+    }
+
+    /**
+     * Forget the unit of work content, after a write operation.
+     */
+    protected void clearUnitOfWork()
+    {
+        if (unitOfWork != null)
+        {
+            unitOfWork.clear();
+        }
+    }
+
     @Override
     protected Logger getLog() // give package access to logger
     {
@@ -505,4 +604,6 @@ public class ModelTool extends SafeConfig implements Constants, Reference, Seria
 
     private boolean canWrite = false;
 
+    private transient UnitOfWork unitOfWork = null;
+
 }
@@ -0,0 +1,88 @@
+package com.republicate.modality.tools.model;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Request-scoped identity map of a {@link ModelTool}.</p>
+ * <p>Remembers the results of fetches and of attributes called without parameters during a single request,
+ * so that repeated references like <code>$book.author</code> only hit the database once. Any write operation
+ * done through the tool clears it.</p>
+ * <p>Not thread-safe: only meant to live in the request scope.</p>
+ */
+public class UnitOfWork
+{
+    @FunctionalInterface
+    public interface Loader<T>
+    {
+        T load() throws SQLException;
+    }
+
+    /**
+     * Get a remembered result, or load and remember it. Null results are remembered too.
+     * @param key result key
+     * @param loader result loader
+     * @param <T> result type
+     * @return remembered or loaded result
+     * @throws SQLException
+     */
+    public <T> T get(List<Object> key, Loader<T> loader) throws SQLException
+    {
+        if (results.containsKey(key))
+        {
+            ++hits;
+            return (T)results.get(key);
+        }
+        ++misses;
+        T result = loader.load();
+        results.put(key, result);
+        return result;
+    }
+
+    /**
+     * Forget all remembered results.
+     */
+    public void clear()
+    {
+        results.clear();
+    }
+
+    /**
+     * Get usage statistics.
+     * @return a long array: [nb of hits, nb of misses]
+     */
+    public long[] getStats()
+    {
+        return new long[] { hits, misses };
+    }
+
+    /** remembered results */
+    private final Map<List<Object>, Object> results = new HashMap<>();
+
+    /** hits counter */
+    private long hits = 0;
+
+    /** misses counter */
+    private long misses = 0;
+}
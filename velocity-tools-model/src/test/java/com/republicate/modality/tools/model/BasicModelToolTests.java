@@ -130,6 +130,35 @@ public class BasicModelToolTests extends BaseBookshelfTests
         assertEquals("12", out.toString());
     }
 
+    public @Test void testUnitOfWork() throws Exception
+    {
+        DataSource dataSource = initDataSource();
+        Properties velProps = new Properties();
+        velProps.put("introspector.uberspect.class", "com.republicate.modality.tools.model.ModelUberspector, org.apache.velocity.util.introspection.UberspectImpl");
+        VelocityEngine engine = createVelocityEngine(velProps);
+
+        ModelTool model = new ModelTool();
+        Map<String, Object> props = new HashMap<>();
+        props.put("datasource", dataSource);
+        props.put("reverse", "full");
+        props.put("definition", "blank_model.xml");
+        props.put("identifiers.inflector", "org.atteo.evo.inflector.English");
+        props.put("identifiers.mapping.*", "lowercase");
+        props.put("identifiers.mapping.*.*", "lowercase");
+        // mimic a request-scoped tool
+        props.put("request", new Object());
+        model.configure(props);
+        assertNotNull(model.getUnitOfWork());
+        Context context = new VelocityContext();
+        context.put("model", model);
+        StringWriter out = new StringWriter();
+        assertTrue(engine.evaluate(context, out, "test", "$model.book.fetch(1).publisher.name $model.book.fetch('1').publisher.name"));
+        assertEquals("Green Penguin Books Green Penguin Books", out.toString());
+        long[] stats = model.getUnitOfWork().getStats();
+        assertEquals(2L, stats[0]); // hits
+        assertEquals(2L, stats[1]); // misses
+    }
+
     @Before
     public void clearRepository()
     {